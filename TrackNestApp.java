@@ -2,6 +2,18 @@ import java.util.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -9,32 +21,60 @@ interface Trackable {
     boolean checkCompletion();
 }
 
+// Goals, habits and tasks carry a per-user id so storage can address them individually
+interface Item {
+    long getId();
+    void setId(long id);
+}
+
 // Abstract User
 abstract class User {
     private int id;
     private String name;
     private String email;
-    private String passwordHash;
+    // Credentials and the active flag change under the user's lock but are read lock-free by login and the API
+    private volatile String passwordHash;
     protected List<Goal> goals;
     protected List<Habit> habits;
     protected List<Task> tasks;
-    protected List<String> habitHistory;
     protected Set<String> badges;
     protected int rewardPoints;
+    // Points earned in the current week (from Monday) and month; stale once the period has passed
+    protected LocalDate weekPointsFrom, monthPointsFrom;
+    protected int weekPoints, monthPoints;
     protected int dailyTaskTarget;
     protected LocalDate lastLoginDate;
     protected List<String> recentCompleted;
     protected String theme; // Example: console "theme"
     protected LocalDate registrationDate;
     private String securityQuestion;
-    private String securityAnswerHash;
+    private volatile String securityAnswerHash;
     private String profileDescription;
     private String avatar;
     private String reminderFrequency; // "None", "Daily", "Weekly"
     private String language; // "EN", "ES"
     private boolean accessibilityMode;
     private String friendEmail;
-    private boolean active = true;
+    private volatile boolean active = true;
+    // Non-null while goals/habits/tasks and profile fields are still on disk (directory-only user)
+    private java.util.function.Consumer<User> bodyLoader;
+    // Set when the directory entry already carried the profile, badges and activity, so only items are on disk
+    private boolean profileInDirectory;
+    private int storedGoalCount, storedHabitCount, storedTaskCount;
+    private long itemSeq; // highest item id handed out, derived from the items on first use
+    private ItemIndex index;
+    private SearchIndex searchIndex;
+    private ActivitySeries activity;
+    private int[] rewardCounts;
+    // Read-only copies handed to readers; rebuilt on the first read after a change
+    private volatile List<Goal> goalsView;
+    private volatile List<Habit> habitsView;
+    private volatile List<Task> tasksView;
+    private Map<Long, Item> itemsById; // built on first ownership check, then kept current by addItem/removeItem
+    // Earliest reminder or due date ahead among the items, or null when there is none. Kept in the directory so a
+    // user whose items are still on disk is read only on that day. It may be early: a date moved later or an
+    // item removed leaves it until the next count. Records saved before it was kept read as 1970-01-01
+    private LocalDate nextItemDate;
     public User(int id, String name, String email, String passwordHash, String securityQuestion, String securityAnswerHash) {
         this.id = id;
         this.name = name;
@@ -43,33 +83,209 @@ abstract class User {
         this.registrationDate = LocalDate.now();
         this.securityQuestion = securityQuestion;
         this.securityAnswerHash = securityAnswerHash;
+        // Changed only under the owner's lock and this monitor; readers get the read-only views below
         this.goals = new ArrayList<>();
         this.habits = new ArrayList<>();
         this.tasks = new ArrayList<>();
-        this.habitHistory = new ArrayList<>();
-        this.badges = new HashSet<>();
+        this.badges = ConcurrentHashMap.newKeySet();
         this.rewardPoints = 0;
         this.dailyTaskTarget = 0;
         this.lastLoginDate = null;
-        this.recentCompleted = new LinkedList<>();
+        this.recentCompleted = new CopyOnWriteArrayList<>();
         this.theme = "Light";
     }
 
     public String getName() { return name; }
-    public List<Goal> getGoals() { return goals; }
-    public List<Habit> getHabits() { return habits; }
-    public List<Task> getTasks() { return tasks; }
-    public List<String> getHabitHistory() { return habitHistory; }
+    public List<Goal> getGoals() { List<Goal> v = goalsView; return v != null ? v : buildViews().goalsView; }
+    public List<Habit> getHabits() { List<Habit> v = habitsView; return v != null ? v : buildViews().habitsView; }
+    public List<Task> getTasks() { List<Task> v = tasksView; return v != null ? v : buildViews().tasksView; }
+    private synchronized User buildViews() {
+        materialize();
+        if (goalsView == null) goalsView = Collections.unmodifiableList(new ArrayList<>(goals));
+        if (habitsView == null) habitsView = Collections.unmodifiableList(new ArrayList<>(habits));
+        if (tasksView == null) tasksView = Collections.unmodifiableList(new ArrayList<>(tasks));
+        return this;
+    }
+    // Item list changes; callers hold the owner's lock (TrackNestSystem.withUser)
+    synchronized void addItem(Item item) {
+        materialize();
+        if (itemsById != null && item.getId() != 0) itemsById.put(item.getId(), item);
+        if (item instanceof Goal) { goals.add((Goal) item); goalsView = null; }
+        else if (item instanceof Habit) { habits.add((Habit) item); habitsView = null; }
+        else { tasks.add((Task) item); tasksView = null; }
+    }
+    synchronized void addItems(List<Item> items) {
+        for (Item item : items) addItem(item);
+    }
+    synchronized boolean removeItem(Item item) {
+        materialize();
+        if (itemsById != null) itemsById.remove(item.getId(), item);
+        boolean removed;
+        if (item instanceof Goal) { removed = goals.remove(item); goalsView = null; }
+        else if (item instanceof Habit) { removed = habits.remove(item); habitsView = null; }
+        else { removed = tasks.remove(item); tasksView = null; }
+        return removed;
+    }
+    public Set<String> getBadges() { loadProfile(); return badges; }
+    // Item counts are answered from the directory without loading the lists
+    public synchronized int getGoalCount() { return bodyLoader != null ? storedGoalCount : goals.size(); }
+    public synchronized int getHabitCount() { return bodyLoader != null ? storedHabitCount : habits.size(); }
+    public synchronized int getTaskCount() { return bodyLoader != null ? storedTaskCount : tasks.size(); }
+    public boolean isMaterialized() { return bodyLoader == null; }
+    synchronized LocalDate getNextItemDate() { return nextItemDate; }
+    synchronized void setNextItemDate(LocalDate date) { nextItemDate = date; }
+    synchronized void noteItemDate(LocalDate date) {
+        if (date != null && (nextItemDate == null || date.isBefore(nextItemDate))) nextItemDate = date;
+    }
+    void setLazyBody(java.util.function.Consumer<User> loader, boolean profileInDirectory, int goalCount, int habitCount, int taskCount) {
+        this.bodyLoader = loader;
+        this.profileInDirectory = profileInDirectory;
+        this.storedGoalCount = goalCount;
+        this.storedHabitCount = habitCount;
+        this.storedTaskCount = taskCount;
+    }
+    // By id rather than by scanning the lists; items without an id yet are looked up in their list
+    synchronized boolean owns(Item item) {
+        if (item.getId() == 0) {
+            materialize();
+            return (item instanceof Goal ? goals : item instanceof Habit ? habits : tasks).contains(item);
+        }
+        return itemById(item.getId()) == item;
+    }
+    synchronized Item itemById(long id) {
+        materialize();
+        if (itemsById == null) {
+            itemsById = new HashMap<>();
+            for (Goal g : goals) if (g.getId() != 0) itemsById.put(g.getId(), g);
+            for (Habit h : habits) if (h.getId() != 0) itemsById.put(h.getId(), h);
+            for (Task t : tasks) if (t.getId() != 0) itemsById.put(t.getId(), t);
+        }
+        return itemsById.get(id);
+    }
+    public synchronized long nextItemId() {
+        materialize();
+        if (itemSeq == 0) {
+            for (Goal g : goals) itemSeq = Math.max(itemSeq, g.getId());
+            for (Habit h : habits) itemSeq = Math.max(itemSeq, h.getId());
+            for (Task t : tasks) itemSeq = Math.max(itemSeq, t.getId());
+        }
+        return ++itemSeq;
+    }
+    // Built from the lists on first use, then kept current by TrackNestSystem's item operations
+    public synchronized ItemIndex index() {
+        materialize();
+        if (index == null) index = new ItemIndex(tasks, goals);
+        return index;
+    }
+    public synchronized SearchIndex searchIndex() {
+        materialize();
+        if (searchIndex == null) searchIndex = new SearchIndex(goals, habits, tasks);
+        return searchIndex;
+    }
+    // Data saved before the series existed starts from the habit logs; task completion days were not kept
+    public synchronized ActivitySeries activity() {
+        if (activity == null) materialize();
+        if (activity == null) {
+            activity = new ActivitySeries();
+            LocalDate today = LocalDate.now();
+            for (Habit h : habits)
+                for (LocalDate d = today.minusDays(ActivitySeries.DAYS - 1); !d.isAfter(today); d = d.plusDays(1))
+                    if (h.getLog().isLogged(d)) activity.record(ActivitySeries.HABITS, d, 1);
+        }
+        return activity;
+    }
+    void setActivity(ActivitySeries activity) { this.activity = activity; }
+    // Called after the change: on first use the counters are taken from the items, which already include it
+    synchronized int bumpRewardCount(int counter, int delta) {
+        if (rewardCounts == null) {
+            rewardCounts = RewardEngine.countsOf(this);
+            return rewardCounts[counter];
+        }
+        return rewardCounts[counter] += delta;
+    }
+    // Bulk changes discard the indexes instead of maintaining them; the next query rebuilds them once
+    synchronized void dropIndexes() {
+        index = null;
+        searchIndex = null;
+    }
+    // Imported items change what the counters would be taken from; they are recounted on next use
+    synchronized void resetRewardCounts() { rewardCounts = null; }
+    // Called by the core after an item is added or changed, and after it is removed
+    void reindex(Item item) {
+        if (item instanceof Task) index().putTask((Task) item);
+        else if (item instanceof Goal) index().putGoal((Goal) item);
+        searchIndex().put(item);
+    }
+    void unindex(Item item) {
+        if (item instanceof Task) index().removeTask((Task) item);
+        else if (item instanceof Goal) index().removeGoal((Goal) item);
+        searchIndex().remove(item);
+    }
+    // Items from data written before ids existed get one on first use
+    public synchronized void ensureItemIds() {
+        long before = itemSeq;
+        for (Goal g : getGoals()) if (g.getId() == 0) g.setId(nextItemId());
+        for (Habit h : getHabits()) if (h.getId() == 0) h.setId(nextItemId());
+        for (Task t : getTasks()) if (t.getId() == 0) t.setId(nextItemId());
+        if (itemSeq != before) itemsById = null;
+    }
+    // Profile getters: header-only writes on layouts that keep the profile in the directory load nothing
+    private void loadProfile() {
+        if (!profileInDirectory) materialize();
+    }
+    // Deserialize the rest of this user on first access
+    protected synchronized void materialize() {
+        if (bodyLoader == null) return;
+        java.util.function.Consumer<User> loader = bodyLoader;
+        bodyLoader = null;
+        loader.accept(this);
+    }
+    // For one-pass readers such as the exporter: a directory-only user's body is read into a throwaway
+    // copy, so walking every user does not leave every body in memory
+    synchronized User detachedView() {
+        if (bodyLoader == null) return this;
+        User copy = this instanceof Admin ? new Admin(id, name, email, passwordHash, securityQuestion, securityAnswerHash)
+            : new NormalUser(id, name, email, passwordHash, securityQuestion, securityAnswerHash);
+        copy.rewardPoints = rewardPoints;
+        copy.weekPointsFrom = weekPointsFrom;
+        copy.weekPoints = weekPoints;
+        copy.monthPointsFrom = monthPointsFrom;
+        copy.monthPoints = monthPoints;
+        copy.dailyTaskTarget = dailyTaskTarget;
+        copy.lastLoginDate = lastLoginDate;
+        copy.theme = theme;
+        copy.registrationDate = registrationDate;
+        copy.profileDescription = profileDescription;
+        copy.avatar = avatar;
+        copy.reminderFrequency = reminderFrequency;
+        copy.language = language;
+        copy.accessibilityMode = accessibilityMode;
+        copy.friendEmail = friendEmail;
+        copy.active = active;
+        copy.badges.addAll(badges); // some layouts keep badges in the directory entry
+        bodyLoader.accept(copy);
+        return copy;
+    }
     public int getRewardPoints() { return rewardPoints; }
-    public void addPoints(int pt) { rewardPoints += pt; }
+    public synchronized void addPoints(int pt) {
+        LocalDate today = LocalDate.now();
+        if (!today.with(DayOfWeek.MONDAY).equals(weekPointsFrom)) { weekPointsFrom = today.with(DayOfWeek.MONDAY); weekPoints = 0; }
+        if (!today.withDayOfMonth(1).equals(monthPointsFrom)) { monthPointsFrom = today.withDayOfMonth(1); monthPoints = 0; }
+        rewardPoints += pt;
+        weekPoints += pt;
+        monthPoints += pt;
+    }
+    public synchronized int getWeekPoints(LocalDate today) { return today.with(DayOfWeek.MONDAY).equals(weekPointsFrom) ? weekPoints : 0; }
+    public synchronized int getMonthPoints(LocalDate today) { return today.withDayOfMonth(1).equals(monthPointsFrom) ? monthPoints : 0; }
     public void addBadge(String badge) {
-        if (badges.add(badge)) System.out.println("🏅 Achievement unlocked: " + badge);
+        if (getBadges().add(badge)) System.out.println("🏅 Achievement unlocked: " + badge);
     }
     public void showBadges() {
+        Set<String> badges = getBadges();
         System.out.println("Your Badges: " + (badges.isEmpty() ? "None yet." : badges));
     }
-    public void setTheme(String th) { this.theme = th; }
-    public String getTheme() { return theme; }
+    public void setTheme(String th) { loadProfile(); this.theme = th; }
+    public String getTheme() { loadProfile(); return theme; }
     public String getEmail() { return email; }
     public int getId() { return id; }
     public void addRecentCompleted(String entry) {
@@ -85,27 +301,28 @@ abstract class User {
     }
     public LocalDate getRegistrationDate() { return registrationDate; }
     public void setRegistrationDate(LocalDate date) { this.registrationDate = date; }
-    public String getSecurityQuestion() { return securityQuestion; }
-    public String getSecurityAnswerHash() { return securityAnswerHash; }
-    public void setSecurityQuestion(String q) { this.securityQuestion = q; }
-    public void setSecurityAnswerHash(String h) { this.securityAnswerHash = h; }
-    public String getProfileDescription() { return profileDescription; }
-    public void setProfileDescription(String desc) { this.profileDescription = desc; }
-    public String getAvatar() { return avatar; }
-    public void setAvatar(String av) { this.avatar = av; }
-    public String getReminderFrequency() { return reminderFrequency; }
-    public void setReminderFrequency(String freq) { this.reminderFrequency = freq; }
-    public String getLanguage() { return language == null ? "EN" : language; }
-    public void setLanguage(String lang) { this.language = lang; }
-    public boolean isAccessibilityMode() { return accessibilityMode; }
-    public void setAccessibilityMode(boolean mode) { this.accessibilityMode = mode; }
-    public String getFriendEmail() { return friendEmail; }
-    public void setFriendEmail(String email) { this.friendEmail = email; }
+    public String getSecurityQuestion() { loadProfile(); return securityQuestion; }
+    public String getSecurityAnswerHash() { loadProfile(); return securityAnswerHash; }
+    public void setSecurityQuestion(String q) { loadProfile(); this.securityQuestion = q; }
+    public void setSecurityAnswerHash(String h) { loadProfile(); this.securityAnswerHash = h; }
+    public String getProfileDescription() { loadProfile(); return profileDescription; }
+    public void setProfileDescription(String desc) { loadProfile(); this.profileDescription = desc; }
+    public String getAvatar() { loadProfile(); return avatar; }
+    public void setAvatar(String av) { loadProfile(); this.avatar = av; }
+    public String getReminderFrequency() { loadProfile(); return reminderFrequency; }
+    public void setReminderFrequency(String freq) { loadProfile(); this.reminderFrequency = freq; }
+    public String getLanguage() { loadProfile(); return language == null ? "EN" : language; }
+    public void setLanguage(String lang) { loadProfile(); this.language = lang; }
+    public boolean isAccessibilityMode() { loadProfile(); return accessibilityMode; }
+    public void setAccessibilityMode(boolean mode) { loadProfile(); this.accessibilityMode = mode; }
+    public String getFriendEmail() { loadProfile(); return friendEmail; }
+    public void setFriendEmail(String email) { loadProfile(); this.friendEmail = email; }
     public boolean isActive() { return active; }
     public void setActive(boolean a) { this.active = a; }
 
     // Pretty print tasks
     public void printTasks() {
+        List<Task> tasks = getTasks();
         if (tasks.isEmpty()) { System.out.println("No tasks."); return; }
         System.out.printf("%-3s %-25s %-12s %-8s %-10s %-5s\n", "#", "Task Name", "Due Date", "Priority", "Status", "Pin");
         int i = 1;
@@ -116,6 +333,7 @@ abstract class User {
         }
     }
     public void printHabits() {
+        List<Habit> habits = getHabits();
         if (habits.isEmpty()) { System.out.println("No habits."); return; }
         System.out.printf("%-3s %-20s %-10s %-8s %-12s %-5s\n", "#", "Habit Name", "Freq", "Streak", "Last Log", "Pin");
         int i = 1;
@@ -125,6 +343,7 @@ abstract class User {
         }
     }
     public void printGoals() {
+        List<Goal> goals = getGoals();
         if (goals.isEmpty()) { System.out.println("No goals."); return; }
         System.out.printf("%-3s %-25s %-12s %-10s %-5s\n", "#", "Goal Title", "Deadline", "Status", "Pin");
         int i = 1;
@@ -135,7 +354,7 @@ abstract class User {
     }
 
     public void viewProgress() {
-        UI.section("Progress Report for " + name + " [Theme: "+theme+"]");
+        UI.section("Progress Report for " + name + " [Theme: "+getTheme()+"]");
         System.out.println("Reward Points: " + rewardPoints);
         System.out.println("Daily Target: " + (dailyTaskTarget == 0 ? "none" : dailyTaskTarget + " tasks/day"));
         System.out.println("Goals:");
@@ -148,69 +367,59 @@ abstract class User {
     }
     public void viewCalendar(LocalDate month) {
         System.out.println("====== Calendar deadlines for " + month.getMonth() + " ======");
-        for (Goal g : goals) {
-            if (g.getDeadline().getYear() == month.getYear() && g.getDeadline().getMonth() == month.getMonth())
-                System.out.println("Goal: " + g.getTitle() + " - " + g.getDeadline());
-        }
-        for (Task t : tasks) {
-            if (t.getDueDate().getYear() == month.getYear() && t.getDueDate().getMonth() == month.getMonth())
-                System.out.println("Task: " + t.getTaskName() + " - " + t.getDueDate());
-        }
+        LocalDate first = month.withDayOfMonth(1), next = first.plusMonths(1);
+        for (Goal g : index().goalsDueBetween(first, next))
+            System.out.println("Goal: " + g.getTitle() + " - " + g.getDeadline());
+        for (Task t : index().tasksDueBetween(first, next))
+            System.out.println("Task: " + t.getTaskName() + " - " + t.getDueDate());
         System.out.println("=============================================");
     }
+    // Last 28 days per habit from its log, oldest first
     public void showHabitHistory() {
-        if (habitHistory.isEmpty()) {
+        List<Habit> habits = getHabits();
+        if (habits.isEmpty()) {
             System.out.println("No habit logs yet.");
             return;
         }
-        System.out.println("--- Habit Log History ---");
-        for (String entry : habitHistory) System.out.println(entry);
+        LocalDate today = LocalDate.now(), from = today.minusDays(27);
+        System.out.println("--- Habit Log History (last 28 days) ---");
+        for (Habit h : habits) {
+            StringBuilder days = new StringBuilder(28);
+            for (LocalDate d = from; !d.isAfter(today); d = d.plusDays(1)) days.append(h.getLog().isLogged(d) ? '#' : '.');
+            System.out.printf("%-20s %s  streak %d, best %d, %d%% done\n", h.getName(), days, h.getStreak(), h.getLongestStreak(),
+                Math.round(100 * h.getLog().completionRate(from, today.plusDays(1), h.isWeekly())));
+        }
     }
     public void exportDataToCSV() {
         System.out.println("---- CSV Export START ----");
         System.out.println("Goals:\nTitle,Description,Deadline,Status");
-        for (Goal g : goals)
-            System.out.println(g.getTitle() + "," + g.getDescription() + "," + g.getDeadline() + "," + g.getStatus());
+        for (Goal g : getGoals())
+            System.out.println(DataExporter.csv(g.getTitle()) + "," + DataExporter.csv(g.getDescription()) + "," + g.getDeadline() + "," + DataExporter.csv(g.getStatus()));
         System.out.println("Habits:\nName,Frequency,Streak,LastLogged");
-        for (Habit h : habits)
-            System.out.println(h.getName() + "," + h.getFrequency() + "," + h.getStreak()+","+h.getLastLoggedDate());
+        for (Habit h : getHabits())
+            System.out.println(DataExporter.csv(h.getName()) + "," + DataExporter.csv(h.getFrequency()) + "," + h.getStreak()+","+h.getLastLoggedDate());
         System.out.println("Tasks:\nTaskName,Due,Priority,Status");
-        for (Task t : tasks)
-            System.out.println(t.getTaskName() + "," + t.getDueDate() + "," + t.getPriority() + "," + (t.isDone()?"DONE":t.isOverdue()?"OVERDUE":"PENDING"));
+        for (Task t : getTasks())
+            System.out.println(DataExporter.csv(t.getTaskName()) + "," + t.getDueDate() + "," + DataExporter.csv(t.getPriority()) + "," + (t.isDone()?"DONE":t.isOverdue()?"OVERDUE":"PENDING"));
         System.out.println("---- CSV Export END ----");
     }
     public abstract void showMenu(Scanner sc, TrackNestSystem sys);
     public String getPasswordHash() { return passwordHash; }
     public void setPasswordHash(String hash) { this.passwordHash = hash; }
 
-    public static String hashPassword(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(password.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) sb.append(String.format("%02x", b));
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available");
-        }
-    }
-
-    public void showProgressGraph() {
-        // Simple ASCII bar chart for last 7 days
-        Map<LocalDate, Integer> dayCounts = new LinkedHashMap<>();
+    // ASCII bars of tasks completed (#) and habits logged (+): one bar per day, or per week past 30 days
+    public void showProgressGraph(int days) {
+        ActivitySeries series = activity();
         LocalDate today = LocalDate.now();
-        for (int i = 6; i >= 0; i--) dayCounts.put(today.minusDays(i), 0);
-        for (Task t : tasks) {
-            if (t.isDone() && dayCounts.containsKey(t.getDueDate()))
-                dayCounts.put(t.getDueDate(), dayCounts.get(t.getDueDate()) + 1);
-        }
-        for (Habit h : habits) {
-            if (h.getLastLoggedDate() != null && dayCounts.containsKey(h.getLastLoggedDate()))
-                dayCounts.put(h.getLastLoggedDate(), dayCounts.get(h.getLastLoggedDate()) + 1);
-        }
-        UI.section("Progress (last 7 days)");
-        for (Map.Entry<LocalDate, Integer> e : dayCounts.entrySet()) {
-            System.out.printf("%s: %s\n", e.getKey(), "#".repeat(e.getValue()));
+        boolean weekly = days > 30;
+        int bars = weekly ? (days + 6) / 7 : days;
+        UI.section("Progress (last " + days + " days" + (weekly ? ", by week" : "") + ")");
+        for (int i = bars - 1; i >= 0; i--) {
+            LocalDate d = weekly ? today.minusWeeks(i) : today.minusDays(i);
+            int done = weekly ? series.week(ActivitySeries.TASKS, d) : series.day(ActivitySeries.TASKS, d);
+            int logged = weekly ? series.week(ActivitySeries.HABITS, d) : series.day(ActivitySeries.HABITS, d);
+            if (weekly) d = d.minusDays(d.getDayOfWeek().getValue() - 1);
+            System.out.printf("%s: %s%s\n", d, "#".repeat(done), "+".repeat(logged));
         }
     }
 }
@@ -223,6 +432,7 @@ class Admin extends User {
     @Override
     public void showMenu(Scanner sc, TrackNestSystem sys) {
         UI.setTheme(getTheme());
+        UI.setQuickCommands(line -> sys.quickCommand(this, line));
         List<String> options = Arrays.asList(
             "View All Users",
             "Broadcast Productivity Tip",
@@ -234,11 +444,15 @@ class Admin extends User {
             "User Activity Log",
             "Deactivate/Reactivate User",
             "Broadcast Announcement",
-            "Export All Data (CSV)",
+            "Export All Data (CSV/JSONL)",
             "Set Language",
             "Toggle Accessibility Mode",
             "Help",
-            "Back/Logout"
+            "Back/Logout",
+            "Export All Data (JSON)",
+            "Unlock User Login",
+            "Points Leaderboard",
+            "Import Data (CSV/JSONL)"
         );
         while (true) {
             int ch = UI.menuSelect(sc, "Admin Menu", options);
@@ -250,10 +464,10 @@ class Admin extends User {
                 case 5: sys.createGoalTemplate(sc); break;
                 case 6: sys.showSystemStats(); break;
                 case 7: sys.changePassword(this, sc); break;
-                case 8: sys.viewActivityLog(); break;
+                case 8: sys.viewActivityLog(sc); break;
                 case 9: sys.deactivateUser(sc); break;
                 case 10: sys.broadcastAnnouncement(sc); break;
-                case 11: sys.exportAllDataCSV(); break;
+                case 11: sys.exportAllData(sc); break;
                 case 12:
                     UI.prompt("Set language (EN/ES): ");
                     String lang = sc.nextLine();
@@ -270,6 +484,10 @@ class Admin extends User {
                     System.out.println("- View users, create templates, and broadcast tips.\n- Use 'Back/Logout' to return to main menu.");
                     break;
                 case 15: return;
+                case 16: sys.exportDataJSON(); break;
+                case 17: sys.unlockLogin(sc); break;
+                case 18: sys.showLeaderboard(sc); break;
+                case 19: sys.importData(sc); break;
             }
         }
     }
@@ -283,6 +501,7 @@ class NormalUser extends User {
     @Override
     public void showMenu(Scanner sc, TrackNestSystem sys) {
         UI.setTheme(getTheme());
+        UI.setQuickCommands(line -> sys.quickCommand(this, line));
         sys.showOverdueTasks(this);
         sys.autoCloseOverdueGoals(this);
         List<String> options = Arrays.asList(
@@ -321,7 +540,9 @@ class NormalUser extends User {
             "Set/View Reminder Preference",
             "Preview Theme",
             "Set Language",
-            "Toggle Accessibility Mode"
+            "Toggle Accessibility Mode",
+            "Set/Clear Reminder Date",
+            "View Progress Graph"
         );
         while (true) {
             int ch = UI.menuSelect(sc, "User Menu", options);
@@ -355,20 +576,12 @@ class NormalUser extends User {
                         dailyTaskTarget = t;
                         UI.success("Target set: " + t + " tasks/day");
                     } else {
-                        long count = getTasks().stream().filter(Task::isDone).filter(task -> task.getDueDate().equals(LocalDate.now())).count();
+                        long count = index().doneTasksDueBetween(LocalDate.now(), LocalDate.now().plusDays(1)).size();
                         UI.info("Today's completed tasks: " + count + " / " + dailyTaskTarget);
                     }
                     break;
                 case 21:
-                    int n = 0;
-                    for (Habit h : getHabits()) {
-                        if ("Daily".equalsIgnoreCase(h.getFrequency())) {
-                            h.logToday();
-                            habitHistory.add("Quick-log " + h.getName() + " on "+LocalDate.now());
-                            n++; addPoints(1);
-                        }
-                    }
-                    UI.success("Quick-logged "+n+" daily habits for today.");
+                    UI.success("Quick-logged "+sys.quickLogDailyHabits(this)+" daily habits for today.");
                     break;
                 case 22:
                     UI.prompt("Pin (1) Task or (2) Goal or (3) Habit? ");
@@ -378,19 +591,19 @@ class NormalUser extends User {
                             for (int i=0; i<getTasks().size(); i++) System.out.println((i+1)+". "+getTasks().get(i));
                             UI.prompt("Pick task: ");
                             int idx = UI.getIntInput(sc, 1, getTasks().size())-1;
-                            getTasks().get(idx).setPinned(!getTasks().get(idx).isPinned());
+                            sys.setPinned(this, getTasks().get(idx), !getTasks().get(idx).isPinned());
                             UI.info("Pinned?: "+getTasks().get(idx).isPinned());
                         } else if ("2".equals(pinWhat)) {
                             for (int i=0; i<getGoals().size(); i++) System.out.println((i+1)+". "+getGoals().get(i));
                             UI.prompt("Pick goal: ");
                             int idx = UI.getIntInput(sc, 1, getGoals().size())-1;
-                            getGoals().get(idx).setPinned(!getGoals().get(idx).isPinned());
+                            sys.setPinned(this, getGoals().get(idx), !getGoals().get(idx).isPinned());
                             UI.info("Pinned?: "+getGoals().get(idx).isPinned());
                         } else if ("3".equals(pinWhat)) {
                             for (int i=0; i<getHabits().size(); i++) System.out.println((i+1)+". "+getHabits().get(i));
                             UI.prompt("Pick habit: ");
                             int idx = UI.getIntInput(sc, 1, getHabits().size())-1;
-                            getHabits().get(idx).setPinned(!getHabits().get(idx).isPinned());
+                            sys.setPinned(this, getHabits().get(idx), !getHabits().get(idx).isPinned());
                             UI.info("Pinned?: "+getHabits().get(idx).isPinned());
                         }
                     } catch(Exception e) { UI.error("Invalid!"); }
@@ -403,13 +616,13 @@ class NormalUser extends User {
                         for (int i=0; i<getGoals().size(); i++) System.out.println((i+1)+". "+getGoals().get(i));
                         UI.prompt("Pick goal: ");
                         int idx = UI.getIntInput(sc, 1, getGoals().size())-1;
-                        UI.prompt("Note text: "); getGoals().get(idx).setNote(UI.getNonEmptyInput(sc));
+                        UI.prompt("Note text: "); sys.updateNote(this, getGoals().get(idx), UI.getNonEmptyInput(sc));
                         UI.success("Note added.");
                     } else if ("2".equals(noteType)) {
                         for (int i=0; i<getHabits().size(); i++) System.out.println((i+1)+". "+getHabits().get(i));
                         UI.prompt("Pick habit: ");
                         int idx = UI.getIntInput(sc, 1, getHabits().size())-1;
-                        UI.prompt("Note text: "); getHabits().get(idx).setNote(UI.getNonEmptyInput(sc));
+                        UI.prompt("Note text: "); sys.updateNote(this, getHabits().get(idx), UI.getNonEmptyInput(sc));
                         UI.success("Note added.");
                     }
                     break;
@@ -466,13 +679,34 @@ class NormalUser extends User {
                     UI.setAccessibilityMode(isAccessibilityMode());
                     UI.info("Accessibility mode: " + (isAccessibilityMode() ? "ON" : "OFF"));
                     break;
+                case 37:
+                    UI.prompt("Remind about (1) Task, (2) Goal or (3) Habit? ");
+                    String remindWhat = UI.getNonEmptyInput(sc);
+                    List<? extends Item> items = "1".equals(remindWhat) ? getTasks() : "2".equals(remindWhat) ? getGoals() : "3".equals(remindWhat) ? getHabits() : null;
+                    if (items == null || items.isEmpty()) { UI.error("Nothing to pick."); break; }
+                    for (int i=0; i<items.size(); i++) System.out.println((i+1)+". "+items.get(i));
+                    UI.prompt("Pick item: ");
+                    Item picked = items.get(UI.getIntInput(sc, 1, items.size())-1);
+                    UI.prompt("Reminder date (YYYY-MM-DD, blank to clear): ");
+                    String when = sc.nextLine().trim();
+                    try {
+                        sys.setReminder(this, picked, when.isEmpty() ? null : LocalDate.parse(when));
+                        UI.success(when.isEmpty() ? "Reminder cleared." : "Reminder set for " + when + ".");
+                    } catch (Exception e) { UI.error("Invalid date!"); }
+                    break;
+                case 38:
+                    UI.prompt("Show (1) 7 days, (2) 30 days or (3) 365 days? ");
+                    int range = UI.getIntInput(sc, 1, 3);
+                    showProgressGraph(range == 1 ? 7 : range == 2 ? 30 : 365);
+                    break;
             }
         }
     }
 }
 
 // Goal
-class Goal implements Trackable {
+class Goal implements Trackable, Item {
+    private long id;
     private String title;
     private String description;
     private LocalDate deadline;
@@ -490,6 +724,8 @@ class Goal implements Trackable {
         this.note = null;
     }
     @Override public boolean checkCompletion() { return "Complete".equalsIgnoreCase(status); }
+    @Override public long getId() { return id; }
+    @Override public void setId(long id) { this.id = id; }
     public void markComplete() { status = "Complete"; }
     public void setTitle(String t) { title = t; }
     public void setDescription(String d) { description = d; }
@@ -513,11 +749,11 @@ class Goal implements Trackable {
 }
 
 // Habit
-class Habit {
+class Habit implements Item {
+    private long id;
     private String name;
     private String frequency;
-    private int streakCount;
-    private LocalDate lastLoggedDate;
+    private HabitLog log = new HabitLog();
     private boolean pinned;
     private String note;
     private LocalDate reminderDate;
@@ -525,49 +761,46 @@ class Habit {
     public Habit(String name, String frequency) {
         this.name = name;
         this.frequency = frequency;
-        this.streakCount = 0;
-        this.lastLoggedDate = null;
         this.pinned = false;
         this.note = null;
     }
+    @Override public long getId() { return id; }
+    @Override public void setId(long id) { this.id = id; }
     public String getName() { return name; }
-    public int getStreak() { return streakCount; }
+    public boolean isWeekly() { return "Weekly".equalsIgnoreCase(frequency); }
+    // Streaks are read off the log: consecutive days, or consecutive Monday-based weeks for weekly habits
+    public int getStreak() { return isWeekly() ? log.weekStreak(LocalDate.now()) : log.dayStreak(LocalDate.now()); }
+    public int getLongestStreak() { return isWeekly() ? log.longestWeekStreak() : log.longestDayStreak(); }
     public String getFrequency() { return frequency; }
-    public LocalDate getLastLoggedDate() { return lastLoggedDate; }
+    public LocalDate getLastLoggedDate() { return log.lastDay(); }
+    public HabitLog getLog() { return log; }
+    void setLog(HabitLog log) { this.log = log; }
     public void setName(String n) { name = n; }
     public void setFrequency(String f) { frequency = f; }
     public void setPinned(boolean p) { this.pinned = p; }
     public boolean isPinned() { return pinned; }
     public void setNote(String nt) { this.note = nt; }
     public String getNote() { return note; }
-    public void setStreak(int streak) { this.streakCount = streak; }
-    public void setLastLoggedDate(LocalDate date) { this.lastLoggedDate = date; }
-    public void logToday() {
-        LocalDate today = LocalDate.now();
-        if(lastLoggedDate != null) {
-            if(frequency.equalsIgnoreCase("Daily") && lastLoggedDate.plusDays(1).equals(today)) {
-                streakCount++;
-            } else if(frequency.equalsIgnoreCase("Weekly") && lastLoggedDate.plusWeeks(1).equals(today)) {
-                streakCount++;
-            } else if (lastLoggedDate.equals(today)) {
-                // already logged today
-            } else {
-                streakCount = 1;
-            }
-        } else { streakCount = 1; }
-        lastLoggedDate = today;
+    // Data from before the log kept only a streak and its last day; replay that as logged days or weeks
+    void restoreLegacyStreak(int streak, LocalDate last) {
+        if (last == null || !log.isEmpty()) return;
+        for (int i = Math.min(Math.max(streak, 1), 3650) - 1; i >= 0; i--)
+            log.log(isWeekly() ? last.minusWeeks(i) : last.minusDays(i));
     }
+    // False if today was already logged
+    public boolean logToday() { return log.log(LocalDate.now()); }
     public void setReminderDate(LocalDate d) { reminderDate = d; }
     public LocalDate getReminderDate() { return reminderDate; }
     public void setArchived(boolean a) { archived = a; }
     public boolean isArchived() { return archived; }
     public String toString() {
-        return name + " [" + frequency + "] (Last: " + (lastLoggedDate==null?"Never":lastLoggedDate) + ")";
+        return name + " [" + frequency + "] (Last: " + (log.lastDay()==null?"Never":log.lastDay()) + ")";
     }
 }
 
 // Task
-class Task {
+class Task implements Item {
+    private long id;
     private String taskName;
     private LocalDate dueDate;
     private String priority;
@@ -583,6 +816,8 @@ class Task {
         this.isDone = false;
         this.pinned = false;
     }
+    @Override public long getId() { return id; }
+    @Override public void setId(long id) { this.id = id; }
     public void markComplete() { isDone = true; }
     public boolean isDone() { return isDone; }
     public boolean isOverdue() { return LocalDate.now().isAfter(dueDate) && !isDone; }
@@ -605,612 +840,6611 @@ class Task {
     }
 }
 
-// Singleton Logger
-class Logger {
-    private static Logger instance = null;
-    private Logger() {}
-    public static Logger getInstance() {
-        if(instance == null) instance = new Logger();
-        return instance;
+// Day-indexed bitset of a habit's completions: bit i is startDay + i, starting at the first logged day,
+// so a habit costs about one bit per day. Streaks, last log and window counts are word-at-a-time bit
+// operations; the longest daily run is kept up to date as days are logged.
+final class HabitLog {
+    private long startDay;
+    private long[] words = new long[0];
+    private int count, longest;
+    private long lastDay = Long.MIN_VALUE;
+
+    HabitLog() {}
+    // From persisted words; totals are recomputed with one pass over them
+    HabitLog(long startDay, long[] words) {
+        this.startDay = startDay;
+        this.words = words.clone();
+        for (int w = words.length - 1; w >= 0 && lastDay == Long.MIN_VALUE; w--)
+            if (words[w] != 0) lastDay = startDay + w * 64L + 63 - Long.numberOfLeadingZeros(words[w]);
+        int run = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+            if (word == -1L) { run += 64; continue; }
+            // Longest run inside this word, plus the run carried in from the previous one
+            longest = Math.max(longest, run + Long.numberOfTrailingZeros(~word));
+            longest = Math.max(longest, longestInside(word));
+            run = Long.numberOfLeadingZeros(~word);
+        }
+        longest = Math.max(longest, run);
     }
-    public void log(String message) {
-        System.out.println("[LOG] " + message);
+    private static int longestInside(long word) {
+        int n = 0;
+        for (long x = word; x != 0; x &= x << 1) n++;
+        return n;
     }
-}
 
-// Templates + Core
-class TrackNestSystem {
-    private static int userCounter = 1;
-    private Map<String, User> users;
-    private List<String> habitTemplates;
-    private List<GoalTemplate> goalTemplates;
-    private List<String> tips;
-    private Logger logger = Logger.getInstance();
-    private String[] motivationalQuotes = {
-        "Success is the sum of small efforts repeated day in and day out.",
-        "The secret of getting ahead is getting started.",
-        "Don’t watch the clock; do what it does. Keep going.",
-        "Action is the foundational key to all success.",
-        "One day or day one. You decide."
-    };
-    private static final String DATA_FILE = "tracknest_data.json";
-    private List<String> activityLog = new ArrayList<>();
-    private String pendingAnnouncement = null;
-    public TrackNestSystem() {
-        users = new HashMap<>();
-        habitTemplates = new ArrayList<>();
-        goalTemplates = new ArrayList<>();
-        tips = new ArrayList<>();
+    synchronized boolean isEmpty() { return count == 0; }
+    synchronized int count() { return count; }
+    synchronized long startDay() { return startDay; }
+    // Words up to the last set bit
+    synchronized long[] words() {
+        int n = words.length;
+        while (n > 0 && words[n - 1] == 0) n--;
+        return Arrays.copyOf(words, n);
     }
-    // Motivational quote
-    public void showRandomQuote() {
-        Random r = new Random();
-        System.out.println("Quote of the Day: \"" + motivationalQuotes[r.nextInt(motivationalQuotes.length)] + "\"");
+    synchronized LocalDate lastDay() { return count == 0 ? null : LocalDate.ofEpochDay(lastDay); }
+
+    // Sets the day's bit; false if it was already set
+    synchronized boolean log(LocalDate date) {
+        long day = date.toEpochDay();
+        if (count == 0) { startDay = day; words = new long[1]; }
+        else if (day < startDay) rebase(day);
+        long idx = day - startDay;
+        int w = (int) (idx >>> 6);
+        if (w >= words.length) words = Arrays.copyOf(words, Math.max(w + 1, words.length * 2));
+        long bit = 1L << idx;
+        if ((words[w] & bit) != 0) return false;
+        words[w] |= bit;
+        count++;
+        lastDay = Math.max(lastDay, day);
+        longest = Math.max(longest, runBack(idx) + runForward(idx + 1));
+        return true;
     }
-    public void registerUser(String role, String name, String email, String password, String secQ, String secA) {
-        if(users.containsKey(email))
-            throw new IllegalArgumentException("User already exists!");
-        if ("admin".equalsIgnoreCase(role)) {
-            for (User u : users.values()) if (u instanceof Admin) throw new IllegalArgumentException("Only one admin allowed!");
+    // Moves bit 0 back to an earlier day, shifting the whole set up
+    private void rebase(long day) {
+        long shift = startDay - day;
+        long[] grown = new long[(int) ((words.length * 64L + shift + 63) >>> 6)];
+        int ws = (int) (shift >>> 6), bs = (int) (shift & 63);
+        for (int i = 0; i < words.length; i++) {
+            grown[i + ws] |= words[i] << bs;
+            if (bs != 0 && i + ws + 1 < grown.length) grown[i + ws + 1] |= words[i] >>> (64 - bs);
         }
-        String hash = User.hashPassword(password);
-        String secAHash = User.hashPassword(secA);
-        User user = "admin".equalsIgnoreCase(role) ? new Admin(userCounter++, name, email, hash, secQ, secAHash) : new NormalUser(userCounter++, name, email, hash, secQ, secAHash);
-        users.put(email, user);
-        logger.log("New user registered: " + role + " - " + name + " (" + email + ")");
-        saveData();
+        words = grown;
+        startDay = day;
     }
-    public User login(String email, String password) {
-        if(!users.containsKey(email)) throw new NoSuchElementException("No such user!");
-        User user = users.get(email);
-        if (!user.isActive()) throw new SecurityException("Account is deactivated. Contact admin.");
-        String hash = User.hashPassword(password);
-        if (!user.getPasswordHash().equals(hash)) throw new SecurityException("Incorrect password!");
-        logActivity("Login: " + email);
-        return user;
+    synchronized boolean isLogged(LocalDate date) {
+        long idx = date.toEpochDay() - startDay;
+        return count > 0 && idx >= 0 && idx < words.length * 64L && (words[(int) (idx >>> 6)] & (1L << idx)) != 0;
     }
-    public void deleteAccount(User user) {
-        UI.prompt("Are you sure you want to delete your account? Type YES to confirm: ");
-        if (UI.getNonEmptyInput(new Scanner(System.in)).equals("YES")) {
-            users.remove(user.getEmail()); logger.log("Deleted user: "+user.getEmail());
-            UI.success("Account deleted.");
-            saveData();
-        } else {
-            UI.info("Account deletion cancelled.");
-        }
+
+    // Consecutive days ending today, or ending yesterday while today is still open
+    synchronized int dayStreak(LocalDate today) {
+        if (count == 0) return 0;
+        long idx = today.toEpochDay() - startDay;
+        int run = runBack(idx);
+        return run > 0 ? run : runBack(idx - 1);
     }
-    public void showAllUsers() {
-        System.out.println("All Users:");
-        for (User u : users.values()) System.out.println(u.getName() + " (" + u.getEmail() + ")");
+    synchronized int longestDayStreak() { return longest; }
+    // Consecutive Monday-based weeks with at least one log, ending this week or, while it is empty, last week
+    synchronized int weekStreak(LocalDate today) {
+        if (count == 0) return 0;
+        long week = weekStart(today.toEpochDay());
+        if (countDays(week, week + 7) == 0) week -= 7;
+        int run = 0;
+        for (; week + 7 > startDay && countDays(week, week + 7) > 0; week -= 7) run++;
+        return run;
     }
-    public void broadcastTip(String tip) { tips.add(tip); System.out.println("BROADCASTING: " + tip); }
-    public void viewAllTips() {
-        System.out.println("--- Productivity Tips log ---");
-        for (String t : tips) System.out.println("- " + t);
+    synchronized int longestWeekStreak() {
+        if (count == 0) return 0;
+        int best = 0, run = 0;
+        for (long week = weekStart(startDay); week <= lastDay; week += 7) {
+            run = countDays(week, week + 7) > 0 ? run + 1 : 0;
+            best = Math.max(best, run);
+        }
+        return best;
     }
-    public void createHabitTemplate(Scanner sc) {
-        System.out.print("Habit template name: ");
-        habitTemplates.add(sc.nextLine());
-        logger.log("Habit template added.");
+    // Logged days in [from, to)
+    synchronized int countBetween(LocalDate from, LocalDate to) {
+        return count == 0 ? 0 : countDays(from.toEpochDay(), to.toEpochDay());
     }
-    public void instantiateHabitTemplate(User user, Scanner sc) {
-        if (habitTemplates.isEmpty()) { System.out.println("No habit templates available."); return; }
-        for (int i=0;i<habitTemplates.size();i++)
-            System.out.println((i+1)+". "+habitTemplates.get(i));
-        System.out.print("Pick template number: ");
-        try {
-            int idx = Integer.parseInt(sc.nextLine()) - 1;
-            if (idx<0 || idx>=habitTemplates.size()) throw new Exception();
-            System.out.print("Frequency (Daily/Weekly): ");
-            String f = sc.nextLine();
-            Habit h = new Habit(habitTemplates.get(idx), f);
-            user.getHabits().add(h);
-            logger.log("Habit template instantiated.");
-        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    // Share of the window's days, or of its weeks for weekly habits, that were logged; [from, to)
+    synchronized double completionRate(LocalDate from, LocalDate to, boolean weekly) {
+        long a = from.toEpochDay(), b = to.toEpochDay();
+        if (b <= a) return 0;
+        if (!weekly) return (double) countDays(a, b) / (b - a);
+        int weeks = 0, hit = 0;
+        for (long week = weekStart(a); week < b; week += 7, weeks++)
+            if (countDays(Math.max(week, a), Math.min(week + 7, b)) > 0) hit++;
+        return (double) hit / weeks;
     }
-    public void createGoalTemplate(Scanner sc) {
-        System.out.print("Goal template title: ");
-        String t = sc.nextLine();
-        System.out.print("Description: ");
-        String d = sc.nextLine();
-        System.out.print("Recommended duration in days: ");
-        int dur = Integer.parseInt(sc.nextLine());
-        goalTemplates.add(new GoalTemplate(t, d, dur));
-        logger.log("Goal template created.");
+
+    private static long weekStart(long epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7); // 1970-01-01 was a Thursday
     }
-    public void instantiateGoalTemplate(User user, Scanner sc) {
-        if (goalTemplates.isEmpty()) { System.out.println("No goal templates."); return; }
-        for (int i=0;i<goalTemplates.size();i++)
-            System.out.println((i+1)+". "+goalTemplates.get(i));
-        System.out.print("Pick template number: ");
-        try {
-            int idx = Integer.parseInt(sc.nextLine())-1;
-            if (idx<0 || idx>=goalTemplates.size()) throw new Exception();
-            GoalTemplate gt = goalTemplates.get(idx);
-            LocalDate deadline = LocalDate.now().plusDays(gt.recommendedDurationDays);
-            Goal g = new Goal(gt.title, gt.desc, deadline);
-            user.getGoals().add(g);
-            logger.log("Goal template instantiated.");
-        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    // Set bits in [from, to) by epoch day, clipped to the stored range
+    private int countDays(long from, long to) {
+        long a = Math.max(0, from - startDay), b = Math.min(words.length * 64L, to - startDay);
+        if (a >= b) return 0;
+        int wa = (int) (a >>> 6), wb = (int) ((b - 1) >>> 6);
+        long first = -1L << a, last = -1L >>> (63 - ((b - 1) & 63));
+        if (wa == wb) return Long.bitCount(words[wa] & first & last);
+        int n = Long.bitCount(words[wa] & first) + Long.bitCount(words[wb] & last);
+        for (int w = wa + 1; w < wb; w++) n += Long.bitCount(words[w]);
+        return n;
     }
-    public void addGoal(User user, Scanner sc) {
-        System.out.print("Goal title: "); String title = sc.nextLine();
-        System.out.print("Description: "); String desc = sc.nextLine();
-        LocalDate deadline = null;
-        while(true) {
-            try { System.out.print("Deadline (YYYY-MM-DD): ");
-                deadline = LocalDate.parse(sc.nextLine()); break;
-            } catch(Exception e) { System.out.println("Invalid date!"); }
+    // Set bits at idx, idx - 1, ... until the first gap
+    private int runBack(long idx) {
+        if (idx < 0 || idx >= words.length * 64L) return 0;
+        int w = (int) (idx >>> 6), b = (int) (idx & 63);
+        int n = Long.numberOfLeadingZeros(~(words[w] << (63 - b)));
+        if (n <= b) return n;
+        int run = b + 1;
+        for (w--; w >= 0; w--) {
+            if (words[w] != -1L) return run + Long.numberOfLeadingZeros(~words[w]);
+            run += 64;
         }
-        Goal goal = new Goal(title, desc, deadline);
-        user.getGoals().add(goal);
-        logger.log("Goal added for " + user.getName());
-        saveData();
+        return run;
     }
-    public void editDeleteGoal(User user, Scanner sc) {
-        if(user.getGoals().isEmpty()) { System.out.println("No goals."); return; }
-        int c=1;
-        for (Goal g : user.getGoals()) System.out.println((c++)+". "+g);
-        UI.prompt("Edit or Delete? (E/D): ");
-        String op = UI.getNonEmptyInput(sc).toUpperCase();
-        UI.prompt("Pick goal number: ");
-        try {
-            int idx = UI.getIntInput(sc, 1, user.getGoals().size())-1;
-            if (idx<0 || idx>=user.getGoals().size()) throw new Exception();
-            if (op.equals("D")) {
-                UI.prompt("Are you sure you want to delete this goal? Type YES to confirm: ");
-                if (UI.getNonEmptyInput(sc).equals("YES")) {
-                    user.getGoals().remove(idx); logger.log("Goal deleted.");
-                    UI.success("Goal deleted.");
-                    saveData();
-                } else {
-                    UI.info("Delete cancelled.");
-                }
-            }
-            else {
-                Goal g = user.getGoals().get(idx);
-                System.out.println("Edit fields: 1.Title 2.Description 3.Deadline 4.Status");
-                String f = UI.getNonEmptyInput(sc);
-                switch(f) {
-                    case "1": UI.prompt("New title: "); g.setTitle(UI.getNonEmptyInput(sc)); break;
-                    case "2": UI.prompt("New desc: "); g.setDescription(UI.getNonEmptyInput(sc)); break;
-                    case "3": UI.prompt("New deadline YYYY-MM-DD: "); g.setDeadline(UI.getDateInput(sc)); break;
-                    case "4": UI.prompt("Set status (Active/Complete): "); g.setStatus(UI.getNonEmptyInput(sc)); break;
-                    default: UI.error("Unknown field.");
-                }
-                UI.success("Goal edited.");
-                logger.log("Goal edited.");
-                saveData();
-            }
-        } catch(Exception e) { UI.error("Invalid selection!"); }
+    // Set bits at idx, idx + 1, ... until the first gap
+    private int runForward(long idx) {
+        if (idx < 0 || idx >= words.length * 64L) return 0;
+        int w = (int) (idx >>> 6), b = (int) (idx & 63);
+        int n = Long.numberOfTrailingZeros(~(words[w] >>> b));
+        if (n < 64 - b) return n;
+        int run = 64 - b;
+        for (w++; w < words.length; w++) {
+            if (words[w] != -1L) return run + Long.numberOfTrailingZeros(~words[w]);
+            run += 64;
+        }
+        return run;
     }
-    public void addTask(User user, Scanner sc) {
-        System.out.print("Task Name: "); String name = sc.nextLine();
-        LocalDate due = null;
-        while(true) {
-            try { System.out.print("Due Date (YYYY-MM-DD): "); due = LocalDate.parse(sc.nextLine()); break; }
-            catch(Exception e) { System.out.println("Invalid date!"); }
+}
+
+// Rolling per-user counters of tasks completed and habits logged: a ring of daily buckets covering the
+// last 53 weeks, plus a ring of Monday-based weekly totals, so a chart reads one bucket per bar.
+// Only the daily ring is persisted; weekly totals are rebuilt from it.
+final class ActivitySeries {
+    static final int TASKS = 0, HABITS = 1;
+    static final int WEEKS = 53, DAYS = WEEKS * 7;
+    private static final long NONE = Long.MIN_VALUE;
+    private final int[][] days = new int[2][DAYS], weeks = new int[2][WEEKS];
+    private long headDay = NONE, headWeek = NONE; // newest bucket of each ring
+
+    synchronized void record(int kind, LocalDate date, int n) {
+        long day = date.toEpochDay(), week = week(day);
+        headDay = roll(days, headDay, day);
+        headWeek = roll(weeks, headWeek, week);
+        if (headDay - day < DAYS) days[kind][slot(day, DAYS)] += n;
+        if (headWeek - week < WEEKS) weeks[kind][slot(week, WEEKS)] += n;
+    }
+    synchronized int day(int kind, LocalDate date) { return bucket(days[kind], headDay, date.toEpochDay()); }
+    // Total for the Monday-based week containing the date
+    synchronized int week(int kind, LocalDate date) { return bucket(weeks[kind], headWeek, week(date.toEpochDay())); }
+
+    // Newest day and the daily counts up to it, oldest first, leading empty days dropped
+    synchronized LocalDate head() { return headDay == NONE ? null : LocalDate.ofEpochDay(headDay); }
+    synchronized int[][] dailyCounts() {
+        if (headDay == NONE) return new int[2][0];
+        int skip = 0;
+        while (skip < DAYS && days[TASKS][slot(headDay - DAYS + 1 + skip, DAYS)] == 0 && days[HABITS][slot(headDay - DAYS + 1 + skip, DAYS)] == 0) skip++;
+        int[][] out = new int[2][DAYS - skip];
+        for (int i = 0; i < out[0].length; i++) {
+            int slot = slot(headDay - out[0].length + 1 + i, DAYS);
+            out[TASKS][i] = days[TASKS][slot];
+            out[HABITS][i] = days[HABITS][slot];
         }
-        System.out.print("Priority (High/Medium/Low): "); String prio = sc.nextLine();
-        Task t = new Task(name, due, prio);
-        user.getTasks().add(t);
-        logger.log("Task added.");
-        saveData();
+        return out;
     }
-    public void editDeleteTask(User user, Scanner sc) {
-        if(user.getTasks().isEmpty()) { System.out.println("No tasks."); return; }
-        int c=1; for (Task t : user.getTasks()) System.out.println((c++)+". "+t);
-        UI.prompt("Edit or Delete? (E/D): ");
-        String op = UI.getNonEmptyInput(sc).toUpperCase();
-        UI.prompt("Pick task number: ");
-        try {
-            int idx = UI.getIntInput(sc, 1, user.getTasks().size())-1;
-            if (idx<0 || idx>=user.getTasks().size()) throw new Exception();
-            if (op.equals("D")) {
-                UI.prompt("Are you sure you want to delete this task? Type YES to confirm: ");
-                if (UI.getNonEmptyInput(sc).equals("YES")) {
-                    user.getTasks().remove(idx); logger.log("Task deleted.");
-                    UI.success("Task deleted.");
-                    saveData();
-                } else {
-                    UI.info("Delete cancelled.");
-                }
-            }
-            else {
-                Task t = user.getTasks().get(idx);
-                System.out.println("Edit fields: 1.Name 2.DueDate 3.Priority");
-                String f = UI.getNonEmptyInput(sc);
-                switch(f) {
-                    case "1": UI.prompt("New name: "); t.setTaskName(UI.getNonEmptyInput(sc)); break;
-                    case "2": UI.prompt("New DueDate YYYY-MM-DD: "); t.setDueDate(UI.getDateInput(sc)); break;
-                    case "3": UI.prompt("New priority: "); t.setPriority(UI.getNonEmptyInput(sc)); break;
-                    default: UI.error("Unknown field.");
-                }
-                UI.success("Task edited.");
-                logger.log("Task edited.");
-                saveData();
-            }
-        } catch(Exception e) { UI.error("Invalid selection!"); }
+    static ActivitySeries restore(LocalDate head, int[] tasks, int[] habits) {
+        ActivitySeries s = new ActivitySeries();
+        if (head == null) return s;
+        s.record(TASKS, head, 0);
+        for (int i = 0; i < tasks.length; i++) {
+            LocalDate d = head.minusDays(tasks.length - 1 - i);
+            if (tasks[i] != 0) s.record(TASKS, d, tasks[i]);
+            if (habits[i] != 0) s.record(HABITS, d, habits[i]);
+        }
+        return s;
     }
-    public void addHabit(User user, Scanner sc) {
-        System.out.print("Habit name: "); String name = sc.nextLine();
-        System.out.print("Frequency (Daily/Weekly): "); String freq = sc.nextLine();
-        Habit h = new Habit(name, freq);
-        user.getHabits().add(h);
-        logger.log("Habit added for " + user.getName());
-        saveData();
+
+    // Moves a ring's head forward, clearing the buckets it passes over
+    private static long roll(int[][] ring, long head, long to) {
+        int size = ring[0].length;
+        if (head != NONE && to <= head) return head;
+        if (head == NONE || to - head >= size) {
+            for (int[] r : ring) Arrays.fill(r, 0);
+            return to;
+        }
+        for (long b = head + 1; b <= to; b++) for (int[] r : ring) r[slot(b, size)] = 0;
+        return to;
     }
-    public void editDeleteHabit(User user, Scanner sc) {
-        if(user.getHabits().isEmpty()) { System.out.println("No habits."); return; }
-        int c=1; for (Habit h : user.getHabits()) System.out.println((c++)+". "+h);
-        UI.prompt("Edit or Delete? (E/D): ");
-        String op = UI.getNonEmptyInput(sc).toUpperCase();
-        UI.prompt("Pick habit number: ");
-        try {
-            int idx = UI.getIntInput(sc, 1, user.getHabits().size())-1;
-            if (idx<0 || idx>=user.getHabits().size()) throw new Exception();
-            if (op.equals("D")) {
-                UI.prompt("Are you sure you want to delete this habit? Type YES to confirm: ");
-                if (UI.getNonEmptyInput(sc).equals("YES")) {
-                    user.getHabits().remove(idx); logger.log("Habit deleted.");
-                    UI.success("Habit deleted.");
-                    saveData();
-                } else {
-                    UI.info("Delete cancelled.");
-                }
-            }
-            else {
-                Habit h = user.getHabits().get(idx);
-                System.out.println("Edit fields: 1.Name 2.Frequency");
-                String f = UI.getNonEmptyInput(sc);
-                switch(f) {
-                    case "1": UI.prompt("New name: "); h.setName(UI.getNonEmptyInput(sc)); break;
-                    case "2": UI.prompt("New Frequency: "); h.setFrequency(UI.getNonEmptyInput(sc)); break;
-                    default: UI.error("Unknown field.");
-                }
-                UI.success("Habit edited.");
-                logger.log("Habit edited.");
-                saveData();
-            }
-        } catch(Exception e) { UI.error("Invalid selection!"); }
+    private static int bucket(int[] ring, long head, long b) {
+        return head == NONE || b > head || head - b >= ring.length ? 0 : ring[slot(b, ring.length)];
     }
-    public void trackHabit(User user, Scanner sc) {
-        List<Habit> habits = user.getHabits();
-        if(habits.isEmpty()) { System.out.println("No habits!"); return;}
-        System.out.println("Your Habits:"); for(int i=0; i<habits.size(); i++)
-            System.out.println((i+1)+". "+habits.get(i));
-        System.out.print("Pick habit number to log: ");
-        try {
-            int idx = Integer.parseInt(sc.nextLine()) - 1;
-            if(idx<0 || idx>=habits.size()) throw new Exception();
-            Habit h = habits.get(idx);
-            h.logToday();
-            user.habitHistory.add("Logged "+h.getName()+" on "+LocalDate.now());
-            user.addPoints(5);
-            if (h.getStreak()==1) user.addBadge("First Habit Logged!");
-            if (h.getStreak()>=7) user.addBadge("Weekly Streak Master");
-            logger.log("Habit logged. +" + 5 + " pts!");
-        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    private static int slot(long b, int size) { return (int) Math.floorMod(b, (long) size); }
+    private static long week(long epochDay) { return Math.floorDiv(epochDay + 3, 7); } // 1970-01-01 was a Thursday
+}
+
+// Points and badges as reactions to domain events. The core raises an event only on a real state change
+// (a task becoming done, a habit's first log of the day, a goal becoming Complete); the engine bumps one
+// per-user counter and checks the few rules listening for that event. Reads never award anything, and
+// badges are a set, so a threshold crossed again awards nothing twice.
+final class RewardEngine {
+    static final int TASK_COMPLETED = 0, HABIT_LOGGED = 1, HABIT_QUICK_LOGGED = 2, GOAL_COMPLETED = 3;
+    // Per-user counters
+    static final int TASKS_DONE = 0, HABIT_LOGS = 1, GOALS_DONE = 2;
+    private static final int[] COUNTER = { TASKS_DONE, HABIT_LOGS, HABIT_LOGS, GOALS_DONE };
+    // Goals can be reopened and completed again, so they only earn one-off badges
+    private static final int[] POINTS = { 10, 5, 1, 0 };
+    private static final int STREAK_BONUS_EVERY = 7, STREAK_BONUS = 50;
+
+    // A badge for reaching a threshold on the event's counter, or on the habit's streak
+    static final class Rule {
+        final String badge;
+        final boolean onStreak;
+        final int threshold;
+        Rule(String badge, boolean onStreak, int threshold) { this.badge = badge; this.onStreak = onStreak; this.threshold = threshold; }
     }
-    public void logTaskCompletion(User user, Scanner sc) {
-        List<Task> tasks = user.getTasks();
+    private static final Rule[] TASK_RULES = {
+        new Rule("First Task Complete", false, 1),
+        new Rule("10 Tasks Complete", false, 10),
+        new Rule("100 Tasks Complete", false, 100)
+    };
+    private static final Rule[] HABIT_RULES = {
+        new Rule("First Habit Logged!", false, 1),
+        new Rule("Weekly Streak Master", true, 7),
+        new Rule("Monthly Streak Master", true, 30)
+    };
+    private static final Rule[] GOAL_RULES = {
+        new Rule("First Goal Complete", false, 1),
+        new Rule("5 Goals Complete", false, 5)
+    };
+    private static final Rule[][] RULES = { TASK_RULES, HABIT_RULES, HABIT_RULES, GOAL_RULES };
+    private final java.util.function.Consumer<User> pointsChanged;
+
+    RewardEngine(java.util.function.Consumer<User> pointsChanged) { this.pointsChanged = pointsChanged; }
+
+    // Applies one event under the user's lock; streak is the habit's streak if this log extended it, else 0.
+    // Returns the points awarded.
+    int on(User user, int event, int streak) {
+        int count = user.bumpRewardCount(COUNTER[event], 1);
+        int points = POINTS[event];
+        if (streak > 0 && streak % STREAK_BONUS_EVERY == 0) points += STREAK_BONUS;
+        if (points != 0) {
+            user.addPoints(points);
+            pointsChanged.accept(user);
+        }
+        for (Rule r : RULES[event]) if ((r.onStreak ? streak : count) >= r.threshold) user.addBadge(r.badge);
+        return points;
+    }
+    // A goal leaving Complete: the counter follows the data, nothing is awarded or taken back
+    void goalReopened(User user) { user.bumpRewardCount(GOALS_DONE, -1); }
+
+    static int[] countsOf(User user) {
+        int[] counts = new int[3];
+        for (Task t : user.getTasks()) if (t.isDone()) counts[TASKS_DONE]++;
+        for (Habit h : user.getHabits()) counts[HABIT_LOGS] += h.getLog().count();
+        for (Goal g : user.getGoals()) if (g.checkCompletion()) counts[GOALS_DONE]++;
+        return counts;
+    }
+}
+
+// Order-statistic treap ranking users by score (descending, then email). Every node knows its subtree size,
+// so moving a user, finding their rank and selecting a page by rank are all O(log n).
+final class Leaderboard {
+    static final class Entry {
+        final int rank;
+        final String email;
+        final int score;
+        Entry(int rank, String email, int score) { this.rank = rank; this.email = email; this.score = score; }
+    }
+    private static final class Node {
+        final String email;
+        final int score;
+        int priority, size = 1;
+        Node left, right;
+        Node(String email, int score, int priority) { this.email = email; this.score = score; this.priority = priority; }
+    }
+    private Map<String, Node> byEmail = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    int size() { return byEmail.size(); }
+    void clear() { byEmail.clear(); root = null; }
+    // Replaces the whole board in O(n log n): a balanced tree over the sorted entries, with random
+    // priorities handed out in descending order level by level so the heap order holds
+    void rebuild(Map<String, Integer> scores) {
+        clear();
+        int n = scores.size(), i = 0;
+        String[] emails = new String[n];
+        int[] values = new int[n];
+        long[] keys = new long[n]; // score descending, then input position: sorts as primitives
+        for (Map.Entry<String, Integer> e : scores.entrySet()) {
+            emails[i] = e.getKey();
+            values[i] = e.getValue();
+            keys[i] = ((long) Integer.MAX_VALUE - values[i]) << 32 | i;
+            i++;
+        }
+        Arrays.sort(keys);
+        Node[] sorted = new Node[n];
+        for (i = 0; i < n; i++) {
+            int at = (int) keys[i];
+            sorted[i] = new Node(emails[at], values[at], 0);
+        }
+        // Only equal scores still need ordering by email
+        for (int from = 0, to; from < n; from = to) {
+            for (to = from + 1; to < n && sorted[to].score == sorted[from].score; to++) { }
+            if (to - from > 1) Arrays.sort(sorted, from, to, Leaderboard::compare);
+        }
+        byEmail = new HashMap<>(n * 4 / 3 + 1);
+        for (Node node : sorted) byEmail.put(node.email, node);
+        root = balanced(sorted, 0, sorted.length);
+        int[] priorities = random.ints(sorted.length).sorted().toArray();
+        ArrayDeque<Node> level = new ArrayDeque<>();
+        if (root != null) level.add(root);
+        for (int p = priorities.length - 1; !level.isEmpty(); p--) {
+            Node node = level.poll();
+            node.priority = priorities[p];
+            if (node.left != null) level.add(node.left);
+            if (node.right != null) level.add(node.right);
+        }
+    }
+    private static Node balanced(Node[] sorted, int from, int to) {
+        if (from >= to) return null;
+        int mid = (from + to) >>> 1;
+        Node n = sorted[mid];
+        n.left = balanced(sorted, from, mid);
+        n.right = balanced(sorted, mid + 1, to);
+        n.size = to - from;
+        return n;
+    }
+    // Sets a user's score; null removes them
+    void put(String email, Integer score) {
+        Node old = byEmail.get(email);
+        if (old != null) {
+            if (score != null && old.score == score) return;
+            root = remove(root, old);
+            byEmail.remove(email);
+        }
+        if (score == null) return;
+        Node n = new Node(email, score, random.nextInt());
+        byEmail.put(email, n);
+        Node[] parts = split(root, n);
+        root = merge(merge(parts[0], n), parts[1]);
+    }
+    // 1-based rank, or 0 if the user is not on the board
+    int rank(String email) {
+        Node target = byEmail.get(email);
+        if (target == null) return 0;
+        int before = 0;
+        for (Node t = root; t != null; ) {
+            int c = compare(target, t);
+            if (c < 0) t = t.left;
+            else if (c > 0) { before += size(t.left) + 1; t = t.right; }
+            else return before + size(t.left) + 1;
+        }
+        throw new IllegalStateException("Leaderboard entry missing from tree: " + email);
+    }
+    // Entries ranked [fromRank, fromRank + count)
+    List<Entry> page(int fromRank, int count) {
+        List<Entry> out = new ArrayList<>(Math.min(count, size()));
+        collect(root, 0, fromRank, fromRank + count, out);
+        return out;
+    }
+    private static void collect(Node t, int before, int from, int to, List<Entry> out) {
+        if (t == null || before + t.size < from || before + 1 >= to) return;
+        collect(t.left, before, from, to, out);
+        int rank = before + size(t.left) + 1;
+        if (rank >= from && rank < to) out.add(new Entry(rank, t.email, t.score));
+        collect(t.right, rank, from, to, out);
+    }
+
+    private static int compare(Node a, Node b) {
+        return a.score != b.score ? Integer.compare(b.score, a.score) : a.email.compareTo(b.email);
+    }
+    private static int size(Node n) { return n == null ? 0 : n.size; }
+    private static Node update(Node n) { n.size = 1 + size(n.left) + size(n.right); return n; }
+    // Nodes ordered before key, and the rest
+    private static Node[] split(Node t, Node key) {
+        if (t == null) return new Node[2];
+        if (compare(t, key) < 0) {
+            Node[] parts = split(t.right, key);
+            t.right = parts[0];
+            parts[0] = update(t);
+            return parts;
+        }
+        Node[] parts = split(t.left, key);
+        t.left = parts[1];
+        parts[1] = update(t);
+        return parts;
+    }
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority >= b.priority) { a.right = merge(a.right, b); return update(a); }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+    private static Node remove(Node t, Node target) {
+        int c = compare(target, t);
+        if (c == 0) return merge(t.left, t.right);
+        if (c < 0) t.left = remove(t.left, target);
+        else t.right = remove(t.right, target);
+        return update(t);
+    }
+}
+
+// All-time, this-week and this-month boards over non-admin users. They are built from the directory
+// once (in the background at startup, or on first read), then moved along on every points change; the
+// window boards start over when their week or month ends.
+final class Leaderboards {
+    static final int ALL_TIME = 0, WEEK = 1, MONTH = 2;
+    private final Leaderboard[] boards = { new Leaderboard(), new Leaderboard(), new Leaderboard() };
+    private final LocalDate[] periodFrom = new LocalDate[3];
+    private final java.util.function.Supplier<Collection<User>> users;
+    private boolean built;
+
+    Leaderboards(java.util.function.Supplier<Collection<User>> users) { this.users = users; }
+
+    synchronized void update(User user) {
+        if (!built || user instanceof Admin) return;
+        LocalDate today = LocalDate.now();
+        rollOver(today);
+        boards[ALL_TIME].put(user.getEmail(), user.getRewardPoints());
+        boards[WEEK].put(user.getEmail(), positive(user.getWeekPoints(today)));
+        boards[MONTH].put(user.getEmail(), positive(user.getMonthPoints(today)));
+    }
+    synchronized void remove(String email) {
+        for (Leaderboard b : boards) b.put(email, null);
+    }
+    synchronized List<Leaderboard.Entry> page(int window, int fromRank, int count) {
+        return board(window).page(fromRank, count);
+    }
+    synchronized int rank(int window, String email) { return board(window).rank(email); }
+    synchronized int size(int window) { return board(window).size(); }
+
+    synchronized void build() {
+        if (built) return;
+        LocalDate today = LocalDate.now();
+        Map<String, Integer> all = new HashMap<>(), week = new HashMap<>(), month = new HashMap<>();
+        for (User u : users.get()) {
+            if (u instanceof Admin) continue;
+            all.put(u.getEmail(), u.getRewardPoints());
+            if (u.getWeekPoints(today) > 0) week.put(u.getEmail(), u.getWeekPoints(today));
+            if (u.getMonthPoints(today) > 0) month.put(u.getEmail(), u.getMonthPoints(today));
+        }
+        boards[ALL_TIME].rebuild(all);
+        boards[WEEK].rebuild(week);
+        boards[MONTH].rebuild(month);
+        periodFrom[WEEK] = today.with(DayOfWeek.MONDAY);
+        periodFrom[MONTH] = today.withDayOfMonth(1);
+        built = true;
+    }
+    private Leaderboard board(int window) {
+        build();
+        rollOver(LocalDate.now());
+        return boards[window];
+    }
+    private void rollOver(LocalDate today) {
+        if (!today.with(DayOfWeek.MONDAY).equals(periodFrom[WEEK])) { boards[WEEK].clear(); periodFrom[WEEK] = today.with(DayOfWeek.MONDAY); }
+        if (!today.withDayOfMonth(1).equals(periodFrom[MONTH])) { boards[MONTH].clear(); periodFrom[MONTH] = today.withDayOfMonth(1); }
+    }
+    private static Integer positive(int points) { return points > 0 ? points : null; }
+}
+
+// Secondary indexes over one user's tasks and goals: tasks by due date, split into pending and done,
+// and goals by deadline and by status. TrackNestSystem reindexes an item after every change to it,
+// so overdue, month-range and deadline-before queries are range scans instead of walks over the lists.
+final class ItemIndex {
+    // Orders by day, then by first-indexed order so equal dates never collide
+    private static final class Slot implements Comparable<Slot> {
+        final long day, seq;
+        Slot(long day, long seq) { this.day = day; this.seq = seq; }
+        @Override public int compareTo(Slot o) {
+            int c = Long.compare(day, o.day);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+    private final AtomicLong seq = new AtomicLong();
+    private final NavigableMap<Slot, Task> pendingTasks = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Slot, Task> doneTasks = new ConcurrentSkipListMap<>();
+    private final Map<Task, Slot> taskSlots = new ConcurrentHashMap<>();
+    private final NavigableMap<Slot, Goal> goalsByDeadline = new ConcurrentSkipListMap<>();
+    private final Map<String, NavigableMap<Slot, Goal>> goalsByStatus = new ConcurrentHashMap<>();
+    private final Map<Goal, Slot> goalSlots = new ConcurrentHashMap<>();
+    private final Map<Goal, String> goalStatuses = new ConcurrentHashMap<>();
+    // Full task orderings for paged listing; each task holds its current key in both
+    private final NavigableMap<SortKey, Task> byPriority = new ConcurrentSkipListMap<>();
+    private final NavigableMap<SortKey, Task> byDue = new ConcurrentSkipListMap<>();
+    private final Map<Task, SortKey[]> taskOrders = new ConcurrentHashMap<>();
+
+    // Pinned, priority and due date packed into one long so most comparisons are a single compare;
+    // the name and the index sequence only break ties
+    static final class SortKey implements Comparable<SortKey> {
+        final long key;
+        final String name;
+        final long seq;
+        SortKey(long key, String name, long seq) { this.key = key; this.name = name == null ? "" : name; this.seq = seq; }
+        @Override public int compareTo(SortKey o) {
+            int c = Long.compare(key, o.key);
+            if (c == 0) c = String.CASE_INSENSITIVE_ORDER.compare(name, o.name);
+            if (c == 0) c = name.compareTo(o.name);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+        // Opaque page cursor: key and sequence in hex, then the name
+        String encode() { return Long.toHexString(key) + "." + Long.toHexString(seq) + "." + name; }
+        static SortKey decode(String cursor) {
+            int a = cursor.indexOf('.'), b = a < 0 ? -1 : cursor.indexOf('.', a + 1);
+            try {
+                if (b < 0) throw new NumberFormatException();
+                return new SortKey(Long.parseUnsignedLong(cursor.substring(0, a), 16), cursor.substring(b + 1),
+                    Long.parseUnsignedLong(cursor.substring(a + 1, b), 16));
+            } catch (NumberFormatException e) { throw new IllegalArgumentException("Bad cursor"); }
+        }
+    }
+    static final class Page {
+        final List<Task> tasks;
+        final String nextCursor; // null on the last page
+        Page(List<Task> tasks, String nextCursor) { this.tasks = tasks; this.nextCursor = nextCursor; }
+    }
+    private static final long DAY_BITS = 40, NO_DAY = (1L << DAY_BITS) - 1;
+
+    ItemIndex(Collection<Task> tasks, Collection<Goal> goals) {
+        for (Task t : tasks) putTask(t);
+        for (Goal g : goals) putGoal(g);
+    }
+
+    // Writers are serialized by the owner's lock; put is idempotent and also moves a changed item
+    void putTask(Task t) {
+        Slot old = taskSlots.get(t);
+        if (old != null) { pendingTasks.remove(old); doneTasks.remove(old); }
+        Slot slot = new Slot(day(t.getDueDate()), old != null ? old.seq : seq.incrementAndGet());
+        taskSlots.put(t, slot);
+        (t.isDone() ? doneTasks : pendingTasks).put(slot, t);
+        SortKey[] oldOrder = taskOrders.get(t);
+        if (oldOrder != null) { byPriority.remove(oldOrder[0]); byDue.remove(oldOrder[1]); }
+        long unpinned = t.isPinned() ? 0 : 1, rank = priorityRank(t.getPriority()), day = sortDay(t.getDueDate());
+        SortKey[] order = {
+            new SortKey(unpinned << 62 | rank << DAY_BITS | day, t.getTaskName(), slot.seq),
+            new SortKey(unpinned << 62 | day << 2 | rank, t.getTaskName(), slot.seq)
+        };
+        taskOrders.put(t, order);
+        byPriority.put(order[0], t);
+        byDue.put(order[1], t);
+    }
+    void removeTask(Task t) {
+        Slot old = taskSlots.remove(t);
+        if (old != null) { pendingTasks.remove(old); doneTasks.remove(old); }
+        SortKey[] oldOrder = taskOrders.remove(t);
+        if (oldOrder != null) { byPriority.remove(oldOrder[0]); byDue.remove(oldOrder[1]); }
+    }
+    void putGoal(Goal g) {
+        Slot old = goalSlots.get(g);
+        if (old != null) unlinkGoal(g, old);
+        Slot slot = new Slot(day(g.getDeadline()), old != null ? old.seq : seq.incrementAndGet());
+        String status = statusKey(g.getStatus());
+        goalSlots.put(g, slot);
+        goalStatuses.put(g, status);
+        goalsByDeadline.put(slot, g);
+        goalsByStatus.computeIfAbsent(status, k -> new ConcurrentSkipListMap<>()).put(slot, g);
+    }
+    void removeGoal(Goal g) {
+        Slot old = goalSlots.remove(g);
+        if (old != null) unlinkGoal(g, old);
+    }
+    private void unlinkGoal(Goal g, Slot slot) {
+        goalsByDeadline.remove(slot);
+        String status = goalStatuses.remove(g);
+        NavigableMap<Slot, Goal> byStatus = status == null ? null : goalsByStatus.get(status);
+        if (byStatus != null) byStatus.remove(slot);
+    }
+
+    // Pending tasks due before the given day, earliest first
+    List<Task> overdueTasks(LocalDate today) {
+        return new ArrayList<>(pendingTasks.headMap(floor(today)).values());
+    }
+    // Ranges are [from, to) by due date or deadline
+    List<Task> tasksDueBetween(LocalDate from, LocalDate to) {
+        TreeMap<Slot, Task> merged = new TreeMap<>(pendingTasks.subMap(floor(from), floor(to)));
+        merged.putAll(doneTasks.subMap(floor(from), floor(to)));
+        return new ArrayList<>(merged.values());
+    }
+    List<Task> doneTasksDueBetween(LocalDate from, LocalDate to) {
+        return new ArrayList<>(doneTasks.subMap(floor(from), floor(to)).values());
+    }
+    List<Goal> goalsDueBetween(LocalDate from, LocalDate to) {
+        return new ArrayList<>(goalsByDeadline.subMap(floor(from), floor(to)).values());
+    }
+    List<Goal> goalsDueBefore(LocalDate day) {
+        return new ArrayList<>(goalsByDeadline.headMap(floor(day)).values());
+    }
+    // Same, restricted to goals whose status is none of the given ones
+    List<Goal> goalsDueBefore(LocalDate day, String... excludedStatuses) {
+        Set<String> excluded = new HashSet<>();
+        for (String s : excludedStatuses) excluded.add(statusKey(s));
+        TreeMap<Slot, Goal> merged = new TreeMap<>();
+        for (Map.Entry<String, NavigableMap<Slot, Goal>> e : goalsByStatus.entrySet())
+            if (!excluded.contains(e.getKey())) merged.putAll(e.getValue().headMap(floor(day)));
+        return new ArrayList<>(merged.values());
+    }
+    // Case-insensitive, earliest deadline first
+    List<Goal> goalsWithStatus(String status) {
+        NavigableMap<Slot, Goal> byStatus = goalsByStatus.get(statusKey(status));
+        return byStatus == null ? new ArrayList<>() : new ArrayList<>(byStatus.values());
+    }
+
+    // Pinned first, then by priority, due date and name; or pinned, due date, priority and name.
+    // Each page walks the maintained ordering from the cursor, so it costs O(log n + limit)
+    Page sortedTasks(boolean dueFirst, String cursor, int limit) {
+        NavigableMap<SortKey, Task> view = dueFirst ? byDue : byPriority;
+        if (cursor != null && !cursor.isEmpty()) view = view.tailMap(SortKey.decode(cursor), false);
+        List<Task> out = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        SortKey last = null;
+        for (Map.Entry<SortKey, Task> e : view.entrySet()) {
+            if (out.size() == limit) return new Page(out, last.encode());
+            out.add(e.getValue());
+            last = e.getKey();
+        }
+        return new Page(out, null);
+    }
+
+    // High, Medium, Low, then anything else
+    private static long priorityRank(String p) {
+        if ("High".equalsIgnoreCase(p)) return 0;
+        if ("Medium".equalsIgnoreCase(p)) return 1;
+        if ("Low".equalsIgnoreCase(p)) return 2;
+        return 3;
+    }
+    // Epoch day biased into 40 unsigned bits; undated tasks sort last
+    private static long sortDay(LocalDate d) {
+        if (d == null) return NO_DAY;
+        return Math.max(0, Math.min(NO_DAY - 1, d.toEpochDay() + (1L << (DAY_BITS - 1))));
+    }
+    // Undated items sort last and are never overdue
+    private static long day(LocalDate d) { return d == null ? Long.MAX_VALUE : d.toEpochDay(); }
+    private static Slot floor(LocalDate d) { return new Slot(day(d), Long.MIN_VALUE); }
+    private static String statusKey(String status) { return status == null ? "" : status.toLowerCase(Locale.ROOT); }
+}
+
+// Inverted index over one user's item text: goal title/description/note, habit name/note, task name
+// and comments. Terms live in a sorted map so a query word matches every term it prefixes; results
+// must match all query words and are ranked by field weight, term rarity and how much of the term matched.
+// Items are numbered densely and postings are int arrays, so a query is a few array scans with no boxing.
+final class SearchIndex {
+    static final class Hit {
+        final Item item;
+        final double score;
+        Hit(Item item, double score) { this.item = item; this.score = score; }
+    }
+    private static final int TITLE_WEIGHT = 3, TEXT_WEIGHT = 1;
+
+    // The single writer appends or swaps the last entry into a hole; readers scan up to a size snapshot
+    private static final class Postings {
+        int[] ords = new int[4];
+        byte[] weights = new byte[4];
+        volatile int size;
+        void add(int ord, int weight) {
+            int n = size;
+            if (n == ords.length) {
+                ords = Arrays.copyOf(ords, n * 2);
+                weights = Arrays.copyOf(weights, n * 2);
+            }
+            ords[n] = ord;
+            weights[n] = (byte) weight;
+            size = n + 1;
+        }
+        void remove(int ord) {
+            int n = size;
+            for (int i = 0; i < n; i++) {
+                if (ords[i] != ord) continue;
+                ords[i] = ords[n - 1];
+                weights[i] = weights[n - 1];
+                size = n - 1;
+                return;
+            }
+        }
+    }
+    private static final class Entry {
+        final int ord;
+        final String[] terms;
+        Entry(int ord, String[] terms) { this.ord = ord; this.terms = terms; }
+    }
+    // Per-query accumulators indexed by ordinal; only touched slots are reset afterwards
+    private static final class Scratch {
+        double[] score = new double[0], best = new double[0];
+        int[] matched = new int[0], touched = new int[0];
+        void ensure(int n) {
+            if (score.length >= n) return;
+            score = new double[n]; best = new double[n];
+            matched = new int[n]; touched = new int[n];
+        }
+    }
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ConcurrentSkipListMap<String, Postings> postings = new ConcurrentSkipListMap<>();
+    private final Map<Item, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Item[] byOrd = new Item[64];
+    private int nextOrd;
+    private int[] freeOrds = new int[16];
+    private int freeCount;
+
+    SearchIndex(Collection<Goal> goals, Collection<Habit> habits, Collection<Task> tasks) {
+        for (Goal g : goals) put(g);
+        for (Habit h : habits) put(h);
+        for (Task t : tasks) put(t);
+    }
+
+    // Writers are serialized by the owner's lock; put replaces whatever the item was indexed under
+    void put(Item item) {
+        remove(item);
+        Map<String, Integer> terms = new HashMap<>();
+        if (item instanceof Goal) {
+            Goal g = (Goal) item;
+            addTerms(terms, g.getTitle(), TITLE_WEIGHT);
+            addTerms(terms, g.getDescription(), TEXT_WEIGHT);
+            addTerms(terms, g.getNote(), TEXT_WEIGHT);
+        } else if (item instanceof Habit) {
+            Habit h = (Habit) item;
+            addTerms(terms, h.getName(), TITLE_WEIGHT);
+            addTerms(terms, h.getNote(), TEXT_WEIGHT);
+        } else if (item instanceof Task) {
+            Task t = (Task) item;
+            addTerms(terms, t.getTaskName(), TITLE_WEIGHT);
+            for (String c : t.getComments()) addTerms(terms, c, TEXT_WEIGHT);
+        }
+        int ord = freeCount > 0 ? freeOrds[--freeCount] : nextOrd++;
+        if (ord >= byOrd.length) byOrd = Arrays.copyOf(byOrd, byOrd.length * 2);
+        byOrd[ord] = item;
+        for (Map.Entry<String, Integer> e : terms.entrySet())
+            postings.computeIfAbsent(e.getKey(), k -> new Postings()).add(ord, e.getValue());
+        entries.put(item, new Entry(ord, terms.keySet().toArray(new String[0])));
+    }
+    void remove(Item item) {
+        Entry old = entries.remove(item);
+        if (old == null) return;
+        for (String term : old.terms) {
+            Postings p = postings.get(term);
+            if (p == null) continue;
+            p.remove(old.ord);
+            if (p.size == 0) postings.remove(term, p);
+        }
+        byOrd[old.ord] = null;
+        if (freeCount == freeOrds.length) freeOrds = Arrays.copyOf(freeOrds, freeCount * 2);
+        freeOrds[freeCount++] = old.ord;
+    }
+
+    // Best matches first, at most limit of them
+    List<Hit> search(String query, int limit) {
+        Map<String, Integer> words = new LinkedHashMap<>();
+        addTerms(words, query, 1);
+        if (words.isEmpty() || limit <= 0) return new ArrayList<>();
+        Item[] items = byOrd;
+        Scratch sc = SCRATCH.get();
+        sc.ensure(items.length);
+        double n = Math.max(1, entries.size());
+        int touched = 0, round = 0;
+        for (String word : words.keySet()) {
+            // An item stays a candidate only if it matched every earlier word; per word it keeps its best term
+            for (Map.Entry<String, Postings> e : postings.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                Postings p = e.getValue();
+                int size = p.size;
+                int[] ords = p.ords;
+                byte[] ws = p.weights;
+                double weight = Math.log(1 + n / Math.max(1, size)) * word.length() / e.getKey().length();
+                for (int i = 0; i < size && i < ords.length; i++) {
+                    int ord = ords[i];
+                    if (ord >= items.length) continue;
+                    int m = sc.matched[ord];
+                    if (m == round) {
+                        if (round == 0) sc.touched[touched++] = ord;
+                        sc.matched[ord] = round + 1;
+                        sc.best[ord] = ws[i] * weight;
+                    } else if (m == round + 1) {
+                        sc.best[ord] = Math.max(sc.best[ord], ws[i] * weight);
+                    }
+                }
+            }
+            round++;
+            for (int i = 0; i < touched; i++) {
+                int ord = sc.touched[i];
+                if (sc.matched[ord] == round) sc.score[ord] += sc.best[ord];
+            }
+        }
+        // Insertion into a short sorted array: the top few out of thousands of matches
+        int[] top = new int[Math.min(limit, touched)];
+        int found = 0;
+        for (int i = 0; i < touched; i++) {
+            int ord = sc.touched[i];
+            if (sc.matched[ord] == round && items[ord] != null
+                && (found < top.length || ranksBefore(sc, items, ord, top[found - 1]))) {
+                int j = found < top.length ? found++ : found - 1;
+                while (j > 0 && ranksBefore(sc, items, ord, top[j - 1])) { top[j] = top[j - 1]; j--; }
+                top[j] = ord;
+            }
+        }
+        List<Hit> out = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) out.add(new Hit(items[top[i]], sc.score[top[i]]));
+        for (int i = 0; i < touched; i++) {
+            int ord = sc.touched[i];
+            sc.matched[ord] = 0;
+            sc.score[ord] = 0;
+            sc.best[ord] = 0;
+        }
+        return out;
+    }
+    // Higher score first, then the older item
+    private static boolean ranksBefore(Scratch sc, Item[] items, int a, int b) {
+        if (sc.score[a] != sc.score[b]) return sc.score[a] > sc.score[b];
+        return items[a].getId() < items[b].getId();
+    }
+
+    static String kind(Item item) {
+        return item instanceof Goal ? "Goal" : item instanceof Habit ? "Habit" : "Task";
+    }
+    // Lower-cased runs of letters and digits, each counted with the heaviest field it appeared in
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        if (text == null) return;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), weight, Math::max);
+                start = -1;
+            }
+        }
+    }
+}
+
+// Password and security-answer hashing. New hashes are salted PBKDF2 whose iteration count is calibrated
+// once to a latency budget; bare SHA-256 hex from older data still verifies and is reported for rehash.
+// Digests and scratch buffers are per thread, so hashing allocates little beyond the result String.
+final class PasswordHasher {
+    private static final String PREFIX = "pbkdf2$";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final int PROBE_ITERATIONS = 1_000;
+    private static final long CALIBRATION_MS = 200;
+    private static final java.security.SecureRandom RANDOM = new java.security.SecureRandom();
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try { return MessageDigest.getInstance("SHA-256"); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException("SHA-256 not available", e); }
+    });
+    private static final ThreadLocal<javax.crypto.SecretKeyFactory> PBKDF2 = ThreadLocal.withInitial(() -> {
+        try { return javax.crypto.SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256"); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e); }
+    });
+    private static final ThreadLocal<byte[]> BYTES = ThreadLocal.withInitial(() -> new byte[256]);
+    private static final ThreadLocal<char[]> CHARS = ThreadLocal.withInitial(() -> new char[128]);
+
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = Math.max(1, iterations);
+    }
+    // -Dtracknest.kdfIterations pins the cost; otherwise it is measured against -Dtracknest.kdfBudgetMs
+    static PasswordHasher calibrated() {
+        Integer fixed = Integer.getInteger("tracknest.kdfIterations");
+        if (fixed != null) return new PasswordHasher(fixed);
+        long budgetMs = Long.getLong("tracknest.kdfBudgetMs", 50L);
+        byte[] salt = new byte[SALT_BYTES];
+        // Short probes for a fixed wall-clock window so the JIT has compiled the HMAC loop; keep the fastest
+        long best = Long.MAX_VALUE, spent = 0;
+        for (int i = 0; i < 50 && spent < TimeUnit.MILLISECONDS.toNanos(CALIBRATION_MS); i++) {
+            long t0 = System.nanoTime();
+            derive("calibration", salt, PROBE_ITERATIONS);
+            long t = System.nanoTime() - t0;
+            best = Math.min(best, t);
+            spent += t;
+        }
+        long target = TimeUnit.MILLISECONDS.toNanos(budgetMs) * PROBE_ITERATIONS / Math.max(1, best);
+        return new PasswordHasher((int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, target / 1000 * 1000)));
+    }
+    public int getIterations() { return iterations; }
+
+    // pbkdf2$<iterations>$<salt hex>$<key hex>
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] key = derive(password, salt, iterations);
+        char[] out = CHARS.get();
+        int n = append(out, 0, PREFIX);
+        n = append(out, n, Integer.toString(iterations));
+        out[n++] = '$';
+        n = hex(salt, salt.length, out, n);
+        out[n++] = '$';
+        n = hex(key, key.length, out, n);
+        return new String(out, 0, n);
+    }
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) return false;
+        if (!stored.startsWith(PREFIX)) return constantTimeEquals(sha256Hex(password), stored);
+        int a = stored.indexOf('$', PREFIX.length()), b = a < 0 ? -1 : stored.indexOf('$', a + 1);
+        if (b < 0) return false;
+        try {
+            int rounds = Integer.parseInt(stored.substring(PREFIX.length(), a));
+            byte[] salt = unhex(stored, a + 1, b);
+            char[] out = CHARS.get();
+            int n = hex(derive(password, salt, rounds), KEY_BITS / 8, out, 0);
+            return constantTimeEquals(out, n, stored, b + 1);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    // Legacy SHA-256 hashes and PBKDF2 hashes cheaper than the current cost get replaced on next login
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) return true;
+        int a = stored.indexOf('$', PREFIX.length());
+        try { return a < 0 || Integer.parseInt(stored.substring(PREFIX.length(), a)) < iterations; }
+        catch (NumberFormatException e) { return true; }
+    }
+
+    // Hashes per second for the legacy SHA-256 format and for PBKDF2 at this hasher's cost, on 1, 2, 4...
+    // threads up to the core count; each row runs for about a second
+    void benchmark(PrintStream report) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        report.printf("PBKDF2 at %d iterations, %d cores%n", iterations, cores);
+        report.printf("%-7s %7s %10s %14s %14s %12s%n", "Mode", "Threads", "Hashes", "Hashes/s", "Per core/s", "us/hash");
+        for (boolean pbkdf2 : new boolean[] { false, true }) {
+            runHashes(pbkdf2, 1, TimeUnit.SECONDS.toNanos(1)); // untimed, for the JIT
+            for (int threads = 1; ; threads = Math.min(cores, threads * 2)) {
+                long nanos = TimeUnit.SECONDS.toNanos(1);
+                long t0 = System.nanoTime();
+                long hashes = runHashes(pbkdf2, threads, nanos);
+                double seconds = (System.nanoTime() - t0) / 1e9;
+                double perSecond = hashes / seconds;
+                report.printf("%-7s %7d %10d %14.0f %14.0f %12.1f%n", pbkdf2 ? "pbkdf2" : "sha256", threads, hashes, perSecond,
+                    perSecond / Math.min(threads, cores), threads * 1e6 / perSecond);
+                if (threads == cores) break;
+            }
+        }
+    }
+    private long runHashes(boolean pbkdf2, int threads, long nanos) throws InterruptedException {
+        AtomicLong count = new AtomicLong();
+        long deadline = System.nanoTime() + nanos;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            workers[i] = new Thread(() -> {
+                long n = 0;
+                String password = "Benchmark#" + worker;
+                do {
+                    if (pbkdf2) hash(password);
+                    else sha256Hex(password);
+                    n++;
+                } while (System.nanoTime() < deadline);
+                count.addAndGet(n);
+            }, "tracknest-hash-bench-" + i);
+            workers[i].start();
+        }
+        for (Thread t : workers) t.join();
+        return count.get();
+    }
+
+    // The original unsalted format: lowercase hex of SHA-256 over the UTF-8 bytes
+    static String sha256Hex(String s) {
+        MessageDigest md = SHA256.get();
+        byte[] scratch = BYTES.get();
+        int len = s.length();
+        if (len <= scratch.length - 32 && isAscii(s)) {
+            for (int i = 0; i < len; i++) scratch[i] = (byte) s.charAt(i);
+            md.update(scratch, 0, len);
+        } else {
+            md.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        try { md.digest(scratch, 0, 32); }
+        catch (java.security.DigestException e) { throw new IllegalStateException(e); }
+        char[] out = CHARS.get();
+        return new String(out, 0, hex(scratch, 32, out, 0));
+    }
+
+    private static byte[] derive(String password, byte[] salt, int rounds) {
+        javax.crypto.spec.PBEKeySpec spec = new javax.crypto.spec.PBEKeySpec(password.toCharArray(), salt, rounds, KEY_BITS);
+        try { return PBKDF2.get().generateSecret(spec).getEncoded(); }
+        catch (java.security.spec.InvalidKeySpecException e) { throw new IllegalStateException(e); }
+        finally { spec.clearPassword(); }
+    }
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) >= 0x80) return false;
+        return true;
+    }
+    private static int append(char[] out, int at, String s) {
+        s.getChars(0, s.length(), out, at);
+        return at + s.length();
+    }
+    private static int hex(byte[] b, int len, char[] out, int at) {
+        for (int i = 0; i < len; i++) {
+            out[at++] = HEX[(b[i] >> 4) & 0xF];
+            out[at++] = HEX[b[i] & 0xF];
+        }
+        return at;
+    }
+    private static byte[] unhex(String s, int from, int to) {
+        if (((to - from) & 1) != 0) throw new IllegalArgumentException("odd hex length");
+        byte[] b = new byte[(to - from) / 2];
+        for (int i = 0; i < b.length; i++) {
+            int hi = Character.digit(s.charAt(from + 2 * i), 16), lo = Character.digit(s.charAt(from + 2 * i + 1), 16);
+            if (hi < 0 || lo < 0) throw new IllegalArgumentException("bad hex");
+            b[i] = (byte) ((hi << 4) | lo);
+        }
+        return b;
+    }
+    // Runs over the full length regardless of where the first difference is
+    private static boolean constantTimeEquals(String a, String b) {
+        if (a.length() != b.length()) return false;
+        int diff = 0;
+        for (int i = 0; i < a.length(); i++) diff |= a.charAt(i) ^ b.charAt(i);
+        return diff == 0;
+    }
+    private static boolean constantTimeEquals(char[] a, int n, String b, int from) {
+        if (b.length() - from != n) return false;
+        int diff = 0;
+        for (int i = 0; i < n; i++) diff |= a[i] ^ b.charAt(from + i);
+        return diff == 0;
+    }
+}
+
+// Sliding-window failed-login counters keyed by email and by source. Each key owns a small ring of
+// per-interval slots updated with CAS; a slot packs its interval number and count into one long, so
+// stale slots reset themselves and idle keys are swept out of the map. Each map holds at most maxKeys keys;
+// past that, new keys go untracked until a sweep makes room, so a flood of fresh emails falls back on the
+// per-source limit.
+final class LoginThrottle {
+    private static final int SLOTS = 16;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int SWEEP_EVERY = 1024;
+
+    private static final class Window {
+        final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+        volatile long lockedUntil;
+        volatile long lastSeen;
+    }
+
+    private final ConcurrentHashMap<String, Window> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Window> bySource = new ConcurrentHashMap<>();
+    private final long slotMillis;
+    private final long windowMillis;
+    private final int maxEmailFailures;
+    private final int maxSourceFailures;
+    private final long lockoutMillis;
+    private final int maxKeys;
+    private final AtomicInteger opsSinceSweep = new AtomicInteger();
+
+    public LoginThrottle(long windowMillis, int maxEmailFailures, int maxSourceFailures, long lockoutMillis, int maxKeys) {
+        this.slotMillis = Math.max(1, windowMillis / SLOTS);
+        this.windowMillis = slotMillis * SLOTS;
+        this.maxEmailFailures = maxEmailFailures;
+        this.maxSourceFailures = maxSourceFailures;
+        this.lockoutMillis = lockoutMillis;
+        this.maxKeys = maxKeys;
+    }
+    static LoginThrottle fromSystemProperties() {
+        long window = TimeUnit.MINUTES.toMillis(Long.getLong("tracknest.login.windowMinutes", 15L));
+        long lockout = TimeUnit.MINUTES.toMillis(Long.getLong("tracknest.login.lockoutMinutes", 15L));
+        return new LoginThrottle(window, Integer.getInteger("tracknest.login.maxFailures", 5),
+            Integer.getInteger("tracknest.login.maxSourceFailures", 20), lockout, 100_000);
+    }
+
+    // Milliseconds until this attempt may proceed, or 0; does no hashing and allocates nothing
+    public long retryAfter(String email, String source, long now) {
+        return Math.max(remaining(byEmail.get(email), now), remaining(bySource.get(source), now));
+    }
+    public void recordFailure(String email, String source, long now) {
+        record(byEmail, email, maxEmailFailures, now);
+        record(bySource, source, maxSourceFailures, now);
+        // One thread wins the reset, so a sweep runs at most once per SWEEP_EVERY failures
+        if (opsSinceSweep.incrementAndGet() >= SWEEP_EVERY && opsSinceSweep.getAndSet(0) >= SWEEP_EVERY) sweep(now);
+    }
+    // A correct password clears the account's failures; the source keeps its count
+    public void recordSuccess(String email) {
+        byEmail.remove(email);
+    }
+    // Admin unlock; true if the account had failures or a lock on record
+    public boolean unlock(String email) {
+        return byEmail.remove(email) != null;
+    }
+    public boolean isLocked(String email, long now) {
+        return remaining(byEmail.get(email), now) > 0;
+    }
+    public List<String> lockedEmails(long now) {
+        List<String> locked = new ArrayList<>();
+        for (Map.Entry<String, Window> e : byEmail.entrySet()) if (remaining(e.getValue(), now) > 0) locked.add(e.getKey());
+        Collections.sort(locked);
+        return locked;
+    }
+    // Milliseconds since class load: nanoTime may be negative, and windows, slots and lock deadlines assume
+    // a non-negative clock
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    static long now() { return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ORIGIN_NANOS); }
+
+    private static long remaining(Window w, long now) {
+        return w == null ? 0 : Math.max(0, w.lockedUntil - now);
+    }
+    private void record(ConcurrentHashMap<String, Window> map, String key, int limit, long now) {
+        if (key == null) return;
+        Window w = map.get(key);
+        if (w == null) {
+            if (map.size() >= maxKeys) return;
+            w = map.computeIfAbsent(key, k -> new Window());
+        }
+        w.lastSeen = now;
+        long interval = now / slotMillis;
+        int i = (int) Math.floorMod(interval, (long) SLOTS);
+        while (true) {
+            long cur = w.slots.get(i);
+            long next = (cur >>> COUNT_BITS) == interval ? Math.min(cur + 1, (interval << COUNT_BITS) | COUNT_MASK) : (interval << COUNT_BITS) | 1;
+            if (w.slots.compareAndSet(i, cur, next)) break;
+        }
+        if (failures(w, interval) >= limit) w.lockedUntil = Math.max(w.lockedUntil, now + lockoutMillis);
+    }
+    private static int failures(Window w, long interval) {
+        int total = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long s = w.slots.get(i);
+            if (interval - (s >>> COUNT_BITS) < SLOTS) total += (int) (s & COUNT_MASK);
+        }
+        return total;
+    }
+    // Drop keys with no failure inside the window and no active lock
+    private void sweep(long now) {
+        for (ConcurrentHashMap<String, Window> map : Arrays.asList(byEmail, bySource))
+            map.values().removeIf(w -> now - w.lastSeen > windowMillis && w.lockedUntil <= now);
+    }
+}
+
+class LoginThrottledException extends SecurityException {
+    private static final long serialVersionUID = 1L;
+    private final long retryAfterMillis;
+    public LoginThrottledException(long retryAfterMillis, String message) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    public long getRetryAfterMillis() { return retryAfterMillis; }
+}
+
+// Leveled diagnostic logger. The level is checked before anything is built: callers pass a Supplier or a
+// {} pattern with arguments, so a disabled level costs one comparison. Enabled records go on a bounded
+// queue and are formatted and written by a daemon drain thread, to tracknest.log unless
+// -Dtracknest.logTarget says stderr or console. When the queue is full, -Dtracknest.logOverflow decides:
+// drop the new record (default), discard the oldest, or block the caller.
+class Logger {
+    static final int OFF = 0, ERROR = 1, WARN = 2, INFO = 3, DEBUG = 4;
+    private static final String[] LEVEL_NAMES = { "OFF", "ERROR", "WARN", "INFO", "DEBUG" };
+    private static final int DROP = 0, DISCARD_OLDEST = 1, BLOCK = 2;
+    private static final Logger instance = new Logger();
+
+    private static final class Record {
+        final long time = System.currentTimeMillis();
+        final int level;
+        final String thread = Thread.currentThread().getName();
+        final String pattern;
+        final int args;
+        final Object a, b;
+        Record(int level, String pattern, int args, Object a, Object b) { this.level = level; this.pattern = pattern; this.args = args; this.a = a; this.b = b; }
+    }
+    private volatile int level;
+    private final int overflow;
+    private final BlockingQueue<Record> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong enqueued = new AtomicLong(), dequeued = new AtomicLong(); // dequeued: written or discarded
+    private String target; // guarded by this, with out
+    private PrintStream out;
+
+    private Logger() {
+        String name = System.getProperty("tracknest.logLevel", "INFO");
+        int configured = levelOf(name);
+        // A typo in the property must not stop startup (this runs in static init)
+        if (configured < 0) System.err.println("[Warning] Unknown log level '" + name + "', using INFO");
+        level = configured < 0 ? INFO : configured;
+        String policy = System.getProperty("tracknest.logOverflow", "drop").toLowerCase();
+        overflow = policy.equals("block") ? BLOCK : policy.equals("discard-oldest") ? DISCARD_OLDEST : DROP;
+        queue = new ArrayBlockingQueue<>(Integer.getInteger("tracknest.logQueue", 4096));
+        target = System.getProperty("tracknest.logTarget", "tracknest.log");
+        Thread drain = new Thread(this::drain, "tracknest-log");
+        drain.setDaemon(true);
+        drain.start();
+    }
+    public static Logger getInstance() { return instance; }
+    synchronized String getTarget() { return target; }
+    // Records already queued are written first; a file target is closed when switched away from
+    void setTarget(String target) {
+        flush(2000);
+        synchronized (this) {
+            if (out != null && out != System.out && out != System.err) out.close();
+            out = null;
+            this.target = target;
+        }
+    }
+
+    // -1 if the name is not a level
+    private static int levelOf(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) if (LEVEL_NAMES[i].equalsIgnoreCase(name)) return i;
+        return -1;
+    }
+    public void setLevel(int level) { this.level = level; }
+    public boolean isEnabled(int level) { return level <= this.level && level > OFF; }
+
+    public void log(int level, String message) { if (isEnabled(level)) enqueue(new Record(level, message, 0, null, null)); }
+    // {} in the pattern is replaced by the argument, formatted on the drain thread
+    public void log(int level, String pattern, Object arg) { if (isEnabled(level)) enqueue(new Record(level, pattern, 1, arg, null)); }
+    public void log(int level, String pattern, Object arg1, Object arg2) { if (isEnabled(level)) enqueue(new Record(level, pattern, 2, arg1, arg2)); }
+    // The supplier runs on the caller's thread, so it sees the state at the call
+    public void log(int level, java.util.function.Supplier<String> message) { if (isEnabled(level)) enqueue(new Record(level, message.get(), 0, null, null)); }
+
+    private void enqueue(Record r) {
+        if (overflow == BLOCK) {
+            try { queue.put(r); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); dropped.incrementAndGet(); return; }
+        } else {
+            while (!queue.offer(r)) {
+                if (overflow == DROP) { dropped.incrementAndGet(); return; }
+                if (queue.poll() != null) { dequeued.incrementAndGet(); dropped.incrementAndGet(); }
+            }
+        }
+        enqueued.incrementAndGet();
+    }
+    // Waits up to the timeout for everything logged so far to be written
+    public void flush(long timeoutMillis) {
+        long target = enqueued.get(), deadline = System.currentTimeMillis() + timeoutMillis;
+        while (dequeued.get() < target && System.currentTimeMillis() < deadline) LockSupport.parkNanos(1_000_000);
+    }
+
+    private void drain() {
+        List<Record> batch = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            try { batch.add(queue.take()); }
+            catch (InterruptedException e) { return; }
+            queue.drainTo(batch);
+            int taken = batch.size(); // flush() counts queue records; the dropped notice below is not one
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) batch.add(0, new Record(WARN, "{} log records dropped, queue full", 1, lost, null));
+            synchronized (this) {
+                PrintStream ps = stream();
+                for (Record r : batch) {
+                    line.setLength(0);
+                    line.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(r.time), ZoneId.systemDefault()).truncatedTo(java.time.temporal.ChronoUnit.MILLIS))
+                        .append(' ').append(LEVEL_NAMES[r.level]).append(r.level == INFO || r.level == WARN ? "  [" : " [").append(r.thread).append("] ");
+                    format(line, r);
+                    ps.println(line);
+                }
+                ps.flush();
+            }
+            dequeued.addAndGet(taken);
+            batch.clear();
+        }
+    }
+    private static void format(StringBuilder line, Record r) {
+        String p = r.pattern;
+        int at = 0, arg = 0;
+        for (int i; arg < r.args && (i = p.indexOf("{}", at)) >= 0; at = i + 2, arg++) line.append(p, at, i).append(arg == 0 ? r.a : r.b);
+        line.append(p, at, p.length());
+    }
+    private PrintStream stream() {
+        if (out != null) return out;
+        if (target.equalsIgnoreCase("console")) out = System.out;
+        else if (target.equalsIgnoreCase("stderr")) out = System.err;
+        else {
+            try { out = new PrintStream(new BufferedOutputStream(new FileOutputStream(target, true), 1 << 16), false, StandardCharsets.UTF_8); }
+            catch (IOException e) {
+                System.err.println("[Error] Could not open log file " + target + ": " + e.getMessage());
+                out = System.err;
+            }
+        }
+        return out;
+    }
+}
+
+// Streaming JSON reader: one linear pass over a buffered Reader, no regex
+class JsonReader implements Closeable {
+    private final Reader in;
+    private final char[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private long offset = 0; // chars consumed before buf[0], for error messages
+    private final StringBuilder sb = new StringBuilder();
+
+    public JsonReader(Reader in) { this(in, 1 << 16); }
+    public JsonReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buf = new char[bufferSize];
+    }
+
+    public void beginArray() throws IOException { expect('['); }
+    public void endArray() throws IOException { expect(']'); }
+    public void beginObject() throws IOException { expect('{'); }
+    public void endObject() throws IOException { expect('}'); }
+
+    // True while the current array/object has more elements; consumes the separating comma
+    public boolean hasNext() throws IOException {
+        int c = peekChar();
+        if (c == ',') { pos++; c = peekChar(); }
+        if (c == -1) throw syntax("unexpected end of input");
+        return c != ']' && c != '}';
+    }
+    public String nextName() throws IOException {
+        if (peekChar() != '"') throw syntax("expected field name");
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+    public String nextString() throws IOException {
+        int c = peekChar();
+        if (c == 'n') { readLiteral("null"); return null; }
+        if (c != '"') throw syntax("expected string");
+        pos++;
+        sb.setLength(0);
+        while (true) {
+            if (pos >= limit && !fill()) throw syntax("unterminated string");
+            int start = pos;
+            while (pos < limit && buf[pos] != '"' && buf[pos] != '\\') pos++;
+            sb.append(buf, start, pos - start);
+            if (pos >= limit) continue;
+            if (buf[pos++] == '"') return sb.toString();
+            sb.append(readEscape());
+        }
+    }
+    public LocalDate nextDate() throws IOException {
+        String s = nextString();
+        return s == null || s.isEmpty() ? null : LocalDate.parse(s);
+    }
+    public long nextLong() throws IOException {
+        boolean neg = false;
+        if (peekChar() == '-') { neg = true; pos++; }
+        long v = 0;
+        int digits = 0;
+        while (pos < limit || fill()) {
+            char ch = buf[pos];
+            if (ch < '0' || ch > '9') break;
+            v = v * 10 + (ch - '0');
+            pos++; digits++;
+        }
+        if (digits == 0) throw syntax("expected number");
+        return neg ? -v : v;
+    }
+    public int nextInt() throws IOException { return Math.toIntExact(nextLong()); }
+    // Any scalar as text (strings unquoted, numbers and booleans as written); null for JSON null
+    public String nextScalar() throws IOException {
+        int c = peekChar();
+        if (c == '"' || c == 'n') return nextString();
+        if (c == 't' || c == 'f') return String.valueOf(nextBoolean());
+        sb.setLength(0);
+        while (pos < limit || fill()) {
+            char ch = buf[pos];
+            if ((ch < '0' || ch > '9') && ch != '-' && ch != '+' && ch != '.' && ch != 'e' && ch != 'E') break;
+            sb.append(ch);
+            pos++;
+        }
+        if (sb.length() == 0) throw syntax("expected value");
+        return sb.toString();
+    }
+    public boolean nextBoolean() throws IOException {
+        int c = peekChar();
+        if (c == 't') { readLiteral("true"); return true; }
+        if (c == 'f') { readLiteral("false"); return false; }
+        throw syntax("expected boolean");
+    }
+    public void skipValue() throws IOException {
+        int c = peekChar();
+        switch (c) {
+            case '{':
+                beginObject();
+                while (hasNext()) { nextName(); skipValue(); }
+                endObject();
+                break;
+            case '[':
+                beginArray();
+                while (hasNext()) skipValue();
+                endArray();
+                break;
+            case '"': nextString(); break;
+            case 't': case 'f': nextBoolean(); break;
+            case 'n': readLiteral("null"); break;
+            default:
+                int n = 0;
+                while (pos < limit || fill()) {
+                    char ch = buf[pos];
+                    if ((ch < '0' || ch > '9') && ch != '-' && ch != '+' && ch != '.' && ch != 'e' && ch != 'E') break;
+                    pos++; n++;
+                }
+                if (n == 0) throw syntax("unexpected character");
+        }
+    }
+    @Override public void close() throws IOException { in.close(); }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) == 0) { }
+        if (n < 0) return false;
+        limit = n;
+        return true;
+    }
+    private int peekChar() throws IOException {
+        while (pos < limit || fill()) {
+            char c = buf[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            pos++;
+        }
+        return -1;
+    }
+    private char nextRawChar() throws IOException {
+        if (pos >= limit && !fill()) throw syntax("unexpected end of input");
+        return buf[pos++];
+    }
+    private void expect(char c) throws IOException {
+        if (peekChar() != c) throw syntax("expected '" + c + "'");
+        pos++;
+    }
+    private void readLiteral(String lit) throws IOException {
+        for (int i = 0; i < lit.length(); i++)
+            if (nextRawChar() != lit.charAt(i)) throw syntax("expected " + lit);
+    }
+    private char readEscape() throws IOException {
+        char e = nextRawChar();
+        switch (e) {
+            case '"': case '\\': case '/': return e;
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int v = 0;
+                for (int i = 0; i < 4; i++) {
+                    int d = Character.digit(nextRawChar(), 16);
+                    if (d < 0) throw syntax("bad unicode escape");
+                    v = (v << 4) | d;
+                }
+                return (char) v;
+            default: throw syntax("bad escape '\\" + e + "'");
+        }
+    }
+    private IOException syntax(String msg) {
+        return new IOException("Malformed JSON at char " + (offset + pos) + ": " + msg);
+    }
+}
+
+// Streaming JSON writer over one large char buffer; strings are escaped through a lookup table and
+// numbers/dates are formatted straight into the buffer. Without a target Writer it builds in memory.
+class JsonWriter implements Closeable, Flushable {
+    private static final char[][] ESCAPES = new char[128][];
+    static {
+        for (int c = 0; c < 0x20; c++) ESCAPES[c] = String.format("\\u%04x", c).toCharArray();
+        ESCAPES['"'] = "\\\"".toCharArray();
+        ESCAPES['\\'] = "\\\\".toCharArray();
+        ESCAPES['\b'] = "\\b".toCharArray();
+        ESCAPES['\f'] = "\\f".toCharArray();
+        ESCAPES['\n'] = "\\n".toCharArray();
+        ESCAPES['\r'] = "\\r".toCharArray();
+        ESCAPES['\t'] = "\\t".toCharArray();
+    }
+    // Valid in JSON but not in JavaScript source, so escaped as well
+    private static final char[] LS = "\\u2028".toCharArray(), PS = "\\u2029".toCharArray();
+    private static final int MAX_DEPTH = 64;
+
+    private final Writer out;
+    private char[] buf;
+    private int pos = 0;
+    private final boolean[] first = new boolean[MAX_DEPTH]; // no element written yet at this depth
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+        this.buf = new char[1 << 16];
+    }
+    public JsonWriter() {
+        this.out = null;
+        this.buf = new char[512];
+    }
+
+    public JsonWriter beginObject() throws IOException { return open('{'); }
+    public JsonWriter endObject() throws IOException { return close('}'); }
+    public JsonWriter beginArray() throws IOException { return open('['); }
+    public JsonWriter endArray() throws IOException { return close(']'); }
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeQuoted(name);
+        put(':');
+        afterName = true;
+        return this;
+    }
+    public JsonWriter value(String s) throws IOException {
+        if (s == null) return nullValue();
+        separate();
+        writeQuoted(s);
+        return this;
+    }
+    public JsonWriter value(boolean b) throws IOException {
+        separate();
+        writeRaw(b ? "true" : "false");
+        return this;
+    }
+    public JsonWriter value(long v) throws IOException {
+        separate();
+        if (v == Long.MIN_VALUE) { writeRaw("-9223372036854775808"); return this; }
+        if (v < 0) { put('-'); v = -v; }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        ensure(digits);
+        for (int i = pos + digits - 1; i >= pos; i--) { buf[i] = (char) ('0' + v % 10); v /= 10; }
+        pos += digits;
+        return this;
+    }
+    // ISO yyyy-MM-dd, as LocalDate.toString() gives for four-digit years
+    public JsonWriter value(LocalDate d) throws IOException {
+        if (d == null) return nullValue();
+        int y = d.getYear();
+        if (y < 0 || y > 9999) return value(d.toString());
+        separate();
+        ensure(12);
+        buf[pos++] = '"';
+        pos = digits(y, 4, pos);
+        buf[pos++] = '-';
+        pos = digits(d.getMonthValue(), 2, pos);
+        buf[pos++] = '-';
+        pos = digits(d.getDayOfMonth(), 2, pos);
+        buf[pos++] = '"';
+        return this;
+    }
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        writeRaw("null");
+        return this;
+    }
+    // Unescaped text outside the value structure, e.g. a record prefix or layout whitespace
+    public JsonWriter raw(String s) throws IOException {
+        writeRaw(s);
+        return this;
+    }
+    @Override public void flush() throws IOException {
+        if (out == null) return;
+        out.write(buf, 0, pos);
+        pos = 0;
+        out.flush();
+    }
+    @Override public void close() throws IOException {
+        flush();
+        if (out != null) out.close();
+    }
+    // In-memory mode: the JSON written so far
+    @Override public String toString() { return new String(buf, 0, pos); }
+
+    private JsonWriter open(char c) throws IOException {
+        if (depth == MAX_DEPTH) throw new IOException("JSON nested too deeply");
+        separate();
+        put(c);
+        first[depth++] = true;
+        return this;
+    }
+    private JsonWriter close(char c) throws IOException {
+        depth--;
+        put(c);
+        return this;
+    }
+    // Top-level values are not separated; records and snapshots place them with raw()
+    private void separate() throws IOException {
+        if (afterName) { afterName = false; return; }
+        if (depth == 0) return;
+        if (first[depth - 1]) first[depth - 1] = false;
+        else put(',');
+    }
+    private void writeQuoted(String s) throws IOException {
+        put('"');
+        int len = s.length(), start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            char[] esc = c < 128 ? ESCAPES[c] : c == '\u2028' ? LS : c == '\u2029' ? PS : null;
+            if (esc == null) continue;
+            writeRange(s, start, i);
+            ensure(esc.length);
+            System.arraycopy(esc, 0, buf, pos, esc.length);
+            pos += esc.length;
+            start = i + 1;
+        }
+        writeRange(s, start, len);
+        put('"');
+    }
+    private void writeRaw(String s) throws IOException { writeRange(s, 0, s.length()); }
+    private void writeRange(String s, int from, int to) throws IOException {
+        while (from < to) {
+            if (pos == buf.length) makeRoom(1);
+            int n = Math.min(to - from, buf.length - pos);
+            s.getChars(from, from + n, buf, pos);
+            pos += n;
+            from += n;
+        }
+    }
+    private int digits(int v, int width, int at) {
+        for (int i = at + width - 1; i >= at; i--) { buf[i] = (char) ('0' + v % 10); v /= 10; }
+        return at + width;
+    }
+    private void put(char c) throws IOException {
+        if (pos == buf.length) makeRoom(1);
+        buf[pos++] = c;
+    }
+    private void ensure(int n) throws IOException {
+        if (buf.length - pos < n) makeRoom(n);
+    }
+    // Streaming mode drains the buffer to the Writer; in-memory mode grows it
+    private void makeRoom(int n) throws IOException {
+        if (out != null) {
+            out.write(buf, 0, pos);
+            pos = 0;
+            if (buf.length >= n) return;
+        }
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+    }
+}
+
+// JSON mapping for users and their goals/habits/tasks
+final class UserCodec {
+    private UserCodec() {}
+
+    static User readJson(JsonReader in) throws IOException {
+        return readJson(in, null);
+    }
+    // counts, when given, receives goalCount/habitCount/taskCount from an items-less header record
+    static User readJson(JsonReader in, int[] counts) throws IOException {
+        int id = 0, points = 0, weekPoints = 0, monthPoints = 0;
+        String name = null, email = null, role = null, passwordHash = null, secQ = null, secAHash = null;
+        String theme = null, profile = null, avatar = null, reminderFreq = null, language = null, friendEmail = null;
+        LocalDate regDate = null, weekFrom = null, monthFrom = null, nextItemDate = LocalDate.EPOCH;
+        boolean accessibility = false, active = true;
+        List<Goal> goals = new ArrayList<>();
+        List<Habit> habits = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        List<String> badges = new ArrayList<>();
+        ActivitySeries activity = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": id = in.nextInt(); break;
+                case "name": name = in.nextString(); break;
+                case "email": email = in.nextString(); break;
+                case "role": role = in.nextString(); break;
+                case "passwordHash": passwordHash = in.nextString(); break;
+                case "securityQuestion": secQ = in.nextString(); break;
+                case "securityAnswerHash": secAHash = in.nextString(); break;
+                case "registrationDate": regDate = in.nextDate(); break;
+                case "points": points = in.nextInt(); break;
+                case "weekPointsFrom": weekFrom = in.nextDate(); break;
+                case "weekPoints": weekPoints = in.nextInt(); break;
+                case "monthPointsFrom": monthFrom = in.nextDate(); break;
+                case "monthPoints": monthPoints = in.nextInt(); break;
+                case "theme": theme = in.nextString(); break;
+                case "profileDescription": profile = in.nextString(); break;
+                case "avatar": avatar = in.nextString(); break;
+                case "reminderFrequency": reminderFreq = in.nextString(); break;
+                case "language": language = in.nextString(); break;
+                case "accessibilityMode": accessibility = in.nextBoolean(); break;
+                case "friendEmail": friendEmail = in.nextString(); break;
+                case "active": active = in.nextBoolean(); break;
+                case "goalCount": if (counts != null) counts[0] = in.nextInt(); else in.skipValue(); break;
+                case "habitCount": if (counts != null) counts[1] = in.nextInt(); else in.skipValue(); break;
+                case "taskCount": if (counts != null) counts[2] = in.nextInt(); else in.skipValue(); break;
+                case "nextItemDate": nextItemDate = in.nextDate(); break;
+                case "badges":
+                    in.beginArray();
+                    while (in.hasNext()) badges.add(in.nextString());
+                    in.endArray();
+                    break;
+                case "activity": activity = readActivity(in); break;
+                case "goals":
+                    in.beginArray();
+                    while (in.hasNext()) goals.add(readGoal(in));
+                    in.endArray();
+                    break;
+                case "habits":
+                    in.beginArray();
+                    while (in.hasNext()) habits.add(readHabit(in));
+                    in.endArray();
+                    break;
+                case "tasks":
+                    in.beginArray();
+                    while (in.hasNext()) tasks.add(readTask(in));
+                    in.endArray();
+                    break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if (email == null) throw new IOException("User record without email");
+        User u = "admin".equals(role) ? new Admin(id, name, email, passwordHash, secQ, secAHash) : new NormalUser(id, name, email, passwordHash, secQ, secAHash);
+        if (regDate != null) u.setRegistrationDate(regDate);
+        u.rewardPoints = points;
+        u.weekPointsFrom = weekFrom; u.weekPoints = weekPoints;
+        u.monthPointsFrom = monthFrom; u.monthPoints = monthPoints;
+        if (theme != null) u.theme = theme;
+        u.setProfileDescription(profile);
+        u.setAvatar(avatar);
+        u.setReminderFrequency(reminderFreq);
+        u.setLanguage(language);
+        u.setAccessibilityMode(accessibility);
+        u.setFriendEmail(friendEmail);
+        u.setActive(active);
+        u.badges.addAll(badges);
+        if (activity != null) u.setActivity(activity);
+        u.setNextItemDate(nextItemDate);
+        u.goals.addAll(goals);
+        u.habits.addAll(habits);
+        u.tasks.addAll(tasks);
+        return u;
+    }
+
+    // {"head": day, "tasks": [...], "habits": [...]}: daily counts, oldest first, ending at head
+    static ActivitySeries readActivity(JsonReader in) throws IOException {
+        LocalDate head = null;
+        int[] tasks = new int[0], habits = new int[0];
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "head": head = in.nextDate(); break;
+                case "tasks": tasks = readCounts(in); break;
+                case "habits": habits = readCounts(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if (tasks.length != habits.length) throw new IOException("Activity series with uneven counts");
+        return ActivitySeries.restore(head, tasks, habits);
+    }
+    private static int[] readCounts(JsonReader in) throws IOException {
+        List<Integer> counts = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) counts.add(in.nextInt());
+        in.endArray();
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+    static void writeActivity(ActivitySeries series, JsonWriter out) throws IOException {
+        LocalDate head = series.head();
+        if (head == null) return;
+        int[][] counts = series.dailyCounts();
+        out.name("activity").beginObject();
+        out.name("head").value(head);
+        out.name("tasks").beginArray();
+        for (int n : counts[ActivitySeries.TASKS]) out.value(n);
+        out.endArray();
+        out.name("habits").beginArray();
+        for (int n : counts[ActivitySeries.HABITS]) out.value(n);
+        out.endArray();
+        out.endObject();
+    }
+    static Goal readGoal(JsonReader in) throws IOException {
+        long id = 0;
+        String title = null, desc = null, status = null, note = null;
+        LocalDate deadline = null, reminderDate = null;
+        boolean pinned = false, archived = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": id = in.nextLong(); break;
+                case "title": title = in.nextString(); break;
+                case "desc": desc = in.nextString(); break;
+                case "deadline": deadline = in.nextDate(); break;
+                case "status": status = in.nextString(); break;
+                case "pinned": pinned = in.nextBoolean(); break;
+                case "note": note = emptyToNull(in.nextString()); break;
+                case "reminderDate": reminderDate = in.nextDate(); break;
+                case "archived": archived = in.nextBoolean(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        Goal goal = new Goal(title, desc, deadline);
+        goal.setId(id);
+        if (status != null) goal.setStatus(status);
+        goal.setPinned(pinned); goal.setNote(note);
+        goal.setReminderDate(reminderDate); goal.setArchived(archived);
+        return goal;
+    }
+
+    static Habit readHabit(JsonReader in) throws IOException {
+        long id = 0;
+        String name = null, freq = null, note = null;
+        int streak = 0;
+        LocalDate last = null, reminderDate = null, logStart = null;
+        String log = null;
+        boolean pinned = false, archived = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": id = in.nextLong(); break;
+                case "name": name = in.nextString(); break;
+                case "freq": freq = in.nextString(); break;
+                case "streak": streak = in.nextInt(); break;
+                case "last": last = in.nextDate(); break;
+                case "logStart": logStart = in.nextDate(); break;
+                case "log": log = in.nextString(); break;
+                case "pinned": pinned = in.nextBoolean(); break;
+                case "note": note = emptyToNull(in.nextString()); break;
+                case "reminderDate": reminderDate = in.nextDate(); break;
+                case "archived": archived = in.nextBoolean(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        Habit habit = new Habit(name, freq);
+        habit.setId(id);
+        habit.setPinned(pinned); habit.setNote(note);
+        if (logStart != null && log != null) habit.setLog(new HabitLog(logStart.toEpochDay(), decodeWords(log)));
+        else habit.restoreLegacyStreak(streak, last);
+        habit.setReminderDate(reminderDate); habit.setArchived(archived);
+        return habit;
+    }
+
+    static Task readTask(JsonReader in) throws IOException {
+        long id = 0;
+        String name = null, prio = null;
+        LocalDate due = null, reminderDate = null;
+        boolean done = false, pinned = false, archived = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": id = in.nextLong(); break;
+                case "name": name = in.nextString(); break;
+                case "due": due = in.nextDate(); break;
+                case "prio": prio = in.nextString(); break;
+                case "done": done = in.nextBoolean(); break;
+                case "pinned": pinned = in.nextBoolean(); break;
+                case "reminderDate": reminderDate = in.nextDate(); break;
+                case "archived": archived = in.nextBoolean(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        Task task = new Task(name, due, prio);
+        task.setId(id);
+        task.setPinned(pinned);
+        if (done) task.markComplete();
+        task.setReminderDate(reminderDate); task.setArchived(archived);
+        return task;
+    }
+
+    static void writeJson(User u, JsonWriter out) throws IOException {
+        writeJson(u, out, true);
+    }
+    // Without items the record carries only their counts (used for per-item storage)
+    static void writeJson(User u, JsonWriter out, boolean withItems) throws IOException {
+        out.beginObject();
+        out.name("id").value(u.getId());
+        out.name("name").value(u.getName());
+        out.name("email").value(u.getEmail());
+        out.name("role").value((u instanceof Admin) ? "admin" : "user");
+        out.name("passwordHash").value(u.getPasswordHash());
+        out.name("securityQuestion").value(u.getSecurityQuestion());
+        out.name("securityAnswerHash").value(u.getSecurityAnswerHash());
+        out.name("registrationDate").value(u.getRegistrationDate());
+        if (withItems) {
+            out.name("goals").beginArray();
+            for (Goal g : u.getGoals()) writeGoal(g, out);
+            out.endArray();
+            out.name("habits").beginArray();
+            for (Habit h : u.getHabits()) writeHabit(h, out);
+            out.endArray();
+            out.name("tasks").beginArray();
+            for (Task t : u.getTasks()) writeTask(t, out);
+            out.endArray();
+        } else {
+            out.name("goalCount").value(u.getGoalCount());
+            out.name("habitCount").value(u.getHabitCount());
+            out.name("taskCount").value(u.getTaskCount());
+        }
+        out.name("nextItemDate").value(u.getNextItemDate());
+        out.name("badges").beginArray();
+        for (String badge : u.getBadges()) out.value(badge);
+        out.endArray();
+        writeActivity(u.activity(), out);
+        out.name("points").value(u.getRewardPoints());
+        if (u.weekPointsFrom != null) out.name("weekPointsFrom").value(u.weekPointsFrom).name("weekPoints").value(u.weekPoints);
+        if (u.monthPointsFrom != null) out.name("monthPointsFrom").value(u.monthPointsFrom).name("monthPoints").value(u.monthPoints);
+        out.name("theme").value(u.getTheme());
+        out.name("profileDescription").value(u.getProfileDescription());
+        out.name("avatar").value(u.getAvatar());
+        out.name("reminderFrequency").value(u.getReminderFrequency());
+        out.name("language").value(u.getLanguage());
+        out.name("accessibilityMode").value(u.isAccessibilityMode());
+        out.name("friendEmail").value(u.getFriendEmail());
+        out.name("active").value(u.isActive());
+        out.endObject();
+    }
+    static void writeGoal(Goal g, JsonWriter out) throws IOException {
+        out.beginObject();
+        writeGoalFields(g, out);
+        out.endObject();
+    }
+    // The fields alone, for records that carry more than the item (export lines)
+    static void writeGoalFields(Goal g, JsonWriter out) throws IOException {
+        out.name("id").value(g.getId());
+        out.name("title").value(g.getTitle());
+        out.name("desc").value(g.getDescription());
+        out.name("deadline").value(g.getDeadline());
+        out.name("status").value(g.getStatus());
+        out.name("pinned").value(g.isPinned());
+        out.name("note").value(g.getNote());
+        out.name("reminderDate").value(g.getReminderDate());
+        out.name("archived").value(g.isArchived());
+    }
+    static void writeHabit(Habit h, JsonWriter out) throws IOException {
+        out.beginObject();
+        writeHabitFields(h, out);
+        out.endObject();
+    }
+    static void writeHabitFields(Habit h, JsonWriter out) throws IOException {
+        out.name("id").value(h.getId());
+        out.name("name").value(h.getName());
+        out.name("freq").value(h.getFrequency());
+        out.name("streak").value(h.getStreak());
+        out.name("longest").value(h.getLongestStreak());
+        out.name("last").value(h.getLastLoggedDate());
+        HabitLog log = h.getLog();
+        if (!log.isEmpty()) {
+            out.name("logStart").value(LocalDate.ofEpochDay(log.startDay()));
+            out.name("log").value(encodeWords(log.words()));
+        }
+        out.name("pinned").value(h.isPinned());
+        out.name("note").value(h.getNote());
+        out.name("reminderDate").value(h.getReminderDate());
+        out.name("archived").value(h.isArchived());
+    }
+    static void writeTask(Task t, JsonWriter out) throws IOException {
+        out.beginObject();
+        writeTaskFields(t, out);
+        out.endObject();
+    }
+    static void writeTaskFields(Task t, JsonWriter out) throws IOException {
+        out.name("id").value(t.getId());
+        out.name("name").value(t.getTaskName());
+        out.name("due").value(t.getDueDate());
+        out.name("prio").value(t.getPriority());
+        out.name("done").value(t.isDone());
+        out.name("pinned").value(t.isPinned());
+        out.name("reminderDate").value(t.getReminderDate());
+        out.name("archived").value(t.isArchived());
+    }
+    static void writeItem(Item item, JsonWriter out) throws IOException {
+        if (item instanceof Goal) writeGoal((Goal) item, out);
+        else if (item instanceof Habit) writeHabit((Habit) item, out);
+        else writeTask((Task) item, out);
+    }
+    // Single-record encodings built in memory (journal lines, store values)
+    static String toJson(User u, boolean withItems) {
+        JsonWriter out = new JsonWriter();
+        try { writeJson(u, out, withItems); }
+        catch (IOException e) { throw new UncheckedIOException(e); } // in-memory writer does not fail
+        return out.toString();
+    }
+    static String toJson(Item item) {
+        JsonWriter out = new JsonWriter();
+        try { writeItem(item, out); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        return out.toString();
+    }
+
+    // One user per line inside a top-level array
+    static void writeSnapshot(Collection<User> snapshotUsers, Writer target) throws IOException {
+        JsonWriter out = new JsonWriter(target);
+        out.raw("[");
+        int uCount = 0;
+        for (User u : snapshotUsers) {
+            out.raw(uCount++ > 0 ? ",\n  " : "\n  ");
+            writeJson(u, out);
+        }
+        out.raw("\n]\n");
+        out.flush();
+    }
+    static String snapshotJson(Collection<User> snapshotUsers) {
+        StringWriter sw = new StringWriter(1024 * Math.max(1, snapshotUsers.size()));
+        try { writeSnapshot(snapshotUsers, sw); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        return sw.toString();
+    }
+
+    static void readSnapshot(File f, Map<String, User> into) throws IOException {
+        if (!f.exists()) return;
+        try (JsonReader in = new JsonReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            in.beginArray();
+            while (in.hasNext()) {
+                User u = readJson(in);
+                into.put(u.getEmail(), u);
+            }
+            in.endArray();
+        }
+    }
+
+    // Deterministic users for the benchmarks, itemsPerUser each in turn goal, habit, task. Some text needs
+    // escaping, as real titles and notes do
+    static List<User> sampleUsers(int count, int itemsPerUser) {
+        String hash = PasswordHasher.sha256Hex("benchmark");
+        String[] texts = { "Read 20 pages", "Ship the \"v2\" release", "Call mum\nthen dad", "C:\\reports\\q3", "Café ☕ at 8" };
+        LocalDate base = LocalDate.of(2026, 1, 1);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User u = new NormalUser(i + 2, "User " + i, "u" + i + "@bench.test", hash, "Pet?", hash);
+            u.setRegistrationDate(base);
+            for (int j = 0; j < itemsPerUser; j++) {
+                String text = texts[(i + j) % texts.length];
+                LocalDate day = base.plusDays((i + j) % 365);
+                Item item;
+                if (j % 3 == 0) {
+                    Goal g = new Goal(text + " " + j, "Goal " + j + " of " + u.getEmail(), day);
+                    if (j % 2 == 0) g.setNote(text);
+                    u.goals.add(g);
+                    item = g;
+                } else if (j % 3 == 1) {
+                    Habit h = new Habit(text + " " + j, j % 2 == 0 ? "Daily" : "Weekly");
+                    for (int d = 0; d < 10; d++) h.getLog().log(day.minusDays(d * 2));
+                    u.habits.add(h);
+                    item = h;
+                } else {
+                    Task t = new Task(text + " " + j, day, j % 5 == 0 ? "High" : "Medium");
+                    if (j % 4 == 0) t.markComplete();
+                    u.tasks.add(t);
+                    item = t;
+                }
+                item.setId(u.nextItemId());
+            }
+            users.add(u);
+        }
+        return users;
+    }
+
+    // readSnapshot over sample files of growing size; ns/item should hold steady if loading is linear
+    static void benchmarkLoad(int maxItems, PrintStream report) throws IOException {
+        int perUser = 10;
+        File f = File.createTempFile("tracknest-load", ".json");
+        try {
+            // Untimed reads first, so the smallest sizes are not measured with a cold JIT
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
+                writeSnapshot(sampleUsers(Math.min(maxItems, 100_000) / perUser, perUser), out);
+            }
+            for (int run = 0; run < 3; run++) readSnapshot(f, new HashMap<>());
+            report.printf("%10s %9s %9s %9s %10s %9s%n", "Items", "Users", "MB", "Millis", "ns/item", "MB/s");
+            for (int items = 1000; items <= maxItems; items *= 10) {
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
+                    writeSnapshot(sampleUsers(items / perUser, perUser), out);
+                }
+                // Best of several reads, at least three and about a second's worth, so small files get a warm JIT
+                long best = Long.MAX_VALUE, spent = 0;
+                for (int run = 0; run < 3 || (spent < 1_000_000_000L && run < 50); run++) {
+                    Map<String, User> into = new HashMap<>();
+                    long t0 = System.nanoTime();
+                    readSnapshot(f, into);
+                    long t = System.nanoTime() - t0;
+                    if (into.size() != items / perUser) throw new IOException("Read " + into.size() + " users, wrote " + items / perUser);
+                    best = Math.min(best, t);
+                    spent += t;
+                }
+                double mb = f.length() / 1048576.0;
+                report.printf("%10d %9d %9.1f %9.1f %10.0f %9.1f%n", items, items / perUser, mb, best / 1e6, (double) best / items, mb * 1e9 / best);
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    // writeSnapshot throughput, UTF-8 encoding included, into a discarding stream and into a file, with the
+    // heap allocated per user where the JVM can report it
+    static void benchmarkWrite(int userCount, PrintStream report) throws IOException {
+        List<User> users = sampleUsers(userCount, 10);
+        File f = File.createTempFile("tracknest-write", ".json");
+        java.lang.management.ThreadMXBean mx = java.lang.management.ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean alloc = mx instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) mx : null;
+        long tid = Thread.currentThread().getId();
+        try {
+            report.printf("%-7s %9s %9s %9s %9s %12s%n", "Sink", "Users", "MB", "Millis", "MB/s", "Alloc/user");
+            for (boolean toFile : new boolean[] { false, true }) {
+                long best = Long.MAX_VALUE, bytes = 0, allocated = -1, spent = 0;
+                // Best of at least five runs and about two seconds' worth; the first few also warm the JIT
+                for (int run = 0; run < 5 || (spent < 2_000_000_000L && run < 50); run++) {
+                    long[] count = new long[1];
+                    OutputStream sink = toFile ? new FileOutputStream(f) : new OutputStream() {
+                        @Override public void write(int b) { count[0]++; }
+                        @Override public void write(byte[] b, int off, int len) { count[0] += len; }
+                    };
+                    long a0 = alloc != null ? alloc.getThreadAllocatedBytes(tid) : 0;
+                    long t0 = System.nanoTime();
+                    try (Writer out = new OutputStreamWriter(sink, StandardCharsets.UTF_8)) {
+                        writeSnapshot(users, out);
+                    }
+                    long t = System.nanoTime() - t0;
+                    if (alloc != null) allocated = alloc.getThreadAllocatedBytes(tid) - a0;
+                    bytes = toFile ? f.length() : count[0];
+                    best = Math.min(best, t);
+                    spent += t;
+                }
+                double mb = bytes / 1048576.0;
+                report.printf("%-7s %9d %9.1f %9.1f %9.1f %12s%n", toFile ? "file" : "memory", userCount, mb, best / 1e6, mb * 1e9 / best,
+                    allocated < 0 ? "n/a" : String.valueOf(allocated / Math.max(1, userCount)));
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static String emptyToNull(String s) { return s == null || s.isEmpty() ? null : s; }
+    // Habit log words as little-endian bytes in base64, trailing zero bytes dropped
+    private static String encodeWords(long[] words) {
+        byte[] bytes = new byte[words.length * 8];
+        int n = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) * 8));
+            if (bytes[i] != 0) n = i + 1;
+        }
+        return Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(bytes, n));
+    }
+    private static long[] decodeWords(String s) throws IOException {
+        byte[] bytes;
+        try { bytes = Base64.getDecoder().decode(s); }
+        catch (IllegalArgumentException e) { throw new IOException("Bad habit log: " + e.getMessage()); }
+        long[] words = new long[(bytes.length + 7) / 8];
+        for (int i = 0; i < bytes.length; i++) words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) * 8);
+        return words;
+    }
+}
+
+// Versioned binary snapshot. Strings are length-prefixed UTF-8, dates are epoch days and
+// repeated values (role, status, priority, frequency, theme, badges) are dictionary codes.
+// Layout: header | user bodies | footer (dictionary, user directory with body offsets) | footer offset
+// Loading decodes only the directory; each body is decoded when the user is first touched.
+final class BinarySnapshot {
+    static final int MAGIC = 0x544E5342; // "TNSB"
+    // 4: habits carry their log bitset instead of streak and last day; 5: activity series; 6: week and month points;
+    // 7: earliest item date in the directory
+    static final int VERSION = 7;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int F_PINNED = 1, F_ARCHIVED = 2, F_DONE = 4;
+    private static final int F_ACTIVE = 1, F_ACCESSIBILITY = 2;
+
+    private BinarySnapshot() {}
+
+    static byte[] encode(Collection<User> users) {
+        Out out = new Out(Math.max(4096, users.size() * 256));
+        Map<String, Integer> dict = new HashMap<>();
+        List<String> dictValues = new ArrayList<>();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        Out directory = new Out(Math.max(1024, users.size() * 128));
+        for (User u : users) {
+            writeDirectoryEntry(directory, u, out.size(), dict, dictValues);
+            writeBody(out, u, dict, dictValues);
+        }
+        long footer = out.size();
+        out.writeVarInt(dictValues.size());
+        for (String s : dictValues) out.writeString(s);
+        out.writeVarInt(users.size());
+        out.writeBytes(directory);
+        out.writeLong(footer);
+        return out.toByteArray();
+    }
+
+    static void read(File f, Map<String, User> into) throws IOException {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            In in = new In(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+            if (in.buf.limit() < 16 || in.buf.getInt(0) != MAGIC) throw new IOException("Not a TrackNest snapshot: " + f);
+            int version = in.buf.getInt(4);
+            if (version < 3 || version > VERSION) throw new IOException("Unsupported snapshot version " + version);
+            in.buf.position((int) in.buf.getLong(in.buf.limit() - 8));
+            String[] dict = new String[in.readVarInt()];
+            for (int i = 0; i < dict.length; i++) dict[i] = in.readString();
+            for (int i = in.readVarInt(); i > 0; i--) {
+                User u = readDirectoryEntry(in, dict, version);
+                into.put(u.getEmail(), u);
+            }
+        }
+    }
+
+    // Directory entry: everything login and the admin overviews need, plus the body offset
+    private static void writeDirectoryEntry(Out out, User u, long bodyOffset, Map<String, Integer> dict, List<String> dictValues) {
+        out.writeLong(bodyOffset);
+        out.writeInt(u.getId());
+        out.writeVarInt(code(u instanceof Admin ? "admin" : "user", dict, dictValues));
+        out.writeString(u.getEmail());
+        out.writeString(u.getName());
+        out.writeString(u.getPasswordHash());
+        out.writeByte(u.isActive() ? F_ACTIVE : 0);
+        out.writeInt(u.getRewardPoints());
+        out.writeInt(day(u.weekPointsFrom));
+        out.writeVarInt(u.weekPoints);
+        out.writeInt(day(u.monthPointsFrom));
+        out.writeVarInt(u.monthPoints);
+        out.writeInt(day(u.getRegistrationDate()));
+        out.writeVarInt(u.getGoalCount());
+        out.writeVarInt(u.getHabitCount());
+        out.writeVarInt(u.getTaskCount());
+        out.writeInt(day(u.getNextItemDate()));
+    }
+
+    private static User readDirectoryEntry(In in, String[] dict, int version) {
+        long bodyOffset = in.buf.getLong();
+        int id = in.buf.getInt();
+        String role = dict(in, dict);
+        String email = in.readString(), name = in.readString(), passwordHash = in.readString();
+        User u = "admin".equals(role) ? new Admin(id, name, email, passwordHash, null, null) : new NormalUser(id, name, email, passwordHash, null, null);
+        u.setActive((in.buf.get() & F_ACTIVE) != 0);
+        u.rewardPoints = in.buf.getInt();
+        if (version >= 6) {
+            u.weekPointsFrom = date(in.buf.getInt());
+            u.weekPoints = in.readVarInt();
+            u.monthPointsFrom = date(in.buf.getInt());
+            u.monthPoints = in.readVarInt();
+        }
+        LocalDate reg = date(in.buf.getInt());
+        if (reg != null) u.setRegistrationDate(reg);
+        int goals = in.readVarInt(), habits = in.readVarInt(), tasks = in.readVarInt();
+        u.setNextItemDate(version >= 7 ? date(in.buf.getInt()) : LocalDate.EPOCH);
+        ByteBuffer file = in.buf;
+        u.setLazyBody(target -> {
+            In body = new In(file.duplicate());
+            body.buf.position((int) bodyOffset);
+            readBody(body, dict, target, version);
+        }, false, goals, habits, tasks);
+        return u;
+    }
+
+    private static void writeBody(Out out, User u, Map<String, Integer> dict, List<String> dictValues) {
+        out.writeString(u.getSecurityQuestion());
+        out.writeString(u.getSecurityAnswerHash());
+        out.writeVarInt(code(u.getTheme(), dict, dictValues));
+        out.writeString(u.getProfileDescription());
+        out.writeString(u.getAvatar());
+        out.writeVarInt(code(u.getReminderFrequency(), dict, dictValues));
+        out.writeVarInt(code(u.getLanguage(), dict, dictValues));
+        out.writeString(u.getFriendEmail());
+        out.writeByte(u.isAccessibilityMode() ? F_ACCESSIBILITY : 0);
+        out.writeVarInt(u.getBadges().size());
+        for (String b : u.getBadges()) out.writeVarInt(code(b, dict, dictValues));
+        out.writeVarInt(u.getGoals().size());
+        for (Goal g : u.getGoals()) {
+            out.writeVarLong(g.getId());
+            out.writeString(g.getTitle());
+            out.writeString(g.getDescription());
+            out.writeInt(day(g.getDeadline()));
+            out.writeVarInt(code(g.getStatus(), dict, dictValues));
+            out.writeString(g.getNote());
+            out.writeInt(day(g.getReminderDate()));
+            out.writeByte((g.isPinned() ? F_PINNED : 0) | (g.isArchived() ? F_ARCHIVED : 0));
+        }
+        out.writeVarInt(u.getHabits().size());
+        for (Habit h : u.getHabits()) {
+            out.writeVarLong(h.getId());
+            out.writeString(h.getName());
+            out.writeVarInt(code(h.getFrequency(), dict, dictValues));
+            HabitLog log = h.getLog();
+            long[] words = log.words();
+            out.writeVarInt(words.length);
+            if (words.length > 0) out.writeInt((int) log.startDay());
+            for (long w : words) out.writeLong(w);
+            out.writeString(h.getNote());
+            out.writeInt(day(h.getReminderDate()));
+            out.writeByte((h.isPinned() ? F_PINNED : 0) | (h.isArchived() ? F_ARCHIVED : 0));
+        }
+        out.writeVarInt(u.getTasks().size());
+        for (Task t : u.getTasks()) {
+            out.writeVarLong(t.getId());
+            out.writeString(t.getTaskName());
+            out.writeInt(day(t.getDueDate()));
+            out.writeVarInt(code(t.getPriority(), dict, dictValues));
+            out.writeInt(day(t.getReminderDate()));
+            out.writeByte((t.isPinned() ? F_PINNED : 0) | (t.isArchived() ? F_ARCHIVED : 0) | (t.isDone() ? F_DONE : 0));
+        }
+        ActivitySeries activity = u.activity();
+        int[][] counts = activity.dailyCounts();
+        out.writeInt(day(activity.head()));
+        out.writeVarInt(counts[0].length);
+        for (int i = 0; i < counts[0].length; i++) {
+            out.writeVarInt(counts[ActivitySeries.TASKS][i]);
+            out.writeVarInt(counts[ActivitySeries.HABITS][i]);
+        }
+    }
+
+    private static void readBody(In in, String[] dict, User u, int version) {
+        u.setSecurityQuestion(in.readString());
+        u.setSecurityAnswerHash(in.readString());
+        String theme = dict(in, dict);
+        if (theme != null) u.theme = theme;
+        u.setProfileDescription(in.readString());
+        u.setAvatar(in.readString());
+        u.setReminderFrequency(dict(in, dict));
+        u.setLanguage(dict(in, dict));
+        u.setFriendEmail(in.readString());
+        u.setAccessibilityMode((in.buf.get() & F_ACCESSIBILITY) != 0);
+        for (int i = in.readVarInt(); i > 0; i--) u.badges.add(dict(in, dict));
+        List<Goal> goals = new ArrayList<>();
+        List<Habit> habits = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = in.readVarInt(); i > 0; i--) {
+            long id = in.readVarLong();
+            Goal g = new Goal(in.readString(), in.readString(), date(in.buf.getInt()));
+            g.setId(id);
+            g.setStatus(dict(in, dict));
+            g.setNote(in.readString());
+            g.setReminderDate(date(in.buf.getInt()));
+            int f = in.buf.get();
+            g.setPinned((f & F_PINNED) != 0); g.setArchived((f & F_ARCHIVED) != 0);
+            goals.add(g);
+        }
+        for (int i = in.readVarInt(); i > 0; i--) {
+            long id = in.readVarLong();
+            Habit h = new Habit(in.readString(), dict(in, dict));
+            h.setId(id);
+            if (version >= 4) {
+                long[] words = new long[in.readVarInt()];
+                long start = words.length > 0 ? in.buf.getInt() : 0;
+                for (int w = 0; w < words.length; w++) words[w] = in.buf.getLong();
+                if (words.length > 0) h.setLog(new HabitLog(start, words));
+            } else {
+                int streak = in.readVarInt();
+                h.restoreLegacyStreak(streak, date(in.buf.getInt()));
+            }
+            h.setNote(in.readString());
+            h.setReminderDate(date(in.buf.getInt()));
+            int f = in.buf.get();
+            h.setPinned((f & F_PINNED) != 0); h.setArchived((f & F_ARCHIVED) != 0);
+            habits.add(h);
+        }
+        for (int i = in.readVarInt(); i > 0; i--) {
+            long id = in.readVarLong();
+            Task t = new Task(in.readString(), date(in.buf.getInt()), dict(in, dict));
+            t.setId(id);
+            t.setReminderDate(date(in.buf.getInt()));
+            int f = in.buf.get();
+            t.setPinned((f & F_PINNED) != 0); t.setArchived((f & F_ARCHIVED) != 0);
+            if ((f & F_DONE) != 0) t.markComplete();
+            tasks.add(t);
+        }
+        if (version >= 5) {
+            LocalDate head = date(in.buf.getInt());
+            int[] done = new int[in.readVarInt()], logged = new int[done.length];
+            for (int i = 0; i < done.length; i++) { done[i] = in.readVarInt(); logged[i] = in.readVarInt(); }
+            u.setActivity(ActivitySeries.restore(head, done, logged));
+        }
+        u.goals.addAll(goals);
+        u.habits.addAll(habits);
+        u.tasks.addAll(tasks);
+    }
+
+    // Dictionary code 0 is null, otherwise index + 1
+    private static int code(String value, Map<String, Integer> dict, List<String> dictValues) {
+        if (value == null) return 0;
+        Integer c = dict.get(value);
+        if (c == null) {
+            dictValues.add(value);
+            c = dictValues.size();
+            dict.put(value, c);
+        }
+        return c;
+    }
+    private static String dict(In in, String[] dict) {
+        int c = in.readVarInt();
+        return c == 0 ? null : dict[c - 1];
+    }
+    private static int day(LocalDate d) { return d == null ? NO_DATE : (int) d.toEpochDay(); }
+    private static LocalDate date(int day) { return day == NO_DATE ? null : LocalDate.ofEpochDay(day); }
+
+    // Growable big-endian byte sink; strings are varint (length + 1) then UTF-8, 0 meaning null
+    private static final class Out {
+        private byte[] buf;
+        private int size;
+        Out(int capacity) { buf = new byte[capacity]; }
+        int size() { return size; }
+        byte[] toByteArray() { return Arrays.copyOf(buf, size); }
+        private void ensure(int n) {
+            if (size + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+        }
+        void writeByte(int b) { ensure(1); buf[size++] = (byte) b; }
+        void writeBytes(Out other) {
+            ensure(other.size);
+            System.arraycopy(other.buf, 0, buf, size, other.size);
+            size += other.size;
+        }
+        void writeInt(int v) {
+            ensure(4);
+            buf[size++] = (byte) (v >>> 24); buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8); buf[size++] = (byte) v;
+        }
+        void writeLong(long v) { writeInt((int) (v >>> 32)); writeInt((int) v); }
+        void writeVarInt(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) { buf[size++] = (byte) ((v & 0x7F) | 0x80); v >>>= 7; }
+            buf[size++] = (byte) v;
+        }
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) { buf[size++] = (byte) ((v & 0x7F) | 0x80); v >>>= 7; }
+            buf[size++] = (byte) v;
+        }
+        void writeString(String s) {
+            if (s == null) { writeVarInt(0); return; }
+            int len = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) len++;
+                else if (c < 0x800) len += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) { len += 4; i++; }
+                else len += 3;
+            }
+            writeVarInt(len + 1);
+            ensure(len);
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[size++] = (byte) (0xC0 | (c >> 6));
+                    buf[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[size++] = (byte) (0xF0 | (cp >> 18));
+                    buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[size++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    buf[size++] = (byte) (0xE0 | (c >> 12));
+                    buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+
+    // Cursor over the mapped file; strings are decoded one field at a time through a reused scratch array
+    private static final class In {
+        final ByteBuffer buf;
+        private byte[] scratch = new byte[256];
+        In(ByteBuffer buf) { this.buf = buf; }
+        int readVarInt() {
+            int v = 0, shift = 0, b;
+            do {
+                b = buf.get();
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+        long readVarLong() {
+            long v = 0;
+            int shift = 0, b;
+            do {
+                b = buf.get();
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+        String readString() {
+            int len = readVarInt() - 1;
+            if (len < 0) return null;
+            if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.get(scratch, 0, len);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+}
+
+// Append-only journal: one compact line per changed user ("P {json}") or deletion ("D email")
+class Journal {
+    private final File file;
+    private FileOutputStream stream;
+    private Writer out;
+    private long size;
+
+    public Journal(File file) {
+        this.file = file;
+        this.size = file.length();
+    }
+    static String putRecord(User u) {
+        return "P " + UserCodec.toJson(u, true);
+    }
+    static String deleteRecord(String email) { return "D " + email; }
+
+    public synchronized void append(String record) throws IOException {
+        if (out == null) {
+            stream = new FileOutputStream(file, true);
+            out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+        }
+        out.write(record);
+        out.write('\n');
+        size += record.length() + 1;
+    }
+    // Flush buffered records and force them to disk
+    public synchronized void sync() throws IOException {
+        if (out == null) return;
+        out.flush();
+        stream.getFD().sync();
+    }
+    public synchronized long size() { return size; }
+    public File getFile() { return file; }
+    public synchronized void truncate() throws IOException {
+        close();
+        new FileOutputStream(file).close();
+        size = 0;
+    }
+    public synchronized void close() throws IOException {
+        if (out != null) { out.close(); out = null; stream = null; }
+    }
+    // Records are whole-user upserts, so replaying a journal twice is harmless
+    static void replay(File f, Map<String, User> users) throws IOException {
+        if (!f.exists()) return;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.length() < 2) continue;
+                if (line.charAt(0) == 'D') {
+                    users.remove(line.substring(2));
+                } else if (line.charAt(0) == 'P') {
+                    User u;
+                    try { u = UserCodec.readJson(new JsonReader(new StringReader(line.substring(2)))); }
+                    catch (IOException e) {
+                        // A torn tail from a crash mid-append ends the usable journal
+                        Logger.getInstance().log(Logger.ERROR, "Journal " + f + " line " + lineNo + " unreadable, ignoring rest: " + e.getMessage());
+                        return;
+                    }
+                    users.put(u.getEmail(), u);
+                }
+            }
+        }
+    }
+}
+
+// Audit trail of who did what: logActivity hands entries to a bounded lock-free ring, and one appender
+// thread batch-writes them as JSON lines to segment files named by their first entry's time. A segment
+// is closed at midnight or once it reaches the size limit, and only the newest segments are kept.
+// Queries stream the segments overlapping the requested range rather than holding the trail in memory.
+class AuditLog implements Closeable {
+    static final String DIR = "tracknest_audit";
+    private static final int CAPACITY = 8192; // power of two
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("tracknest.auditFlushMs", 200L));
+    private static final long SEGMENT_BYTES = Long.getLong("tracknest.auditSegmentBytes", 1L << 20);
+    private static final int SEGMENTS_KEPT = Integer.getInteger("tracknest.auditSegmentsKept", 64);
+
+    static final class Entry {
+        final long time; // epoch millis
+        final String actor, action, target;
+        Entry(long time, String actor, String action, String target) { this.time = time; this.actor = actor; this.action = action; this.target = target; }
+        @Override public String toString() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).withNano(0) + "  " + actor + "  " + action + (target == null ? "" : "  " + target);
+        }
+    }
+
+    private final File dir;
+    // Vyukov-style ring: a slot is free for position p when its sequence is p, and holds an entry when p + 1
+    private final Entry[] slots = new Entry[CAPACITY];
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // appender only
+    private volatile long written; // entries durably on disk
+    private volatile boolean closed;
+    private final Thread appender;
+    // Current segment, appender only
+    private FileOutputStream stream;
+    private Writer out;
+    private long segmentBytes;
+    private LocalDate segmentDay;
+
+    AuditLog(File dir) {
+        this.dir = dir;
+        for (int i = 0; i < CAPACITY; i++) sequences.set(i, i);
+        appender = new Thread(this::run, "tracknest-audit");
+        appender.setDaemon(true);
+        appender.start();
+    }
+
+    // Never drops an entry: while the ring is full the caller waits for the appender to catch up
+    void append(String actor, String action, String target) {
+        Entry e = new Entry(System.currentTimeMillis(), actor, action, target);
+        while (!offer(e)) {
+            if (closed) { Logger.getInstance().log(Logger.ERROR, "Audit log closed, dropping: " + e); return; }
+            LockSupport.unpark(appender);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+    private boolean offer(Entry e) {
+        while (true) {
+            long pos = tail.get();
+            int i = (int) (pos & (CAPACITY - 1));
+            long seq = sequences.get(i);
+            if (seq < pos) return false;
+            if (seq == pos && tail.compareAndSet(pos, pos + 1)) {
+                slots[i] = e;
+                sequences.set(i, pos + 1);
+                return true;
+            }
+        }
+    }
+    private Entry poll() {
+        int i = (int) (head & (CAPACITY - 1));
+        if (sequences.get(i) != head + 1) return null;
+        Entry e = slots[i];
+        slots[i] = null;
+        sequences.set(i, head + CAPACITY);
+        head++;
+        return e;
+    }
+    // Waits until everything appended so far is on disk
+    void sync() {
+        long target = tail.get();
+        while (written < target && appender.isAlive()) {
+            LockSupport.unpark(appender);
+            LockSupport.parkNanos(200_000);
+        }
+    }
+    @Override public void close() {
+        sync();
+        closed = true;
+        LockSupport.unpark(appender);
+        try { appender.join(10000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private void run() {
+        while (true) {
+            boolean stopping = closed;
+            boolean any = false;
+            try {
+                for (Entry e; (e = poll()) != null; any = true) write(e);
+                if (any) {
+                    out.flush();
+                    stream.getFD().sync();
+                }
+            } catch (IOException ex) {
+                Logger.getInstance().log(Logger.ERROR, "Could not write audit log: " + ex.getMessage());
+            }
+            written = head;
+            if (stopping) break;
+            if (!any) LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+        }
+        try { closeSegment(); } catch (IOException ignored) {}
+    }
+    private void write(Entry e) throws IOException {
+        JsonWriter json = new JsonWriter();
+        json.beginObject().name("t").value(e.time).name("actor").value(e.actor).name("action").value(e.action).name("target").value(e.target).endObject();
+        String line = json + "\n";
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(e.time), ZoneId.systemDefault());
+        if (out == null) resumeSegment(day);
+        if (out == null || !day.equals(segmentDay) || segmentBytes + line.length() > SEGMENT_BYTES) openSegment(e.time, day);
+        out.write(line);
+        segmentBytes += line.length();
+    }
+    // After a restart, keep appending to today's last segment while it has room
+    private void resumeSegment(LocalDate day) throws IOException {
+        File[] segments = segments();
+        if (segments.length == 0) return;
+        File last = segments[segments.length - 1];
+        LocalDate lastDay = LocalDate.ofInstant(Instant.ofEpochMilli(startOf(last)), ZoneId.systemDefault());
+        if (!lastDay.equals(day) || last.length() >= SEGMENT_BYTES) return;
+        open(last, day);
+    }
+    private void openSegment(long firstTime, LocalDate day) throws IOException {
+        closeSegment();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        File f;
+        for (int n = 0; (f = new File(dir, String.format("audit-%013d-%d.log", firstTime, n))).exists(); n++) { }
+        open(f, day);
+        File[] segments = segments();
+        for (int i = 0; i < segments.length - SEGMENTS_KEPT; i++)
+            if (!segments[i].delete()) Logger.getInstance().log(Logger.ERROR, "Could not remove old audit segment " + segments[i]);
+    }
+    private void open(File f, LocalDate day) throws IOException {
+        stream = new FileOutputStream(f, true);
+        out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+        segmentBytes = f.length();
+        segmentDay = day;
+    }
+    private void closeSegment() throws IOException {
+        if (out == null) return;
+        out.flush();
+        stream.getFD().sync();
+        out.close();
+        out = null;
+    }
+
+    // Oldest first
+    private File[] segments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("audit-") && name.endsWith(".log"));
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparingLong(AuditLog::startOf).thenComparing(File::getName));
+        return files;
+    }
+    private static long startOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(6, name.indexOf('-', 6)));
+    }
+    // Entries with from <= time < to, oldest first; segments entirely outside the range are never opened
+    void query(long from, long to, java.util.function.Consumer<Entry> each) throws IOException {
+        sync();
+        File[] segments = segments();
+        for (int i = 0; i < segments.length; i++) {
+            if (startOf(segments[i]) >= to) break;
+            if (i + 1 < segments.length && startOf(segments[i + 1]) <= from) continue;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(segments[i]), StandardCharsets.UTF_8))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    Entry e = parse(line);
+                    if (e != null && e.time >= from && e.time < to) each.accept(e);
+                }
+            } catch (FileNotFoundException e) {
+                // rotated away while listing
+            }
+        }
+    }
+    // Null for a line torn by a crash mid-write
+    private static Entry parse(String line) {
+        long time = -1;
+        String actor = null, action = null, target = null;
+        try {
+            JsonReader in = new JsonReader(new StringReader(line), 256);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "t": time = in.nextLong(); break;
+                    case "actor": actor = in.nextString(); break;
+                    case "action": action = in.nextString(); break;
+                    case "target": target = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+        } catch (IOException e) {
+            return null;
+        }
+        return time < 0 ? null : new Entry(time, actor, action, target);
+    }
+}
+
+// Background writer: save requests arriving within the commit window share one durable write.
+// Storage is split into shards (snapshot + journal each); a commit only touches the shards it names.
+class PersistenceWriter {
+    private static final class Request {
+        final int shard;
+        final List<String> records;
+        final byte[] snapshot; // full binary snapshot of the shard, supersedes everything queued before it
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        Request(int shard, List<String> records, byte[] snapshot) { this.shard = shard; this.records = records; this.snapshot = snapshot; }
+    }
+    private static final Request STOP = new Request(-1, Collections.emptyList(), null);
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final File[] snapshotFiles;
+    private final Journal[] journals;
+    private final long windowNanos;
+    private final long compactThreshold;
+    private final Thread thread;
+    // Held for writing while a shard's snapshot is replaced and its journal truncated; readers hold it for
+    // reading so that they never pair a snapshot with a journal from another generation
+    private final ReentrantReadWriteLock[] generations;
+
+    public PersistenceWriter(File[] snapshotFiles, File[] journalFiles, long windowMillis, long compactThreshold) {
+        this.snapshotFiles = snapshotFiles;
+        this.journals = new Journal[journalFiles.length];
+        for (int i = 0; i < journalFiles.length; i++) journals[i] = new Journal(journalFiles[i]);
+        this.generations = new ReentrantReadWriteLock[journalFiles.length];
+        for (int i = 0; i < generations.length; i++) generations[i] = new ReentrantReadWriteLock();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.compactThreshold = compactThreshold;
+        this.thread = new Thread(this::run, "tracknest-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    public CompletableFuture<Void> appendRecords(int shard, List<String> records) { return enqueue(new Request(shard, records, null)); }
+    public CompletableFuture<Void> writeSnapshot(int shard, byte[] snapshot) { return enqueue(new Request(shard, Collections.emptyList(), snapshot)); }
+    public CompletableFuture<Void> flush() { return enqueue(new Request(-1, Collections.emptyList(), null)); }
+    ReentrantReadWriteLock.ReadLock readLock(int shard) { return generations[shard].readLock(); }
+    // Waits for everything queued so far to reach disk, then stops the writer thread
+    public void shutdown() {
+        if (!thread.isAlive()) return;
+        CompletableFuture<Void> last = flush();
+        queue.add(STOP);
+        try { last.get(10, TimeUnit.SECONDS); thread.join(10000); }
+        catch (Exception e) { Logger.getInstance().log(Logger.ERROR, "Pending saves may be lost: " + e.getMessage()); }
+    }
+
+    private CompletableFuture<Void> enqueue(Request r) {
+        if (!thread.isAlive()) {
+            r.done.completeExceptionally(new IllegalStateException("Persistence writer stopped"));
+            return r.done;
+        }
+        queue.add(r);
+        return r.done;
+    }
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Request first = queue.take();
+                if (first == STOP) break;
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                long left;
+                while ((left = deadline - System.nanoTime()) > 0) {
+                    Request r = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (r == null) break;
+                    if (r == STOP) { stopping = true; break; }
+                    batch.add(r);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            commit(batch);
+            batch.clear();
+        }
+        for (Journal j : journals) {
+            try { j.close(); } catch (IOException ignored) {}
+        }
+    }
+    private void commit(List<Request> batch) {
+        if (batch.isEmpty()) return;
+        int[] lastSnapshot = new int[journals.length];
+        Arrays.fill(lastSnapshot, -1);
+        boolean[] touched = new boolean[journals.length];
+        try {
+            for (int i = 0; i < batch.size(); i++)
+                if (batch.get(i).snapshot != null) lastSnapshot[batch.get(i).shard] = i;
+            for (int shard = 0; shard < journals.length; shard++) {
+                if (lastSnapshot[shard] < 0) continue;
+                replaceGeneration(shard, batch.get(lastSnapshot[shard]).snapshot);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Request r = batch.get(i);
+                if (r.shard < 0 || i < lastSnapshot[r.shard] || r.records.isEmpty()) continue;
+                for (String rec : r.records) journals[r.shard].append(rec);
+                touched[r.shard] = true;
+            }
+            for (int shard = 0; shard < journals.length; shard++)
+                if (touched[shard]) journals[shard].sync();
+            for (Request r : batch) r.done.complete(null);
+        } catch (Exception e) {
+            Logger.getInstance().log(Logger.ERROR, "Could not save data: " + e.getMessage());
+            for (Request r : batch) r.done.completeExceptionally(e);
+            return;
+        }
+        for (int shard = 0; shard < journals.length; shard++)
+            if (touched[shard] && journals[shard].size() > compactThreshold) compact(shard);
+    }
+    // Fold a shard's journal into a fresh snapshot; only this thread touches the files, so no rotation is needed
+    private void compact(int shard) {
+        try {
+            Map<String, User> folded = new LinkedHashMap<>();
+            if (snapshotFiles[shard].exists()) BinarySnapshot.read(snapshotFiles[shard], folded);
+            Journal.replay(journals[shard].getFile(), folded);
+            replaceGeneration(shard, BinarySnapshot.encode(folded.values()));
+        } catch (Exception e) { Logger.getInstance().log(Logger.ERROR, "Journal compaction failed for " + snapshotFiles[shard] + ": " + e.getMessage()); }
+    }
+    private void replaceGeneration(int shard, byte[] snapshot) throws IOException {
+        generations[shard].writeLock().lock();
+        try {
+            replaceAtomically(snapshotFiles[shard], snapshot);
+            journals[shard].truncate();
+        } finally {
+            generations[shard].writeLock().unlock();
+        }
+    }
+    // Write to a temp file, fsync it, then rename over the target so readers never see a partial file
+    static void replaceAtomically(File target, byte[] content) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            fos.write(content);
+            fos.getFD().sync();
+        }
+        moveIntoPlace(tmp, target);
+    }
+    // Renames an already synced temp file over the target
+    static void moveIntoPlace(File tmp, File target) throws IOException {
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
+
+// Persistence seam: TrackNestSystem reads and writes users and their items only through this
+interface StorageBackend extends Closeable {
+    // Loads every stored user into the map (backends may hand out directory-only users)
+    void scanUsers(Map<String, User> into) throws IOException;
+    User getUser(String email) throws IOException;
+    CompletableFuture<Void> putUser(User user);
+    CompletableFuture<Void> deleteUser(String email);
+    // Item-level writes; backends without item granularity rewrite the owning user
+    default CompletableFuture<Void> putItem(User owner, Item item) { return putUser(owner); }
+    default CompletableFuture<Void> deleteItem(User owner, Item item) { return putUser(owner); }
+    default CompletableFuture<Void> putItems(User owner, Collection<? extends Item> items) { return putUser(owner); }
+    default Item getItem(String email, long itemId) throws IOException {
+        User u = getUser(email);
+        if (u == null) return null;
+        for (Item i : scanItems(u)) if (i.getId() == itemId) return i;
+        return null;
+    }
+    default List<Item> scanItems(User owner) {
+        List<Item> items = new ArrayList<>(owner.getGoals());
+        items.addAll(owner.getHabits());
+        items.addAll(owner.getTasks());
+        return items;
+    }
+    // Completes once everything written so far is durable
+    CompletableFuture<Void> flush();
+    @Override void close();
+}
+
+// Picks the backend named by -Dtracknest.storage (lsm, sharded or json) and handles imports of older layouts
+final class StorageBackends {
+    static final String JSON_FILE = "tracknest_data.json";
+    static final String SHARD_DIR = "tracknest_data";
+    static final String LSM_DIR = "tracknest_kv";
+    static final String LEGACY_SNAPSHOT_FILE = "tracknest_data.bin";
+    static final String LEGACY_JOURNAL_FILE = "tracknest_data.journal";
+    // Saves arriving within this many milliseconds are committed together
+    static final long COMMIT_WINDOW_MS = Long.getLong("tracknest.commitWindowMs", 20L);
+
+    private StorageBackends() {}
+
+    static StorageBackend open() { return open(null); }
+    // Files go under base, or the working directory when it is null
+    static StorageBackend open(File base) {
+        String kind = System.getProperty("tracknest.storage", "lsm");
+        switch (kind.toLowerCase()) {
+            case "json": return new JsonFileBackend(new File(base, JSON_FILE));
+            case "sharded": return new ShardedBinaryBackend(new File(base, SHARD_DIR));
+            case "lsm": return new LsmBackend(new File(base, LSM_DIR));
+            default: throw new IllegalArgumentException("Unknown storage backend: " + kind);
+        }
+    }
+    // The single-file layouts that predate the data directories: binary snapshot + journal, else JSON
+    static boolean importSingleFile(File base, Map<String, User> into) throws IOException {
+        File bin = new File(base, LEGACY_SNAPSHOT_FILE);
+        File json = new File(base, JSON_FILE);
+        File journal = new File(base, LEGACY_JOURNAL_FILE);
+        if (bin.exists()) BinarySnapshot.read(bin, into);
+        else if (json.exists()) UserCodec.readSnapshot(json, into);
+        else if (!journal.exists()) return false;
+        Journal.replay(journal, into);
+        return true;
+    }
+    static void retireSingleFile(File base) {
+        for (String name : new String[] { LEGACY_SNAPSHOT_FILE, LEGACY_JOURNAL_FILE }) {
+            File f = new File(base, name);
+            if (f.exists() && !f.renameTo(new File(base, name + ".migrated")))
+                Logger.getInstance().log(Logger.ERROR, "Could not retire " + f);
+        }
+    }
+}
+
+// Compatibility backend: the whole system as one tracknest_data.json, rewritten on every change
+class JsonFileBackend implements StorageBackend {
+    private final File file;
+    private Map<String, User> users = new LinkedHashMap<>();
+    // Each user's record as of its last save, encoded while the saver held that user's lock. A rewrite joins
+    // these rather than reading users that other threads may be changing under their own locks
+    private final Map<String, String> records = new LinkedHashMap<>();
+
+    public JsonFileBackend(File file) { this.file = file; }
+
+    @Override public synchronized void scanUsers(Map<String, User> into) throws IOException {
+        UserCodec.readSnapshot(file, into);
+        users = into;
+        for (User u : into.values()) records.put(u.getEmail(), UserCodec.toJson(u, true));
+    }
+    @Override public User getUser(String email) { return users.get(email); }
+    @Override public synchronized CompletableFuture<Void> putUser(User user) {
+        records.put(user.getEmail(), UserCodec.toJson(user, true));
+        return rewrite();
+    }
+    @Override public synchronized CompletableFuture<Void> deleteUser(String email) {
+        records.remove(email);
+        return rewrite();
+    }
+    @Override public CompletableFuture<Void> flush() { return CompletableFuture.completedFuture(null); }
+    @Override public void close() {}
+    // Same layout as UserCodec.writeSnapshot
+    private CompletableFuture<Void> rewrite() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        StringBuilder json = new StringBuilder(1024 * Math.max(1, records.size())).append('[');
+        int n = 0;
+        for (String record : records.values()) json.append(n++ > 0 ? ",\n  " : "\n  ").append(record);
+        json.append("\n]\n");
+        try {
+            PersistenceWriter.replaceAtomically(file, json.toString().getBytes(StandardCharsets.UTF_8));
+            done.complete(null);
+        } catch (IOException e) {
+            Logger.getInstance().log(Logger.ERROR, "Could not save data: " + e.getMessage());
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+}
+
+// Hash-bucketed shards under a data directory, each a binary snapshot plus journal
+class ShardedBinaryBackend implements StorageBackend {
+    private static final long COMPACT_THRESHOLD_BYTES = 256 * 1024; // per shard
+    private final File dir;
+    private final int shardCount;
+    private final PersistenceWriter writer;
+
+    public ShardedBinaryBackend(File dir) {
+        this.dir = dir;
+        this.shardCount = readShardCount(dir);
+        this.writer = new PersistenceWriter(shardFiles(".bin"), shardFiles(".journal"), StorageBackends.COMMIT_WINDOW_MS, COMPACT_THRESHOLD_BYTES);
+    }
+    // String.hashCode is specified, so an email maps to the same shard across runs
+    int shardOf(String email) {
+        return Math.floorMod(email.hashCode(), shardCount);
+    }
+    private static int readShardCount(File dir) {
+        File manifest = new File(dir, "shards");
+        if (manifest.exists()) {
+            try { return Integer.parseInt(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).trim()); }
+            catch (Exception e) { Logger.getInstance().log(Logger.ERROR, "Bad shard manifest, using default: " + e.getMessage()); }
+        }
+        return Math.max(1, Integer.getInteger("tracknest.shards", 16));
+    }
+    private File[] shardFiles(String suffix) {
+        File[] files = new File[shardCount];
+        for (int i = 0; i < shardCount; i++) files[i] = new File(dir, String.format("shard-%03d%s", i, suffix));
+        return files;
+    }
+    // Each shard (binary snapshot + its journal) is parsed on the fork/join pool, then merged
+    @Override public void scanUsers(Map<String, User> into) throws IOException {
+        if (!dir.isDirectory()) { migrate(into); return; }
+        scanUsers(into, ForkJoinPool.commonPool());
+    }
+    private void scanUsers(Map<String, User> into, ForkJoinPool pool) {
+        List<ForkJoinTask<Map<String, User>>> parts = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            parts.add(pool.submit(() -> loadShard(shard)));
+        }
+        for (ForkJoinTask<Map<String, User>> part : parts) into.putAll(part.join());
+    }
+
+    // Loads the same sample shards on pools of 1, 2, 4... threads up to twice the core count, at least 4.
+    // Bodies stay lazy, as at startup, so this times reading the files and decoding the user directories
+    static void benchmarkLoad(int userCount, PrintStream report) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        File dir = Files.createTempDirectory("tracknest-shards").toFile();
+        ShardedBinaryBackend backend = new ShardedBinaryBackend(dir);
+        try {
+            backend.writeAll(UserCodec.sampleUsers(userCount, 10)).join();
+            long bytes = 0;
+            for (File f : backend.shardFiles(".bin")) bytes += f.length();
+            report.printf("%d users in %d shards, %.1f MB, %d cores%n", userCount, backend.shardCount, bytes / 1048576.0, cores);
+            report.printf("%7s %9s %12s %9s %8s%n", "Threads", "Millis", "Users/s", "MB/s", "Speedup");
+            // Untimed passes, so the JIT and the page cache do not favour the later rows
+            for (int run = 0; run < 10; run++) backend.scanUsers(new HashMap<>(), ForkJoinPool.commonPool());
+            double single = 0;
+            for (int threads = 1; threads <= Math.max(4, cores * 2); threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long best = Long.MAX_VALUE;
+                try {
+                    for (int run = 0; run < 5; run++) {
+                        Map<String, User> into = new HashMap<>();
+                        long t0 = System.nanoTime();
+                        backend.scanUsers(into, pool);
+                        best = Math.min(best, System.nanoTime() - t0);
+                        if (into.size() != userCount) throw new IOException("Loaded " + into.size() + " users, wrote " + userCount);
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+                if (threads == 1) single = best;
+                report.printf("%7d %9.1f %12.0f %9.1f %7.2fx%n", threads, best / 1e6, userCount * 1e9 / best, bytes / 1048576.0 * 1e9 / best, single / best);
+            }
+        } finally {
+            backend.close();
+            File[] files = dir.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            dir.delete();
+        }
+    }
+    private Map<String, User> loadShard(int shard) throws IOException {
+        File bin = shardFiles(".bin")[shard];
+        Map<String, User> part = new LinkedHashMap<>();
+        ReentrantReadWriteLock.ReadLock generation = writer.readLock(shard);
+        generation.lock();
+        try {
+            readShard(bin, shard, part);
+        } finally {
+            generation.unlock();
+        }
+        return part;
+    }
+    private void readShard(File bin, int shard, Map<String, User> part) throws IOException {
+        try {
+            if (bin.exists()) BinarySnapshot.read(bin, part);
+        } catch (IOException | RuntimeException e) {
+            // Keep the damaged file for recovery and carry on with the journal alone
+            File aside = new File(bin.getPath() + ".corrupt");
+            Logger.getInstance().log(Logger.ERROR, "Could not load " + bin + " (moved to " + aside + "): " + e.getMessage());
+            part.clear();
+            if (!bin.renameTo(aside)) Logger.getInstance().log(Logger.ERROR, "Could not move " + bin + " aside");
+        }
+        Journal.replay(shardFiles(".journal")[shard], part);
+    }
+    // One-time move from the single-file layout next to the shard directory
+    private void migrate(Map<String, User> into) throws IOException {
+        File base = dir.getParentFile();
+        boolean found = StorageBackends.importSingleFile(base, into);
+        Files.createDirectories(dir.toPath());
+        Files.write(new File(dir, "shards").toPath(), String.valueOf(shardCount).getBytes(StandardCharsets.UTF_8));
+        if (found) writeAll(into.values()).thenRun(() -> StorageBackends.retireSingleFile(base));
+    }
+    CompletableFuture<Void> writeAll(Collection<User> all) {
+        List<List<User>> byShard = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) byShard.add(new ArrayList<>());
+        for (User u : all) byShard.get(shardOf(u.getEmail())).add(u);
+        CompletableFuture<?>[] done = new CompletableFuture<?>[shardCount];
+        for (int i = 0; i < shardCount; i++) done[i] = writer.writeSnapshot(i, BinarySnapshot.encode(byShard.get(i)));
+        return CompletableFuture.allOf(done);
+    }
+    @Override public User getUser(String email) throws IOException {
+        return loadShard(shardOf(email)).get(email);
+    }
+    @Override public CompletableFuture<Void> putUser(User user) {
+        return writer.appendRecords(shardOf(user.getEmail()), Collections.singletonList(Journal.putRecord(user)));
+    }
+    @Override public CompletableFuture<Void> deleteUser(String email) {
+        return writer.appendRecords(shardOf(email), Collections.singletonList(Journal.deleteRecord(email)));
+    }
+    @Override public CompletableFuture<Void> flush() { return writer.flush(); }
+    @Override public void close() { writer.shutdown(); }
+}
+
+// Key layout on the LSM engine: "u\0<email>" holds the user record without items (with item counts),
+// "i\0<email>\0<kind>\0<id>" holds one goal (g), habit (h) or task (t); "m\0migrated" marks that the
+// older layouts have been imported, so a store emptied later does not bring them back
+class LsmBackend implements StorageBackend {
+    private static final String MIGRATED_KEY = "m\u0000migrated";
+    private final LsmStore store;
+    private final File base; // where the older layouts are looked for
+
+    public LsmBackend(File dir) {
+        this.store = new LsmStore(dir, StorageBackends.COMMIT_WINDOW_MS);
+        this.base = dir.getParentFile();
+    }
+
+    static String userKey(String email) { return "u\u0000" + email; }
+    static String itemPrefix(String email) { return "i\u0000" + email + "\u0000"; }
+    static String itemKey(String email, Item item) {
+        char kind = item instanceof Goal ? 'g' : item instanceof Habit ? 'h' : 't';
+        String hex = Long.toHexString(item.getId()); // zero-padded to 16 digits so keys sort by id
+        return itemPrefix(email) + kind + "\u0000" + "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    @Override public void scanUsers(Map<String, User> into) throws IOException {
+        NavigableMap<String, String> headers = store.scan("u\u0000");
+        boolean migrated = store.get(MIGRATED_KEY) != null;
+        if (headers.isEmpty() && !migrated) { migrate(into); return; }
+        // Stores written before the marker existed
+        if (!migrated) store.write(Collections.singletonMap(MIGRATED_KEY, "1"));
+        int[] counts = new int[3];
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            counts[0] = counts[1] = counts[2] = 0;
+            User u = UserCodec.readJson(new JsonReader(new StringReader(e.getValue())), counts);
+            u.setLazyBody(this::loadItems, true, counts[0], counts[1], counts[2]);
+            into.put(u.getEmail(), u);
+        }
+    }
+    // Empty store: import the sharded directory or the single-file layout, if either exists
+    private void migrate(Map<String, User> into) throws IOException {
+        File shards = new File(base, StorageBackends.SHARD_DIR);
+        if (shards.isDirectory()) {
+            ShardedBinaryBackend old = new ShardedBinaryBackend(shards);
+            try { old.scanUsers(into); } finally { old.close(); }
+        } else if (StorageBackends.importSingleFile(base, into)) {
+            StorageBackends.retireSingleFile(base);
+        }
+        for (User u : into.values()) putUser(u);
+        store.write(Collections.singletonMap(MIGRATED_KEY, "1"));
+        flush().join();
+    }
+    private void loadItems(User u) {
+        List<Goal> goals = new ArrayList<>();
+        List<Habit> habits = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (Map.Entry<String, String> e : store.scan(itemPrefix(u.getEmail())).entrySet()) {
+            String key = e.getKey();
+            char kind = key.charAt(key.length() - 18);
+            try {
+                JsonReader in = new JsonReader(new StringReader(e.getValue()), 1024);
+                if (kind == 'g') goals.add(UserCodec.readGoal(in));
+                else if (kind == 'h') habits.add(UserCodec.readHabit(in));
+                else tasks.add(UserCodec.readTask(in));
+            } catch (IOException ex) { Logger.getInstance().log(Logger.ERROR, "Bad item record " + key + ": " + ex.getMessage()); }
+        }
+        u.goals.addAll(goals);
+        u.habits.addAll(habits);
+        u.tasks.addAll(tasks);
+    }
+    @Override public User getUser(String email) throws IOException {
+        String header = store.get(userKey(email));
+        if (header == null) return null;
+        User u = UserCodec.readJson(new JsonReader(new StringReader(header)));
+        loadItems(u);
+        return u;
+    }
+    // Whole-user write: header, every item, and tombstones for items no longer present
+    @Override public CompletableFuture<Void> putUser(User user) {
+        user.ensureItemIds();
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (String key : store.scan(itemPrefix(user.getEmail())).keySet()) batch.put(key, null);
+        for (Item item : scanItems(user)) batch.put(itemKey(user.getEmail(), item), UserCodec.toJson(item));
+        batch.put(userKey(user.getEmail()), UserCodec.toJson(user, false));
+        return store.write(batch);
+    }
+    @Override public CompletableFuture<Void> putItem(User owner, Item item) {
+        if (item.getId() == 0) item.setId(owner.nextItemId());
+        Map<String, String> batch = new LinkedHashMap<>();
+        batch.put(itemKey(owner.getEmail(), item), UserCodec.toJson(item));
+        batch.put(userKey(owner.getEmail()), UserCodec.toJson(owner, false));
+        return store.write(batch);
+    }
+    @Override public CompletableFuture<Void> putItems(User owner, Collection<? extends Item> items) {
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (Item item : items) {
+            if (item.getId() == 0) item.setId(owner.nextItemId());
+            batch.put(itemKey(owner.getEmail(), item), UserCodec.toJson(item));
+        }
+        batch.put(userKey(owner.getEmail()), UserCodec.toJson(owner, false));
+        return store.write(batch);
+    }
+    @Override public CompletableFuture<Void> deleteItem(User owner, Item item) {
+        Map<String, String> batch = new LinkedHashMap<>();
+        if (item.getId() != 0) batch.put(itemKey(owner.getEmail(), item), null);
+        batch.put(userKey(owner.getEmail()), UserCodec.toJson(owner, false));
+        return store.write(batch);
+    }
+    @Override public Item getItem(String email, long itemId) throws IOException {
+        String suffix = "\u0000" + String.format("%016x", itemId);
+        for (Map.Entry<String, String> e : store.scan(itemPrefix(email)).entrySet()) {
+            if (!e.getKey().endsWith(suffix)) continue;
+            char kind = e.getKey().charAt(e.getKey().length() - 18);
+            JsonReader in = new JsonReader(new StringReader(e.getValue()));
+            return kind == 'g' ? UserCodec.readGoal(in) : kind == 'h' ? UserCodec.readHabit(in) : UserCodec.readTask(in);
+        }
+        return null;
+    }
+    @Override public CompletableFuture<Void> deleteUser(String email) {
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (String key : store.scan(itemPrefix(email)).keySet()) batch.put(key, null);
+        batch.put(userKey(email), null);
+        return store.write(batch);
+    }
+    @Override public CompletableFuture<Void> flush() { return store.sync(); }
+    @Override public void close() { store.close(); }
+}
+
+// Embedded log-structured key/value store: writes land in a WAL and a sorted memtable, full memtables
+// become immutable sorted segment files, and a background merger folds segments together
+class LsmStore implements Closeable {
+    // Identity-compared marker for deleted keys; segments store it as a flag byte
+    private static final String TOMBSTONE = new String("\u0000deleted");
+    private static final int SEGMENT_MAGIC = 0x544E4C53; // "TNLS"
+    private static final int INDEX_INTERVAL = 32;
+    private static final int MERGE_THRESHOLD = 4;
+    private static final long MEMTABLE_LIMIT = Long.getLong("tracknest.memtableBytes", 4L * 1024 * 1024);
+
+    private final File dir;
+    private final long windowMillis;
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "tracknest-lsm-sync"));
+    private final ExecutorService merger = Executors.newSingleThreadExecutor(r -> daemon(r, "tracknest-lsm-merge"));
+    private volatile ConcurrentSkipListMap<String, String> memtable = new ConcurrentSkipListMap<>();
+    private volatile ConcurrentSkipListMap<String, String> flushing;
+    private volatile List<Segment> segments = new ArrayList<>(); // newest first, replaced wholesale
+    private Runnable failedFlush; // a frozen memtable whose segment write failed; retried on the next full memtable
+    private long memBytes;
+    private long nextId;
+    private File walFile;
+    private FileOutputStream walStream;
+    private OutputStream wal;
+    private List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private boolean syncScheduled;
+    private boolean closed;
+
+    public LsmStore(File dir, long windowMillis) {
+        this.dir = dir;
+        this.windowMillis = windowMillis;
+        try { open(); }
+        catch (IOException e) { throw new UncheckedIOException("Could not open " + dir, e); }
+    }
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+    // Load segments, drop any a merge already superseded, and fold leftover WALs into a new segment
+    private void open() throws IOException {
+        Files.createDirectories(dir.toPath());
+        List<Segment> found = new ArrayList<>();
+        File[] files = dir.listFiles();
+        List<File> wals = new ArrayList<>();
+        for (File f : files == null ? new File[0] : files) {
+            String n = f.getName();
+            if (n.endsWith(".tmp")) Files.deleteIfExists(f.toPath());
+            else if (n.startsWith("seg-") && n.endsWith(".sst")) found.add(new Segment(f, fileId(n)));
+            else if (n.startsWith("wal-") && n.endsWith(".log")) wals.add(f);
+            if (n.startsWith("seg-") || n.startsWith("wal-")) nextId = Math.max(nextId, fileId(n) + 1);
+        }
+        found.sort((a, b) -> Long.compare(b.id, a.id));
+        List<Segment> live = new ArrayList<>();
+        for (Segment s : found) {
+            boolean superseded = false;
+            for (Segment other : found) if (other != s && other.coversFrom <= s.id && s.id < other.id) superseded = true;
+            if (superseded) Files.deleteIfExists(s.file.toPath());
+            else live.add(s);
+        }
+        segments = live;
+        wals.sort(Comparator.comparingLong(f -> fileId(f.getName())));
+        ConcurrentSkipListMap<String, String> recovered = new ConcurrentSkipListMap<>();
+        for (File w : wals) replayWal(w, recovered);
+        if (!recovered.isEmpty()) {
+            List<Segment> next = new ArrayList<>(segments);
+            next.add(0, writeSegment(recovered.entrySet().iterator(), nextId++, -1));
+            segments = next;
+        }
+        for (File w : wals) Files.deleteIfExists(w.toPath());
+        openWal();
+    }
+    private static long fileId(String name) {
+        return Long.parseLong(name.substring(4, name.indexOf('.')));
+    }
+    private void openWal() throws IOException {
+        walFile = new File(dir, String.format("wal-%06d.log", nextId++));
+        walStream = new FileOutputStream(walFile, true);
+        wal = new BufferedOutputStream(walStream, 64 * 1024);
+    }
+
+    public String get(String key) {
+        ConcurrentSkipListMap<String, String> m, f;
+        List<Segment> segs;
+        // The three layers are read together: a flush finishing between separate reads would hide its entries
+        synchronized (this) { m = memtable; f = flushing; segs = segments; }
+        String v = m.get(key);
+        if (v == null && f != null) v = f.get(key);
+        if (v == null) {
+            for (Segment s : segs) {
+                v = s.get(key);
+                if (v != null) break;
+            }
+        }
+        return v == TOMBSTONE ? null : v;
+    }
+    // All live entries whose key starts with the prefix, in key order; newer layers win
+    public NavigableMap<String, String> scan(String prefix) {
+        ConcurrentSkipListMap<String, String> m, f;
+        List<Segment> segs;
+        synchronized (this) { m = memtable; f = flushing; segs = segments; }
+        TreeMap<String, String> out = new TreeMap<>();
+        for (int i = segs.size() - 1; i >= 0; i--) segs.get(i).scan(prefix, out);
+        if (f != null) out.putAll(prefixView(f, prefix));
+        out.putAll(prefixView(m, prefix));
+        out.values().removeIf(v -> v == TOMBSTONE);
+        return out;
+    }
+    private static NavigableMap<String, String> prefixView(ConcurrentSkipListMap<String, String> m, String prefix) {
+        return m.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+    // Applies a batch atomically to the memtable; the future completes once the batch is fsynced.
+    // A null value deletes the key.
+    public synchronized CompletableFuture<Void> write(Map<String, String> batch) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (closed) {
+            done.completeExceptionally(new IllegalStateException("Store closed"));
+            return done;
+        }
+        try {
+            ByteArrayOutputStream rec = new ByteArrayOutputStream(256);
+            for (Map.Entry<String, String> e : batch.entrySet()) writeEntry(rec, e.getKey(), e.getValue());
+            // The batch is framed by its length so a torn tail is dropped as a whole
+            writeVarInt(wal, rec.size());
+            rec.writeTo(wal);
+        } catch (IOException e) {
+            done.completeExceptionally(e);
+            return done;
+        }
+        for (Map.Entry<String, String> e : batch.entrySet()) {
+            memtable.put(e.getKey(), e.getValue() == null ? TOMBSTONE : e.getValue());
+            memBytes += e.getKey().length() + (e.getValue() == null ? 0 : e.getValue().length()) + 16;
+        }
+        pending.add(done);
+        if (!syncScheduled) {
+            syncScheduled = true;
+            syncer.schedule(this::syncPending, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        if (memBytes >= MEMTABLE_LIMIT) {
+            if (flushing == null) rotate();
+            else if (failedFlush != null) { merger.execute(failedFlush); failedFlush = null; }
+        }
+        return done;
+    }
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        syncer.execute(() -> { syncPending(); done.complete(null); });
+        return done;
+    }
+    // Group commit: one fsync covers every batch written since the last one
+    private void syncPending() {
+        List<CompletableFuture<Void>> batch;
+        FileOutputStream stream;
+        synchronized (this) {
+            syncScheduled = false;
+            // Nothing written since the last fsync; also keeps a timer that fires after close off the closed log
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+            stream = walStream;
+            try { wal.flush(); }
+            catch (IOException e) { failAll(batch, e); return; }
+        }
+        try { stream.getFD().sync(); }
+        catch (IOException e) { failAll(batch, e); return; }
+        for (CompletableFuture<Void> f : batch) f.complete(null);
+    }
+    private static void failAll(List<CompletableFuture<Void>> batch, Exception e) {
+        Logger.getInstance().log(Logger.ERROR, "Could not sync store: " + e.getMessage());
+        for (CompletableFuture<Void> f : batch) f.completeExceptionally(e);
+    }
+    // Freeze the memtable and start a new WAL; the frozen table becomes a segment in the background
+    private void rotate() {
+        File oldWal = walFile;
+        FileOutputStream oldStream = walStream;
+        try {
+            wal.flush();
+            oldStream.getFD().sync();
+            oldStream.close();
+            openWal();
+        } catch (IOException e) {
+            Logger.getInstance().log(Logger.ERROR, "Could not rotate store log: " + e.getMessage());
+            return;
+        }
+        for (CompletableFuture<Void> f : pending) f.complete(null);
+        pending = new ArrayList<>();
+        ConcurrentSkipListMap<String, String> frozen = memtable;
+        flushing = frozen;
+        memtable = new ConcurrentSkipListMap<>();
+        memBytes = 0;
+        long id = nextId++;
+        merger.execute(() -> flushFrozen(frozen, id, oldWal));
+    }
+    // Runs on the merger. The frozen table stays readable as flushing until its segment is published; on
+    // failure it stays there (and its WAL on disk) and the write is retried once the memtable fills again
+    private void flushFrozen(ConcurrentSkipListMap<String, String> frozen, long id, File oldWal) {
+        try {
+            Segment seg = writeSegment(frozen.entrySet().iterator(), id, -1);
+            synchronized (this) {
+                List<Segment> next = new ArrayList<>(segments);
+                next.add(0, seg);
+                segments = next;
+                flushing = null;
+            }
+        } catch (IOException e) {
+            Logger.getInstance().log(Logger.ERROR, "Could not flush store segment (log kept for recovery): " + e.getMessage());
+            synchronized (this) { failedFlush = () -> flushFrozen(frozen, id, oldWal); }
+            return;
+        }
+        try {
+            Files.deleteIfExists(oldWal.toPath());
+            if (segments.size() >= MERGE_THRESHOLD) merge();
+        } catch (IOException e) {
+            Logger.getInstance().log(Logger.ERROR, "Could not merge store segments: " + e.getMessage());
+        }
+    }
+    // Fold every segment into one; tombstones can go because nothing older remains to shadow. The inputs are
+    // streamed through a k-way merge, so only their sparse indexes are held in memory
+    private void merge() throws IOException {
+        List<Segment> inputs = segments;
+        Iterator<Map.Entry<String, String>> merged = new MergeIterator(inputs);
+        long newest = inputs.get(0).id, oldest = inputs.get(inputs.size() - 1).id;
+        for (Segment s : inputs) oldest = Math.min(oldest, s.coversFrom);
+        // Reusing the newest input's id keeps segments ordered by age; coversFrom lets recovery drop the inputs
+        Segment out = writeSegment(merged, newest, oldest);
+        synchronized (this) {
+            List<Segment> next = new ArrayList<>(segments);
+            next.removeAll(inputs);
+            next.add(out);
+            next.sort((a, b) -> Long.compare(b.id, a.id));
+            segments = next;
+        }
+        for (Segment s : inputs) if (s.id != newest) Files.deleteIfExists(s.file.toPath());
+    }
+    // Streams sorted entries to a temp file, then renames it into place
+    private Segment writeSegment(Iterator<Map.Entry<String, String>> entries, long id, long coversFrom) throws IOException {
+        File f = new File(dir, String.format("seg-%06d.sst", id));
+        File tmp = new File(f.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(SEGMENT_MAGIC);
+            List<String> indexKeys = new ArrayList<>();
+            List<Long> indexOffsets = new ArrayList<>();
+            int n = 0;
+            while (entries.hasNext()) {
+                Map.Entry<String, String> e = entries.next();
+                if (n++ % INDEX_INTERVAL == 0) { indexKeys.add(e.getKey()); indexOffsets.add((long) out.size()); }
+                writeEntry(out, e.getKey(), e.getValue() == TOMBSTONE ? null : e.getValue());
+            }
+            long indexOffset = out.size();
+            writeVarInt(out, indexKeys.size());
+            for (int i = 0; i < indexKeys.size(); i++) {
+                writeBytes(out, indexKeys.get(i).getBytes(StandardCharsets.UTF_8));
+                out.writeLong(indexOffsets.get(i));
+            }
+            out.writeLong(coversFrom < 0 ? id : coversFrom);
+            out.writeLong(indexOffset);
+            out.writeInt(SEGMENT_MAGIC);
+            out.flush();
+            fos.getFD().sync();
+        }
+        PersistenceWriter.moveIntoPlace(tmp, f);
+        return new Segment(f, id);
+    }
+    // Live entries of several segments in key order; where a key repeats, the newest segment's entry wins
+    private static final class MergeIterator implements Iterator<Map.Entry<String, String>> {
+        private final PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> {
+            int c = a.key.compareTo(b.key);
+            return c != 0 ? c : Integer.compare(a.age, b.age);
+        });
+        private Map.Entry<String, String> next;
+
+        MergeIterator(List<Segment> newestFirst) {
+            for (int i = 0; i < newestFirst.size(); i++) {
+                Cursor c = new Cursor(newestFirst.get(i), i);
+                if (c.advance()) heads.add(c);
+            }
+            fill();
+        }
+        private void fill() {
+            next = null;
+            while (next == null && !heads.isEmpty()) {
+                Cursor top = heads.poll();
+                String key = top.key, value = top.value;
+                // Older copies of the same key are shadowed
+                while (!heads.isEmpty() && heads.peek().key.equals(key)) {
+                    Cursor older = heads.poll();
+                    if (older.advance()) heads.add(older);
+                }
+                if (top.advance()) heads.add(top);
+                if (value != TOMBSTONE) next = new AbstractMap.SimpleImmutableEntry<>(key, value);
+            }
+        }
+        @Override public boolean hasNext() { return next != null; }
+        @Override public Map.Entry<String, String> next() {
+            if (next == null) throw new NoSuchElementException();
+            Map.Entry<String, String> e = next;
+            fill();
+            return e;
+        }
+    }
+    private static final class Cursor {
+        final int age; // position in the newest-first segment list
+        private final ByteBuffer in;
+        private final int end;
+        String key, value;
+        Cursor(Segment seg, int age) {
+            this.age = age;
+            this.in = seg.data.duplicate();
+            this.end = seg.indexOffset;
+            in.position(4);
+        }
+        boolean advance() {
+            if (in.position() >= end) return false;
+            key = readString(in);
+            value = in.get() == 0 ? TOMBSTONE : readString(in);
+            return true;
+        }
+    }
+    private static void writeEntry(OutputStream out, String key, String value) throws IOException {
+        writeBytes(out, key.getBytes(StandardCharsets.UTF_8));
+        out.write(value == null ? 0 : 1);
+        if (value != null) writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+    private static void writeBytes(OutputStream out, byte[] b) throws IOException {
+        writeVarInt(out, b.length);
+        out.write(b);
+    }
+    private static void writeVarInt(OutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) { out.write((v & 0x7F) | 0x80); v >>>= 7; }
+        out.write(v);
+    }
+    private static int readVarInt(ByteBuffer in) {
+        int v = 0, shift = 0, b;
+        do {
+            b = in.get();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+    private static void skipString(ByteBuffer in) {
+        int len = readVarInt(in);
+        in.position(in.position() + len);
+    }
+    private static String readString(ByteBuffer in) {
+        int len = readVarInt(in);
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+            return s;
+        }
+        byte[] b = new byte[len];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+    // Key/value record as stored in the WAL and in segments; a cleared flag byte marks a tombstone
+    private static void readEntry(ByteBuffer in, Map<String, String> into) {
+        String key = readString(in);
+        into.put(key, in.get() == 0 ? TOMBSTONE : readString(in));
+    }
+    private static void replayWal(File f, Map<String, String> into) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(f.toPath()));
+        while (in.hasRemaining()) {
+            int start = in.position();
+            try {
+                int len = readVarInt(in);
+                if (len > in.remaining()) break;
+                ByteBuffer batch = ByteBuffer.wrap(in.array(), in.position(), len).slice();
+                Map<String, String> entries = new LinkedHashMap<>();
+                while (batch.hasRemaining()) readEntry(batch, entries);
+                into.putAll(entries);
+                in.position(in.position() + len);
+            } catch (RuntimeException e) {
+                Logger.getInstance().log(Logger.ERROR, "Ignoring torn store log tail in " + f + " at byte " + start);
+                break;
+            }
+        }
+    }
+    // Blocks until queued writes are durable and pending segment work has finished
+    @Override public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        try {
+            sync().get(10, TimeUnit.SECONDS);
+            syncer.shutdown();
+            merger.shutdown();
+            merger.awaitTermination(30, TimeUnit.SECONDS);
+            synchronized (this) { walStream.close(); }
+        } catch (Exception e) { Logger.getInstance().log(Logger.ERROR, "Pending saves may be lost: " + e.getMessage()); }
+    }
+
+    // Immutable sorted file: entries, then a sparse index of every INDEX_INTERVAL-th key, then a trailer
+    private static final class Segment {
+        final File file;
+        final long id;
+        final long coversFrom;
+        private final ByteBuffer data;
+        private final int indexOffset;
+        private final String[] indexKeys;
+        private final int[] indexPositions;
+
+        Segment(File file, long id) throws IOException {
+            this.file = file;
+            this.id = id;
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                this.data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            int n = data.limit();
+            if (n < 24 || data.getInt(0) != SEGMENT_MAGIC || data.getInt(n - 4) != SEGMENT_MAGIC)
+                throw new IOException("Not a store segment: " + file);
+            this.coversFrom = data.getLong(n - 20);
+            this.indexOffset = (int) data.getLong(n - 12);
+            ByteBuffer in = data.duplicate();
+            in.position(indexOffset);
+            int count = readVarInt(in);
+            indexKeys = new String[count];
+            indexPositions = new int[count];
+            for (int i = 0; i < count; i++) {
+                indexKeys[i] = readString(in);
+                indexPositions[i] = (int) in.getLong();
+            }
+        }
+        // Position of the last indexed key <= key, or the first entry
+        private int seek(String key) {
+            int lo = 0, hi = indexKeys.length - 1, pos = 4;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indexKeys[mid].compareTo(key) <= 0) { pos = indexPositions[mid]; lo = mid + 1; }
+                else hi = mid - 1;
+            }
+            return pos;
+        }
+        String get(String key) {
+            ByteBuffer in = data.duplicate();
+            in.position(seek(key));
+            while (in.position() < indexOffset) {
+                String k = readString(in);
+                int cmp = k.compareTo(key);
+                boolean live = in.get() != 0;
+                if (cmp == 0) return live ? readString(in) : TOMBSTONE;
+                if (cmp > 0) return null;
+                if (live) skipString(in);
+            }
+            return null;
+        }
+        void scan(String prefix, Map<String, String> into) {
+            ByteBuffer in = data.duplicate();
+            in.position(seek(prefix));
+            while (in.position() < indexOffset) {
+                int start = in.position();
+                String k = readString(in);
+                if (k.compareTo(prefix) < 0) {
+                    if (in.get() != 0) skipString(in);
+                    continue;
+                }
+                if (!k.startsWith(prefix)) return;
+                in.position(start);
+                readEntry(in, into);
+            }
+        }
+    }
+}
+
+// Fires item reminder dates and due dates from a hierarchical timing wheel: five levels of 64 slots
+// over one-second ticks cover about 34 years. Scheduling and cancelling are O(1) list splices, and a
+// timer only moves down a level when its slot cascades, so firing is O(1) amortized per timer.
+final class ReminderScheduler {
+    private static final int LEVELS = 5, SLOT_BITS = 6, SLOTS = 1 << SLOT_BITS, MASK = SLOTS - 1;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    interface Sink { void fire(String email, Item item, boolean due); }
+
+    // Intrusive list node; each slot is a sentinel. A fired timer stays in its map, unlinked, so an
+    // unrelated edit to the item does not fire the same date again
+    private static final class Timer {
+        final String email;
+        final Item item;
+        final boolean due;
+        final long tick;
+        Timer prev, next;
+        Timer(String email, Item item, boolean due, long tick) {
+            this.email = email; this.item = item; this.due = due; this.tick = tick;
+            prev = next = this;
+        }
+        boolean linked() { return prev != this; }
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = this;
+        }
+    }
+
+    private final Timer[][] wheel = new Timer[LEVELS][SLOTS];
+    private final Map<Item, Timer> reminders = new HashMap<>(), dues = new HashMap<>();
+    private final Map<String, Timer> wakes = new HashMap<>(); // by email; these timers carry no item
+    private final long originMillis, tickMillis;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Sink sink;
+    private final ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tracknest-reminders");
+        t.setDaemon(true);
+        return t;
+    });
+    private long now;
+    private int pending;
+    private boolean started;
+    private long today, nextMidnightMillis; // cached local date, refreshed once a day
+
+    ReminderScheduler(long tickMillis, Sink sink) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.originMillis = System.currentTimeMillis();
+        this.sink = sink;
+        for (Timer[] level : wheel)
+            for (int i = 0; i < SLOTS; i++) level[i] = new Timer(null, null, false, 0);
+    }
+    // Until started, schedule is a no-op: loadData registers the items once the clock runs, and headless
+    // runs never start it
+    synchronized void start() {
+        started = true;
+        clock.scheduleAtFixedRate(() -> advance((System.currentTimeMillis() - originMillis) / tickMillis),
+            tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+    void stop() { clock.shutdownNow(); }
+    synchronized int pending() { return pending; }
+
+    // Re-reads the item's dates; cheap when they have not changed
+    synchronized void schedule(String email, Item item) {
+        if (!started) return;
+        LocalDate[] dates = datesOf(item);
+        place(reminders, email, item, dates[0], false);
+        place(dues, email, item, dates[1], true);
+    }
+    // For a user whose items are still on disk: one timer on the given day (or next tick if it has passed),
+    // delivered to the sink with a null item
+    synchronized void wake(String email, LocalDate date) {
+        if (!started) return;
+        Timer old = wakes.remove(email);
+        if (old != null && old.linked()) { old.unlink(); pending--; }
+        Timer t = new Timer(email, null, false, date.toEpochDay() < today() ? now + 1 : tickOf(date));
+        wakes.put(email, t);
+        link(t, now + 1);
+        pending++;
+    }
+    // Reminder and due date an item's timers are set for, either null. Done tasks and closed goals have no due timer
+    static LocalDate[] datesOf(Item item) {
+        LocalDate remind = null, due = null;
+        if (item instanceof Goal) {
+            Goal g = (Goal) item;
+            remind = g.getReminderDate();
+            if (!g.checkCompletion() && !"Failed".equalsIgnoreCase(g.getStatus())) due = g.getDeadline();
+            if (g.isArchived()) remind = due = null;
+        } else if (item instanceof Habit) {
+            Habit h = (Habit) item;
+            remind = h.isArchived() ? null : h.getReminderDate();
+        } else if (item instanceof Task) {
+            Task t = (Task) item;
+            remind = t.getReminderDate();
+            if (!t.isDone()) due = t.getDueDate();
+            if (t.isArchived()) remind = due = null;
+        }
+        return new LocalDate[] { remind, due };
+    }
+    static LocalDate earliestDateOf(Item item) {
+        LocalDate[] dates = datesOf(item);
+        if (dates[0] == null || dates[1] != null && dates[1].isBefore(dates[0])) return dates[1];
+        return dates[0];
+    }
+    synchronized void cancel(Item item) {
+        place(reminders, null, item, null, false);
+        place(dues, null, item, null, true);
+    }
+    private void place(Map<Item, Timer> timers, String email, Item item, LocalDate date, boolean due) {
+        // Dates before today are never scheduled; today's fire on the next tick
+        long tick = date == null || date.toEpochDay() < today() ? -1 : tickOf(date);
+        Timer old = timers.get(item);
+        if (old != null && old.tick == tick) return;
+        if (old != null) {
+            if (old.linked()) { old.unlink(); pending--; }
+            timers.remove(item);
+        }
+        if (tick < 0) return;
+        Timer t = new Timer(email, item, due, tick);
+        timers.put(item, t);
+        link(t, now + 1);
+        pending++;
+    }
+    private long today() {
+        if (System.currentTimeMillis() >= nextMidnightMillis) {
+            LocalDate d = LocalDate.now(zone);
+            today = d.toEpochDay();
+            nextMidnightMillis = d.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        return today;
+    }
+    private long tickOf(LocalDate date) {
+        long millis = date.atStartOfDay(zone).toInstant().toEpochMilli() - originMillis;
+        return Math.max(0, (millis + tickMillis - 1) / tickMillis);
+    }
+    // Level l holds timers due within 64^(l+1) ticks; farther ones wait in the top level and are re-placed on cascade.
+    // Cascades may land a timer in the current tick's slot, which is expired right after them; new timers start at the next tick
+    private void link(Timer t, long earliest) {
+        long at = Math.min(Math.max(t.tick, earliest), now + SPAN - 1);
+        long delta = at - now;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) level++;
+        Timer head = wheel[level][(int) (at >>> (SLOT_BITS * level)) & MASK];
+        t.prev = head.prev;
+        t.next = head;
+        head.prev.next = t;
+        head.prev = t;
+    }
+
+    void advance(long target) {
+        List<Timer> fired = new ArrayList<>();
+        synchronized (this) {
+            if (pending == 0) now = Math.max(now, target);
+            while (now < target) {
+                now++;
+                // Upper levels first so timers cascading down land in slots that are still ahead
+                for (int l = LEVELS - 1; l >= 1; l--)
+                    if ((now & ((1L << (SLOT_BITS * l)) - 1)) == 0) cascade(wheel[l][(int) (now >>> (SLOT_BITS * l)) & MASK]);
+                Timer head = wheel[0][(int) now & MASK];
+                while (head.next != head) {
+                    Timer t = head.next;
+                    t.unlink();
+                    if (t.tick <= now) {
+                        fired.add(t);
+                        pending--;
+                        if (t.item == null) wakes.remove(t.email, t);
+                    }
+                    else link(t, now + 1);
+                }
+                if (pending == 0) now = Math.max(now, target);
+            }
+        }
+        for (Timer t : fired) {
+            try { sink.fire(t.email, t.item, t.due); }
+            catch (RuntimeException e) { Logger.getInstance().log(Logger.ERROR, "Reminder delivery failed: " + e.getMessage()); }
+        }
+    }
+    private void cascade(Timer head) {
+        Timer first = head.next;
+        if (first == head) return;
+        // Detach the whole chain, then re-place each timer relative to the new time
+        Timer last = head.prev;
+        head.next = head.prev = head;
+        last.next = null;
+        for (Timer t = first, next; t != null; t = next) {
+            next = t.next;
+            t.prev = t.next = t;
+            link(t, now);
+        }
+    }
+}
+
+// Templates + Core
+class TrackNestSystem {
+    private static final int LOCK_STRIPES = 64;
+    private final AtomicInteger userCounter = new AtomicInteger(1);
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    // A user's edits and the storage writes that persist them happen under that user's stripe
+    private final ReentrantLock[] userLocks = new ReentrantLock[LOCK_STRIPES];
+    private final Object adminLock = new Object();
+    private List<String> habitTemplates;
+    private List<GoalTemplate> goalTemplates;
+    private List<String> tips;
+    private final Logger logger = Logger.getInstance();
+    private final PasswordHasher hasher = PasswordHasher.calibrated();
+    private final LoginThrottle loginThrottle = LoginThrottle.fromSystemProperties();
+    private String[] motivationalQuotes = {
+        "Success is the sum of small efforts repeated day in and day out.",
+        "The secret of getting ahead is getting started.",
+        "Don’t watch the clock; do what it does. Keep going.",
+        "Action is the foundational key to all success.",
+        "One day or day one. You decide."
+    };
+    // Kept apart from the JSON backend's live file, which is also the legacy import source
+    static final String JSON_EXPORT_FILE = "tracknest_export.json";
+    static final String EXPORT_DIR = "tracknest_export";
+    private final StorageBackend storage;
+    private final AuditLog audit;
+    private final Leaderboards leaderboards = new Leaderboards(() -> users.values());
+    private final RewardEngine rewards = new RewardEngine(this::pointsChanged);
+    private volatile String pendingAnnouncement = null;
+    private static final int REMINDER_INBOX_LIMIT = 100;
+    private final ReminderScheduler reminders = new ReminderScheduler(Long.getLong("tracknest.reminderTickMs", 1000L), this::fireReminder);
+    // Reminders for users not at the console wait here until their next session
+    private final Map<String, Queue<String>> reminderInbox = new ConcurrentHashMap<>();
+    private volatile String consoleUser;
+    // API tokens live here rather than in ApiServer so that a password change can revoke them
+    private final SessionStore sessions = new SessionStore(TimeUnit.MINUTES.toMillis(Long.getLong("tracknest.sessionMinutes", 30L)));
+    public TrackNestSystem() { this(null); }
+    // The store and the audit trail under dataDir, or the working directory when it is null
+    TrackNestSystem(File dataDir) {
+        storage = StorageBackends.open(dataDir);
+        audit = new AuditLog(new File(dataDir, AuditLog.DIR));
+        habitTemplates = new CopyOnWriteArrayList<>();
+        goalTemplates = new CopyOnWriteArrayList<>();
+        tips = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < LOCK_STRIPES; i++) userLocks[i] = new ReentrantLock();
+    }
+    private ReentrantLock lockFor(User user) {
+        int h = user.getEmail().hashCode();
+        return userLocks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+    <T> T withUser(User user, java.util.function.Supplier<T> op) {
+        ReentrantLock lock = lockFor(user);
+        lock.lock();
+        try { return op.get(); }
+        finally { lock.unlock(); }
+    }
+    void withUser(User user, Runnable op) {
+        withUser(user, () -> { op.run(); return null; });
+    }
+    // Weakly consistent copy of the directory for admin views; never blocks writers
+    private List<User> snapshotUsers() {
+        return new ArrayList<>(users.values());
+    }
+    // Motivational quote
+    public void showRandomQuote() {
+        Random r = new Random();
+        System.out.println("Quote of the Day: \"" + motivationalQuotes[r.nextInt(motivationalQuotes.length)] + "\"");
+    }
+    public void registerUser(String role, String name, String email, String password, String secQ, String secA) {
+        if(users.containsKey(email))
+            throw new IllegalArgumentException("User already exists!");
+        boolean admin = "admin".equalsIgnoreCase(role);
+        String hash = hasher.hash(password);
+        String secAHash = hasher.hash(secA);
+        User user;
+        if (admin) {
+            synchronized (adminLock) {
+                for (User u : users.values()) if (u instanceof Admin) throw new IllegalArgumentException("Only one admin allowed!");
+                user = new Admin(userCounter.getAndIncrement(), name, email, hash, secQ, secAHash);
+                if (users.putIfAbsent(email, user) != null) throw new IllegalArgumentException("User already exists!");
+            }
+        } else {
+            user = new NormalUser(userCounter.getAndIncrement(), name, email, hash, secQ, secAHash);
+            if (users.putIfAbsent(email, user) != null) throw new IllegalArgumentException("User already exists!");
+        }
+        logger.log(Logger.INFO, () -> "New user registered: " + role + " - " + name + " (" + email + ")");
+        leaderboards.update(user);
+        logActivity(email, "register", role);
+        saveUser(user);
+    }
+    public User login(String email, String password) {
+        return login(email, password, "console");
+    }
+    // Throttled accounts and sources are turned away before the password is hashed
+    public User login(String email, String password, String source) {
+        long now = LoginThrottle.now();
+        long wait = loginThrottle.retryAfter(email, source, now);
+        if (wait > 0) throw new LoginThrottledException(wait, "Too many failed logins. Try again in " + Math.max(1, TimeUnit.MILLISECONDS.toMinutes(wait + 59_999)) + " minute(s).");
+        User user = users.get(email);
+        if (user == null) {
+            loginThrottle.recordFailure(email, source, now);
+            throw new NoSuchElementException("No such user!");
+        }
+        if (!user.isActive()) throw new SecurityException("Account is deactivated. Contact admin.");
+        if (!hasher.verify(password, user.getPasswordHash())) {
+            loginThrottle.recordFailure(email, source, now);
+            throw new SecurityException("Incorrect password!");
+        }
+        loginThrottle.recordSuccess(email);
+        if (hasher.needsRehash(user.getPasswordHash())) {
+            String upgraded = hasher.hash(password);
+            withUser(user, () -> user.setPasswordHash(upgraded));
+            saveUser(user);
+        }
+        logActivity(email, "login", null);
+        return user;
+    }
+    public void deleteAccount(User user) {
+        UI.prompt("Are you sure you want to delete your account? Type YES to confirm: ");
+        if (UI.getNonEmptyInput(new Scanner(System.in)).equals("YES")) {
+            removeUser(user); logger.log(Logger.INFO, "Deleted user: {}", user.getEmail());
+            logActivity(user.getEmail(), "delete-account", null);
+            UI.success("Account deleted.");
+        } else {
+            UI.info("Account deletion cancelled.");
+        }
+    }
+    // Console quick commands typed at any menu prompt; false if the line is not one
+    public boolean quickCommand(User user, String line) {
+        String[] parts = line.split("\\s+", 2);
+        String arg = parts.length > 1 ? parts[1].trim() : "";
+        switch (parts[0].toLowerCase(Locale.ROOT)) {
+            case "/search":
+                if (arg.isEmpty()) { UI.info("Usage: /search keyword"); return true; }
+                List<SearchIndex.Hit> hits = search(user, arg, 20);
+                UI.section("Search: " + arg);
+                if (hits.isEmpty()) System.out.println("No matches.");
+                for (SearchIndex.Hit h : hits) System.out.println("- " + SearchIndex.kind(h.item) + ": " + h.item);
+                return true;
+            case "/info":
+                if (!(user instanceof Admin)) return false;
+                User u = users.get(arg);
+                if (u == null) { UI.error("No user " + arg); return true; }
+                System.out.println(u.getName() + " (" + u.getEmail() + ") " + (u instanceof Admin ? "admin" : "user")
+                    + (u.isActive() ? "" : ", deactivated") + ", registered " + u.getRegistrationDate()
+                    + ", " + u.getRewardPoints() + " pts, " + u.getGoalCount() + " goals, " + u.getHabitCount() + " habits, " + u.getTaskCount() + " tasks");
+                return true;
+            default:
+                return false;
+        }
+    }
+    public void showAllUsers() {
+        System.out.println("All Users:");
+        for (User u : snapshotUsers()) System.out.println(u.getName() + " (" + u.getEmail() + ")");
+    }
+    public void broadcastTip(String tip) { tips.add(tip); System.out.println("BROADCASTING: " + tip); }
+    public void viewAllTips() {
+        System.out.println("--- Productivity Tips log ---");
+        for (String t : tips) System.out.println("- " + t);
+    }
+    public void createHabitTemplate(Scanner sc) {
+        System.out.print("Habit template name: ");
+        habitTemplates.add(sc.nextLine());
+        UI.success("Habit template added.");
+        logger.log(Logger.DEBUG, "Habit template added: {}", habitTemplates.get(habitTemplates.size() - 1));
+    }
+    public void instantiateHabitTemplate(User user, Scanner sc) {
+        if (habitTemplates.isEmpty()) { System.out.println("No habit templates available."); return; }
+        for (int i=0;i<habitTemplates.size();i++)
+            System.out.println((i+1)+". "+habitTemplates.get(i));
+        System.out.print("Pick template number: ");
+        try {
+            int idx = Integer.parseInt(sc.nextLine()) - 1;
+            if (idx<0 || idx>=habitTemplates.size()) throw new Exception();
+            System.out.print("Frequency (Daily/Weekly): ");
+            String f = sc.nextLine();
+            addHabit(user, habitTemplates.get(idx), f);
+            UI.success("Habit template instantiated.");
+            logger.log(Logger.DEBUG, "Habit template instantiated for {}", user.getEmail());
+        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    }
+    public void createGoalTemplate(Scanner sc) {
+        System.out.print("Goal template title: ");
+        String t = sc.nextLine();
+        System.out.print("Description: ");
+        String d = sc.nextLine();
+        System.out.print("Recommended duration in days: ");
+        int dur = Integer.parseInt(sc.nextLine());
+        goalTemplates.add(new GoalTemplate(t, d, dur));
+        UI.success("Goal template created.");
+        logger.log(Logger.DEBUG, "Goal template created: {}", t);
+    }
+    public void instantiateGoalTemplate(User user, Scanner sc) {
+        if (goalTemplates.isEmpty()) { System.out.println("No goal templates."); return; }
+        for (int i=0;i<goalTemplates.size();i++)
+            System.out.println((i+1)+". "+goalTemplates.get(i));
+        System.out.print("Pick template number: ");
+        try {
+            int idx = Integer.parseInt(sc.nextLine())-1;
+            if (idx<0 || idx>=goalTemplates.size()) throw new Exception();
+            GoalTemplate gt = goalTemplates.get(idx);
+            addGoal(user, gt.title, gt.desc, LocalDate.now().plusDays(gt.recommendedDurationDays));
+            UI.success("Goal template instantiated.");
+            logger.log(Logger.DEBUG, "Goal template instantiated for {}", user.getEmail());
+        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    }
+    // Core item operations shared by the console menus and the HTTP API; each runs under the user's lock
+    public Goal addGoal(User user, String title, String desc, LocalDate deadline) {
+        return withUser(user, () -> {
+            Goal goal = new Goal(title, desc, deadline);
+            goal.setId(user.nextItemId());
+            user.addItem(goal);
+            itemChanged(user, goal);
+            saveItem(user, goal);
+            return goal;
+        });
+    }
+    // Null arguments leave the field unchanged
+    public void updateGoal(User user, Goal g, String title, String desc, LocalDate deadline, String status) {
+        withUser(user, () -> {
+            requireOwned(user, g);
+            if (title != null) g.setTitle(title);
+            if (desc != null) g.setDescription(desc);
+            if (deadline != null) g.setDeadline(deadline);
+            boolean wasComplete = g.checkCompletion();
+            if (status != null) g.setStatus(status);
+            if (!wasComplete && g.checkCompletion()) rewards.on(user, RewardEngine.GOAL_COMPLETED, 0);
+            else if (wasComplete && !g.checkCompletion()) rewards.goalReopened(user);
+            itemChanged(user, g);
+            saveItem(user, g);
+        });
+    }
+    public void removeGoal(User user, Goal g) {
+        withUser(user, () -> {
+            if (user.removeItem(g)) {
+                itemRemoved(user, g);
+                removeItem(user, g);
+            }
+        });
+    }
+    public Task addTask(User user, String name, LocalDate due, String prio) {
+        return withUser(user, () -> {
+            Task t = new Task(name, due, prio);
+            t.setId(user.nextItemId());
+            user.addItem(t);
+            itemChanged(user, t);
+            saveItem(user, t);
+            return t;
+        });
+    }
+    public void updateTask(User user, Task t, String name, LocalDate due, String prio) {
+        withUser(user, () -> {
+            requireOwned(user, t);
+            if (name != null) t.setTaskName(name);
+            if (due != null) t.setDueDate(due);
+            if (prio != null) t.setPriority(prio);
+            itemChanged(user, t);
+            saveItem(user, t);
+        });
+    }
+    public void removeTask(User user, Task t) {
+        withUser(user, () -> {
+            if (user.removeItem(t)) {
+                itemRemoved(user, t);
+                removeItem(user, t);
+            }
+        });
+    }
+    public Habit addHabit(User user, String name, String freq) {
+        return withUser(user, () -> {
+            Habit h = new Habit(name, freq);
+            h.setId(user.nextItemId());
+            user.addItem(h);
+            itemChanged(user, h);
+            saveItem(user, h);
+            return h;
+        });
+    }
+    public void updateHabit(User user, Habit h, String name, String freq) {
+        withUser(user, () -> {
+            requireOwned(user, h);
+            if (name != null) h.setName(name);
+            if (freq != null) h.setFrequency(freq);
+            itemChanged(user, h);
+            saveItem(user, h);
+        });
+    }
+    public void removeHabit(User user, Habit h) {
+        withUser(user, () -> {
+            if (user.removeItem(h)) {
+                itemRemoved(user, h);
+                removeItem(user, h);
+            }
+        });
+    }
+    public void updateNote(User user, Item item, String note) {
+        withUser(user, () -> {
+            if (!(item instanceof Goal) && !(item instanceof Habit)) throw new IllegalArgumentException("Only goals and habits have notes");
+            requireOwned(user, item);
+            if (item instanceof Goal) ((Goal) item).setNote(note);
+            else ((Habit) item).setNote(note);
+            itemChanged(user, item);
+            saveItem(user, item);
+        });
+    }
+    public void setPinned(User user, Item item, boolean pinned) {
+        withUser(user, () -> {
+            requireOwned(user, item);
+            if (item instanceof Goal) ((Goal) item).setPinned(pinned);
+            else if (item instanceof Habit) ((Habit) item).setPinned(pinned);
+            else ((Task) item).setPinned(pinned);
+            itemChanged(user, item);
+            saveItem(user, item);
+        });
+    }
+    public ItemIndex.Page sortedTasks(User user, boolean dueFirst, String cursor, int limit) {
+        return user.index().sortedTasks(dueFirst, cursor, limit);
+    }
+    public void setReminder(User user, Item item, LocalDate date) {
+        withUser(user, () -> {
+            requireOwned(user, item);
+            if (item instanceof Goal) ((Goal) item).setReminderDate(date);
+            else if (item instanceof Habit) ((Habit) item).setReminderDate(date);
+            else ((Task) item).setReminderDate(date);
+            itemChanged(user, item);
+            saveItem(user, item);
+        });
+    }
+    // Every core mutation ends in one of these so the indexes and reminder timers follow the item
+    private void itemChanged(User user, Item item) {
+        if (batchDirty != null) user.dropIndexes();
+        else user.reindex(item);
+        reminders.schedule(user.getEmail(), item);
+        user.noteItemDate(ReminderScheduler.earliestDateOf(item));
+    }
+    private void itemRemoved(User user, Item item) {
+        if (batchDirty != null) user.dropIndexes();
+        else user.unindex(item);
+        reminders.cancel(item);
+    }
+    private void fireReminder(String email, Item item, boolean due) {
+        User user = users.get(email);
+        if (user == null) return;
+        if (item == null) { scheduleItems(user, true); return; }
+        String text = (due ? "Due today: " : "Reminder: ") + SearchIndex.kind(item) + " " + item;
+        if (email.equals(consoleUser)) { UI.info("🔔 " + text); return; }
+        Queue<String> inbox = reminderInbox.computeIfAbsent(email, k -> new ConcurrentLinkedQueue<>());
+        inbox.add(text);
+        while (inbox.size() > REMINDER_INBOX_LIMIT) inbox.poll();
+    }
+    // Hands over and clears the user's undelivered reminders
+    public List<String> takeReminders(String email) {
+        List<String> out = new ArrayList<>();
+        Queue<String> inbox = reminderInbox.get(email);
+        for (String r; inbox != null && (r = inbox.poll()) != null; ) out.add(r);
+        return out;
+    }
+    // The signed-in console user gets reminders printed as they fire
+    public void setConsoleUser(String email) { consoleUser = email; }
+    public List<SearchIndex.Hit> search(User user, String query, int limit) {
+        return user.searchIndex().search(query, limit);
+    }
+    // Returns the points awarded; logging a habit again the same day awards none
+    public int logHabit(User user, Habit h) {
+        return withUser(user, () -> {
+            requireOwned(user, h);
+            int points = logAndReward(user, h, RewardEngine.HABIT_LOGGED);
+            saveItem(user, h);
+            return points;
+        });
+    }
+    // Logs today for every daily habit not yet logged; returns how many
+    public int quickLogDailyHabits(User user) {
+        return withUser(user, () -> {
+            int n = 0;
+            for (Habit h : user.getHabits()) {
+                if (h.isWeekly() || h.getLog().isLogged(LocalDate.now())) continue;
+                logAndReward(user, h, RewardEngine.HABIT_QUICK_LOGGED);
+                saveItem(user, h);
+                n++;
+            }
+            return n;
+        });
+    }
+    private int logAndReward(User user, Habit h, int event) {
+        int before = h.getStreak();
+        if (!h.logToday()) return 0;
+        user.activity().record(ActivitySeries.HABITS, LocalDate.now(), 1);
+        int after = h.getStreak();
+        return rewards.on(user, event, after > before ? after : 0);
+    }
+    // Returns the points awarded; completing a done task again awards none
+    public int completeTask(User user, Task t) {
+        return withUser(user, () -> {
+            requireOwned(user, t);
+            if (t.isDone()) return 0;
+            t.markComplete();
+            user.activity().record(ActivitySeries.TASKS, LocalDate.now(), 1);
+            itemChanged(user, t);
+            int points = rewards.on(user, RewardEngine.TASK_COMPLETED, 0);
+            user.addRecentCompleted("Task: "+t.getTaskName());
+            saveItem(user, t);
+            return points;
+        });
+    }
+    // Snapshot lists with every item addressable by id
+    public List<Goal> listGoals(User user) { return withUser(user, () -> { user.ensureItemIds(); return new ArrayList<>(user.getGoals()); }); }
+    public List<Habit> listHabits(User user) { return withUser(user, () -> { user.ensureItemIds(); return new ArrayList<>(user.getHabits()); }); }
+    public List<Task> listTasks(User user) { return withUser(user, () -> { user.ensureItemIds(); return new ArrayList<>(user.getTasks()); }); }
+    public Goal findGoal(User user, long id) { return findItem(user, Goal.class, id); }
+    public Habit findHabit(User user, long id) { return findItem(user, Habit.class, id); }
+    public Task findTask(User user, long id) { return findItem(user, Task.class, id); }
+    private static <T extends Item> T findItem(User user, Class<T> kind, long id) {
+        Item item = user.itemById(id);
+        if (kind.isInstance(item)) return kind.cast(item);
+        throw new NoSuchElementException("No item with id " + id);
+    }
+    // Guards against writing back an item another request deleted in the meantime
+    private static void requireOwned(User user, Item item) {
+        if (!user.owns(item)) throw new NoSuchElementException("No item with id " + item.getId());
+    }
+    public void addGoal(User user, Scanner sc) {
+        System.out.print("Goal title: "); String title = sc.nextLine();
+        System.out.print("Description: "); String desc = sc.nextLine();
+        LocalDate deadline = null;
+        while(true) {
+            try { System.out.print("Deadline (YYYY-MM-DD): ");
+                deadline = LocalDate.parse(sc.nextLine()); break;
+            } catch(Exception e) { System.out.println("Invalid date!"); }
+        }
+        addGoal(user, title, desc, deadline);
+        UI.success("Goal added.");
+        logger.log(Logger.DEBUG, "Goal added for {}", user.getEmail());
+    }
+    public void editDeleteGoal(User user, Scanner sc) {
+        if(user.getGoals().isEmpty()) { System.out.println("No goals."); return; }
+        int c=1;
+        for (Goal g : user.getGoals()) System.out.println((c++)+". "+g);
+        UI.prompt("Edit or Delete? (E/D): ");
+        String op = UI.getNonEmptyInput(sc).toUpperCase();
+        UI.prompt("Pick goal number: ");
+        try {
+            int idx = UI.getIntInput(sc, 1, user.getGoals().size())-1;
+            if (idx<0 || idx>=user.getGoals().size()) throw new Exception();
+            if (op.equals("D")) {
+                UI.prompt("Are you sure you want to delete this goal? Type YES to confirm: ");
+                if (UI.getNonEmptyInput(sc).equals("YES")) {
+                    removeGoal(user, user.getGoals().get(idx)); logger.log(Logger.DEBUG, "Goal deleted for {}", user.getEmail());
+                    UI.success("Goal deleted.");
+                } else {
+                    UI.info("Delete cancelled.");
+                }
+            }
+            else {
+                Goal g = user.getGoals().get(idx);
+                System.out.println("Edit fields: 1.Title 2.Description 3.Deadline 4.Status");
+                String f = UI.getNonEmptyInput(sc);
+                switch(f) {
+                    case "1": UI.prompt("New title: "); updateGoal(user, g, UI.getNonEmptyInput(sc), null, null, null); break;
+                    case "2": UI.prompt("New desc: "); updateGoal(user, g, null, UI.getNonEmptyInput(sc), null, null); break;
+                    case "3": UI.prompt("New deadline YYYY-MM-DD: "); updateGoal(user, g, null, null, UI.getDateInput(sc), null); break;
+                    case "4": UI.prompt("Set status (Active/Complete): "); updateGoal(user, g, null, null, null, UI.getNonEmptyInput(sc)); break;
+                    default: UI.error("Unknown field.");
+                }
+                UI.success("Goal edited.");
+                logger.log(Logger.DEBUG, "Goal edited for {}", user.getEmail());
+            }
+        } catch(Exception e) { UI.error("Invalid selection!"); }
+    }
+    public void addTask(User user, Scanner sc) {
+        System.out.print("Task Name: "); String name = sc.nextLine();
+        LocalDate due = null;
+        while(true) {
+            try { System.out.print("Due Date (YYYY-MM-DD): "); due = LocalDate.parse(sc.nextLine()); break; }
+            catch(Exception e) { System.out.println("Invalid date!"); }
+        }
+        System.out.print("Priority (High/Medium/Low): "); String prio = sc.nextLine();
+        addTask(user, name, due, prio);
+        UI.success("Task added.");
+        logger.log(Logger.DEBUG, "Task added for {}", user.getEmail());
+    }
+    public void editDeleteTask(User user, Scanner sc) {
+        if(user.getTasks().isEmpty()) { System.out.println("No tasks."); return; }
+        int c=1; for (Task t : user.getTasks()) System.out.println((c++)+". "+t);
+        UI.prompt("Edit or Delete? (E/D): ");
+        String op = UI.getNonEmptyInput(sc).toUpperCase();
+        UI.prompt("Pick task number: ");
+        try {
+            int idx = UI.getIntInput(sc, 1, user.getTasks().size())-1;
+            if (idx<0 || idx>=user.getTasks().size()) throw new Exception();
+            if (op.equals("D")) {
+                UI.prompt("Are you sure you want to delete this task? Type YES to confirm: ");
+                if (UI.getNonEmptyInput(sc).equals("YES")) {
+                    removeTask(user, user.getTasks().get(idx)); logger.log(Logger.DEBUG, "Task deleted for {}", user.getEmail());
+                    UI.success("Task deleted.");
+                } else {
+                    UI.info("Delete cancelled.");
+                }
+            }
+            else {
+                Task t = user.getTasks().get(idx);
+                System.out.println("Edit fields: 1.Name 2.DueDate 3.Priority");
+                String f = UI.getNonEmptyInput(sc);
+                switch(f) {
+                    case "1": UI.prompt("New name: "); updateTask(user, t, UI.getNonEmptyInput(sc), null, null); break;
+                    case "2": UI.prompt("New DueDate YYYY-MM-DD: "); updateTask(user, t, null, UI.getDateInput(sc), null); break;
+                    case "3": UI.prompt("New priority: "); updateTask(user, t, null, null, UI.getNonEmptyInput(sc)); break;
+                    default: UI.error("Unknown field.");
+                }
+                UI.success("Task edited.");
+                logger.log(Logger.DEBUG, "Task edited for {}", user.getEmail());
+            }
+        } catch(Exception e) { UI.error("Invalid selection!"); }
+    }
+    public void addHabit(User user, Scanner sc) {
+        System.out.print("Habit name: "); String name = sc.nextLine();
+        System.out.print("Frequency (Daily/Weekly): "); String freq = sc.nextLine();
+        addHabit(user, name, freq);
+        UI.success("Habit added.");
+        logger.log(Logger.DEBUG, "Habit added for {}", user.getEmail());
+    }
+    public void editDeleteHabit(User user, Scanner sc) {
+        if(user.getHabits().isEmpty()) { System.out.println("No habits."); return; }
+        int c=1; for (Habit h : user.getHabits()) System.out.println((c++)+". "+h);
+        UI.prompt("Edit or Delete? (E/D): ");
+        String op = UI.getNonEmptyInput(sc).toUpperCase();
+        UI.prompt("Pick habit number: ");
+        try {
+            int idx = UI.getIntInput(sc, 1, user.getHabits().size())-1;
+            if (idx<0 || idx>=user.getHabits().size()) throw new Exception();
+            if (op.equals("D")) {
+                UI.prompt("Are you sure you want to delete this habit? Type YES to confirm: ");
+                if (UI.getNonEmptyInput(sc).equals("YES")) {
+                    removeHabit(user, user.getHabits().get(idx)); logger.log(Logger.DEBUG, "Habit deleted for {}", user.getEmail());
+                    UI.success("Habit deleted.");
+                } else {
+                    UI.info("Delete cancelled.");
+                }
+            }
+            else {
+                Habit h = user.getHabits().get(idx);
+                System.out.println("Edit fields: 1.Name 2.Frequency");
+                String f = UI.getNonEmptyInput(sc);
+                switch(f) {
+                    case "1": UI.prompt("New name: "); updateHabit(user, h, UI.getNonEmptyInput(sc), null); break;
+                    case "2": UI.prompt("New Frequency: "); updateHabit(user, h, null, UI.getNonEmptyInput(sc)); break;
+                    default: UI.error("Unknown field.");
+                }
+                UI.success("Habit edited.");
+                logger.log(Logger.DEBUG, "Habit edited for {}", user.getEmail());
+            }
+        } catch(Exception e) { UI.error("Invalid selection!"); }
+    }
+    public void trackHabit(User user, Scanner sc) {
+        List<Habit> habits = user.getHabits();
+        if(habits.isEmpty()) { System.out.println("No habits!"); return;}
+        System.out.println("Your Habits:"); for(int i=0; i<habits.size(); i++)
+            System.out.println((i+1)+". "+habits.get(i));
+        System.out.print("Pick habit number to log: ");
+        try {
+            int idx = Integer.parseInt(sc.nextLine()) - 1;
+            if(idx<0 || idx>=habits.size()) throw new Exception();
+            int points = logHabit(user, habits.get(idx));
+            if (points > 0) UI.success("Habit logged. +" + points + " pts!");
+            else UI.info("Already logged today.");
+            logger.log(Logger.DEBUG, "Habit logged for {}, {} pts", user.getEmail(), points);
+        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    }
+    public void logTaskCompletion(User user, Scanner sc) {
+        List<Task> tasks = user.getTasks();
         int count=1; boolean found=false;
         for(Task t : tasks) { if (!t.isDone()) {
                 System.out.println(count+". "+t); found=true; }
             count++;
         }
-        if(!found) { System.out.println("No pending tasks."); return; }
-        System.out.print("Pick number to mark task complete: ");
+        if(!found) { System.out.println("No pending tasks."); return; }
+        System.out.print("Pick number to mark task complete: ");
+        try {
+            int idx = Integer.parseInt(sc.nextLine())-1;
+            int points = completeTask(user, tasks.get(idx));
+            if (points > 0) UI.success("Task marked complete. +" + points + " pts!");
+            else UI.info("Task was already complete.");
+            logger.log(Logger.DEBUG, "Task completed for {}, {} pts", user.getEmail(), points);
+        } catch(Exception e) { System.out.println("Invalid selection!"); }
+    }
+    public void showStreaks(User user) {
+        System.out.println("-- Habit Streaks --");
+        for(Habit h : user.getHabits()) {
+            System.out.println(h.getName() + ": " + h.getStreak() + " (Best: " + h.getLongestStreak() + ", Last: " + h.getLastLoggedDate() + ")");
+            if (h.getStreak() > 0 && h.getStreak() % 7 == 0) System.out.println("🏆 WOW! " + h.getStreak() + (h.isWeekly() ? "-week" : "-day") + " streak!");
+        }
+    }
+    public void searchFilterGoals(User user, Scanner sc) {
+        System.out.println("Search by: 1.Status 2.Deadline before date");
+        String opt = sc.nextLine();
+        List<Goal> filtered = new ArrayList<>();
+        if (opt.equals("1")) {
+            System.out.print("Enter status (Active/Complete/Failed): ");
+            String s = sc.nextLine();
+            filtered = user.index().goalsWithStatus(s);
+        } else if (opt.equals("2")) {
+            System.out.print("Enter deadline date (YYYY-MM-DD): ");
+            try { LocalDate d = LocalDate.parse(sc.nextLine());
+                filtered = user.index().goalsDueBefore(d);
+            } catch(Exception e) { System.out.println("Invalid date!"); return; }
+        }
+        System.out.println("Filtered goals:");
+        for(Goal g : filtered) System.out.println("- "+g);
+    }
+    public void sortTasks(User user, Scanner sc) {
+        System.out.println("Sort by: 1.Due Date 2.Priority");
+        boolean dueFirst = !sc.nextLine().trim().equals("2");
+        System.out.println("--- Sorted Tasks ---");
+        ItemIndex.Page page = sortedTasks(user, dueFirst, null, 20);
+        while (true) {
+            for (Task t : page.tasks) System.out.println((t.isPinned() ? "⭐ " : "") + t);
+            if (page.nextCursor == null) break;
+            UI.prompt("Enter for more, q to stop: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) break;
+            page = sortedTasks(user, dueFirst, page.nextCursor, 20);
+        }
+    }
+    // Overdue warnings
+    public void showOverdueTasks(User user) {
+        List<Task> overdue = user.index().overdueTasks(LocalDate.now());
+        if (overdue.isEmpty()) return;
+        System.out.println("\n** Reminder **: You have overdue tasks!");
+        for (Task t : overdue) System.out.println("- "+t);
+    }
+    // Auto-close past due goals
+    public void autoCloseOverdueGoals(User user) {
+        for (Goal g : user.index().goalsDueBefore(LocalDate.now().minusDays(3), "Complete", "Failed")) {
+            updateGoal(user, g, null, null, null, "Failed");
+            System.out.println("Goal auto-set as Failed (overdue 3+ days): " + g.getTitle());
+        }
+    }
+    // Every change is handed to the storage backend as it happens; this waits for all of it to be durable
+    public CompletableFuture<Void> saveData() {
+        return storage.flush();
+    }
+    // Batch mode: saves only mark the user dirty, and indexes and leaderboard entries are left stale;
+    // endBatch refreshes each dirty user's standings and writes the user once
+    private volatile Map<String, User> batchDirty;
+    private final Set<String> batchDeleted = ConcurrentHashMap.newKeySet();
+    public void beginBatch() { batchDirty = new ConcurrentHashMap<>(); }
+    public void endBatch() {
+        Map<String, User> dirty = batchDirty;
+        if (dirty == null) return;
+        batchDirty = null;
+        for (String email : batchDeleted) if (!dirty.containsKey(email)) storage.deleteUser(email);
+        batchDeleted.clear();
+        for (User u : dirty.values()) {
+            leaderboards.update(u);
+            saveUser(u);
+        }
+        storage.flush().join();
+    }
+    // Every point award is followed by a save, so a batch catches these up from its dirty users
+    private void pointsChanged(User user) {
+        if (batchDirty == null) leaderboards.update(user);
+    }
+    private boolean deferSave(User user) {
+        Map<String, User> dirty = batchDirty;
+        if (dirty == null) return false;
+        if (users.get(user.getEmail()) == user) dirty.put(user.getEmail(), user);
+        return true;
+    }
+    public CompletableFuture<Void> saveUser(User user) {
+        if (deferSave(user)) return CompletableFuture.completedFuture(null);
+        return withUser(user, () -> users.get(user.getEmail()) == user ? storage.putUser(user) : CompletableFuture.<Void>completedFuture(null));
+    }
+    public CompletableFuture<Void> removeUser(User user) {
+        return withUser(user, () -> {
+            if (!users.remove(user.getEmail(), user)) return CompletableFuture.<Void>completedFuture(null);
+            for (Goal g : user.getGoals()) reminders.cancel(g);
+            for (Habit h : user.getHabits()) reminders.cancel(h);
+            for (Task t : user.getTasks()) reminders.cancel(t);
+            reminderInbox.remove(user.getEmail());
+            leaderboards.remove(user.getEmail());
+            Map<String, User> dirty = batchDirty;
+            if (dirty != null) {
+                dirty.remove(user.getEmail());
+                batchDeleted.add(user.getEmail());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            return storage.deleteUser(user.getEmail());
+        });
+    }
+    // Item-level changes; the user record is rewritten only by backends without per-item keys
+    public CompletableFuture<Void> saveItem(User user, Item item) {
+        if (deferSave(user)) return CompletableFuture.completedFuture(null);
+        return withUser(user, () -> storage.putItem(user, item));
+    }
+    // Bulk-loaded items are appended in one step with a single store write; indexes rebuild on next use.
+    // Nothing is awarded, and the reward counters are recounted from the data when next needed
+    public CompletableFuture<Void> importItems(User user, List<Item> items) {
+        return withUser(user, () -> {
+            for (Item item : items) item.setId(user.nextItemId());
+            user.addItems(items);
+            user.dropIndexes();
+            user.resetRewardCounts();
+            for (Item item : items) {
+                reminders.schedule(user.getEmail(), item);
+                user.noteItemDate(ReminderScheduler.earliestDateOf(item));
+            }
+            if (deferSave(user)) return CompletableFuture.<Void>completedFuture(null);
+            return storage.putItems(user, items);
+        });
+    }
+    // Logged days for a habit added earlier in the same import; as with importItems, nothing is awarded
+    public CompletableFuture<Void> importHabitLog(User user, Habit h, List<LocalDate> days) {
+        return withUser(user, () -> {
+            requireOwned(user, h);
+            for (LocalDate d : days) h.getLog().log(d);
+            user.resetRewardCounts();
+            if (deferSave(user)) return CompletableFuture.<Void>completedFuture(null);
+            return storage.putItem(user, h);
+        });
+    }
+    public CompletableFuture<Void> removeItem(User user, Item item) {
+        if (deferSave(user)) return CompletableFuture.completedFuture(null);
+        return withUser(user, () -> storage.deleteItem(user, item));
+    }
+    // Blocks until every queued save is durable; called on exit
+    public void shutdown() {
+        reminders.stop();
+        audit.close();
+        storage.close();
+        logger.flush(2000);
+    }
+    public void loadData() { loadData(true); }
+    // Headless runs exit before a reminder could fire, so they skip registering them along with the full
+    // load that implies; leaderboards then build on first read
+    public void loadData(boolean withReminders) {
+        try { storage.scanUsers(users); }
+        catch(Exception e) { System.out.println("[Error] Could not load data: "+e.getMessage()); }
+        int maxId = users.values().stream().mapToInt(User::getId).max().orElse(0);
+        userCounter.accumulateAndGet(maxId + 1, Math::max);
+        if (!withReminders) return;
+        reminders.start();
+        // Building the leaderboards and registering reminders run behind the first prompt. Users still on disk
+        // are not read for this: nothing of theirs can fire before their earliest item date, which wakes them
+        Thread register = new Thread(() -> {
+            leaderboards.build();
+            for (User u : snapshotUsers()) {
+                if (u.isMaterialized()) scheduleItems(u, false);
+                else if (u.getNextItemDate() != null) reminders.wake(u.getEmail(), u.getNextItemDate());
+            }
+        }, "tracknest-background-load");
+        register.setDaemon(true);
+        register.start();
+    }
+    // Registers every item's timers and recounts the user's earliest item date. A woken user's recount is
+    // written back (header only where the backend has one), so a stale date does not wake it on every start
+    private void scheduleItems(User u, boolean woken) {
+        withUser(u, () -> {
+            List<Item> items = new ArrayList<>(u.getGoals());
+            items.addAll(u.getHabits());
+            items.addAll(u.getTasks());
+            LocalDate today = LocalDate.now(), before = u.getNextItemDate(), next = null;
+            for (Item item : items) {
+                reminders.schedule(u.getEmail(), item);
+                LocalDate d = ReminderScheduler.earliestDateOf(item);
+                if (d != null && !d.isBefore(today) && (next == null || d.isBefore(next))) next = d;
+            }
+            u.setNextItemDate(next);
+            if (woken && !Objects.equals(before, next)) storage.putItems(u, Collections.emptyList());
+        });
+    }
+    // JSON remains the import/export format
+    // The whole audit trail as CSV; returns the number of entries written
+    public long exportAuditCSV(File file) throws IOException {
+        long[] n = new long[1];
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            out.println("Time,Actor,Action,Target");
+            audit.query(Long.MIN_VALUE, Long.MAX_VALUE, e -> {
+                out.println(Instant.ofEpochMilli(e.time) + "," + DataExporter.csv(e.actor) + "," + DataExporter.csv(e.action) + "," + DataExporter.csv(e.target));
+                n[0]++;
+            });
+            if (out.checkError()) throw new IOException("Could not write " + file);
+        }
+        logActivity(consoleActor(), "export-audit", file.getPath());
+        return n[0];
+    }
+    // Streamed to a temp file that replaces the previous export only once complete
+    public void exportDataJSON() {
+        File target = new File(JSON_EXPORT_FILE), tmp = new File(JSON_EXPORT_FILE + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                Writer out = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+                UserCodec.writeSnapshot(snapshotUsers(), out);
+                out.flush();
+                fos.getFD().sync();
+            }
+            PersistenceWriter.moveIntoPlace(tmp, target);
+            UI.success("All data exported to " + target);
+            logActivity(consoleActor(), "export-json", target.getPath());
+        } catch (Exception e) {
+            UI.error("Failed to export JSON: " + e.getMessage());
+        }
+    }
+    public User getUser(String email) {
+        return users.get(email);
+    }
+    public boolean hasUser(String email) {
+        return users.containsKey(email);
+    }
+    public Map<String, Integer> systemStats() {
+        List<User> all = snapshotUsers();
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        stats.put("users", all.size());
+        stats.put("admins", (int) all.stream().filter(u -> u instanceof Admin).count());
+        stats.put("goals", all.stream().mapToInt(User::getGoalCount).sum());
+        stats.put("habits", all.stream().mapToInt(User::getHabitCount).sum());
+        stats.put("tasks", all.stream().mapToInt(User::getTaskCount).sum());
+        stats.put("reminders", reminders.pending());
+        return stats;
+    }
+    public void showSystemStats() {
+        Map<String, Integer> stats = systemStats();
+        UI.section("System Stats");
+        System.out.println("Total Users: " + stats.get("users"));
+        System.out.println("Total Admins: " + stats.get("admins"));
+        System.out.println("Total Goals: " + stats.get("goals"));
+        System.out.println("Total Habits: " + stats.get("habits"));
+        System.out.println("Total Tasks: " + stats.get("tasks"));
+        System.out.println("Pending Reminders: " + stats.get("reminders"));
+    }
+    public void changePassword(User user, Scanner sc) {
+        UI.prompt("Enter current password: ");
+        String current = UI.getNonEmptyInput(sc);
+        if (!hasher.verify(current, user.getPasswordHash())) {
+            UI.error("Incorrect current password!");
+            return;
+        }
+        UI.prompt("Enter new password: ");
+        String newHash = hasher.hash(UI.getNonEmptyInput(sc));
+        withUser(user, () -> user.setPasswordHash(newHash));
+        sessions.removeAll(user.getEmail());
+        UI.success("Password changed successfully.");
+        saveUser(user);
+    }
+    // Administrative reset without the current password or security answer (batch mode, --reset-admin)
+    public void setPassword(User user, String password) {
+        withUser(user, () -> user.setPasswordHash(hasher.hash(password)));
+        sessions.removeAll(user.getEmail());
+        loginThrottle.unlock(user.getEmail());
+        logActivity(consoleActor(), "set-password", user.getEmail());
+        saveUser(user);
+    }
+    public boolean resetPassword(String email, Scanner sc) {
+        if (!users.containsKey(email)) { UI.error("No such user!"); return false; }
+        User user = users.get(email);
+        UI.section("Password Reset");
+        System.out.println("Security Question: " + user.getSecurityQuestion());
+        UI.prompt("Answer: ");
+        String ans = UI.getNonEmptyInput(sc);
+        if (!hasher.verify(ans, user.getSecurityAnswerHash())) {
+            UI.error("Incorrect answer!");
+            return false;
+        }
+        String answerHash = hasher.needsRehash(user.getSecurityAnswerHash()) ? hasher.hash(ans) : null;
+        UI.prompt("Enter new password: ");
+        String newHash = hasher.hash(UI.getNonEmptyInput(sc));
+        withUser(user, () -> {
+            if (answerHash != null) user.setSecurityAnswerHash(answerHash);
+            user.setPasswordHash(newHash);
+        });
+        sessions.removeAll(email);
+        UI.success("Password reset successful.");
+        saveUser(user);
+        return true;
+    }
+    SessionStore sessions() { return sessions; }
+    // Target may be null
+    public void logActivity(String actor, String action, String target) {
+        audit.append(actor, action, target);
+    }
+    // Admin actions come from the signed-in console user
+    private String consoleActor() {
+        String email = consoleUser;
+        return email != null ? email : "console";
+    }
+    public void viewActivityLog(Scanner sc) {
+        UI.prompt("From date (YYYY-MM-DD, blank for 7 days ago): ");
+        String fromText = sc.nextLine().trim();
+        UI.prompt("To date, inclusive (YYYY-MM-DD, blank for today): ");
+        String toText = sc.nextLine().trim();
+        LocalDate from, to;
+        try {
+            from = fromText.isEmpty() ? LocalDate.now().minusDays(7) : LocalDate.parse(fromText);
+            to = toText.isEmpty() ? LocalDate.now() : LocalDate.parse(toText);
+        } catch (Exception e) { UI.error("Invalid date!"); return; }
+        UI.section("User Activity Log (" + from + " to " + to + ")");
+        int[] shown = new int[1];
+        try {
+            audit.query(activityMillis(from), activityMillis(to.plusDays(1)), e -> { System.out.println(e); shown[0]++; });
+        } catch (IOException e) { UI.error("Could not read the activity log: " + e.getMessage()); }
+        if (shown[0] == 0) UI.info("No activity in this range.");
+    }
+    private static long activityMillis(LocalDate day) { return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(); }
+    // Top 10 of the chosen board, then optionally the page around one user's rank
+    public void showLeaderboard(Scanner sc) {
+        UI.prompt("Leaderboard: (1) All time, (2) This week or (3) This month? ");
+        int window = UI.getIntInput(sc, 1, 3) - 1;
+        UI.section("Leaderboard (" + (window == Leaderboards.ALL_TIME ? "all time" : window == Leaderboards.WEEK ? "this week" : "this month") + ", "
+            + leaderboardSize(window) + " users)");
+        for (Leaderboard.Entry e : leaderboard(window, 1, 10)) System.out.printf("%-6d %-30s %d pts\n", e.rank, e.email, e.score);
+        UI.prompt("Show the ranks around which user? (email, blank to skip): ");
+        String email = sc.nextLine().trim();
+        if (email.isEmpty()) return;
+        int rank = leaderboardRank(window, email);
+        if (rank == 0) { UI.info(email + " is not on this leaderboard."); return; }
+        for (Leaderboard.Entry e : leaderboard(window, Math.max(1, rank - 5), 11))
+            System.out.printf("%s%-6d %-30s %d pts\n", e.rank == rank ? "> " : "  ", e.rank, e.email, e.score);
+    }
+    public List<Leaderboard.Entry> leaderboard(int window, int fromRank, int count) { return leaderboards.page(window, fromRank, count); }
+    // 1-based, or 0 if the user is not on the board
+    public int leaderboardRank(int window, String email) { return leaderboards.rank(window, email); }
+    public int leaderboardSize(int window) { return leaderboards.size(window); }
+    public void unlockLogin(Scanner sc) {
+        List<String> locked = loginThrottle.lockedEmails(LoginThrottle.now());
+        if (locked.isEmpty()) UI.info("No accounts are currently locked out.");
+        else for (String email : locked) System.out.println("- " + email);
+        UI.prompt("Enter email to unlock: ");
+        String email = sc.nextLine().trim();
+        if (loginThrottle.unlock(email)) {
+            UI.success("Login unlocked for " + email + ".");
+            logActivity(consoleActor(), "unlock-login", email);
+        } else {
+            UI.info("No failed logins on record for " + email + ".");
+        }
+    }
+    public void deactivateUser(Scanner sc) {
+        showAllUsers();
+        UI.prompt("Enter email to deactivate/reactivate: ");
+        String email = sc.nextLine();
+        User u = users.get(email);
+        if (u == null) { UI.error("No such user!"); return; }
+        boolean active = withUser(u, () -> {
+            u.setActive(!u.isActive());
+            return u.isActive();
+        });
+        UI.info("User " + email + (active ? " reactivated." : " deactivated."));
+        logActivity(consoleActor(), active ? "reactivate-user" : "deactivate-user", email);
+        saveUser(u);
+    }
+    public void broadcastAnnouncement(Scanner sc) {
+        UI.prompt("Enter announcement: ");
+        pendingAnnouncement = sc.nextLine();
+        UI.success("Announcement will be shown to all users on next login.");
+        logActivity(consoleActor(), "broadcast-announcement", pendingAnnouncement);
+    }
+    public String consumeAnnouncement() {
+        String msg = pendingAnnouncement;
+        pendingAnnouncement = null;
+        return msg;
+    }
+    // Streams every user to chunk files under dir, reporting progress about once a second
+    public DataExporter.Result exportAllData(File dir, int format, boolean gzip) throws IOException {
+        int threads = Integer.getInteger("tracknest.exportThreads", Runtime.getRuntime().availableProcessors());
+        DataExporter.Result result = new DataExporter(dir, format, gzip, threads).export(snapshotUsers(), UI::info);
+        logActivity(consoleActor(), format == DataExporter.JSONL ? "export-jsonl" : "export-csv", dir.getPath());
+        return result;
+    }
+    public void exportAllData(Scanner sc) {
+        UI.prompt("Format (csv/jsonl) [csv]: ");
+        int format = sc.nextLine().trim().equalsIgnoreCase("jsonl") ? DataExporter.JSONL : DataExporter.CSV;
+        UI.prompt("Compress with gzip? (y/N): ");
+        boolean gzip = sc.nextLine().trim().equalsIgnoreCase("y");
+        try {
+            UI.success(exportAllData(new File(EXPORT_DIR), format, gzip).toString());
+        } catch (IOException e) {
+            UI.error("Failed to export: " + e.getMessage());
+        }
+    }
+    // Goals, habits and tasks from CSV/JSONL files or directories of them; rejected rows go to report
+    public DataImporter.Result importData(List<File> paths, java.util.function.Consumer<String> report) throws IOException {
+        int threads = Integer.getInteger("tracknest.importThreads", Runtime.getRuntime().availableProcessors());
+        DataImporter.Result result = new DataImporter(this, threads, report).importPaths(paths);
+        storage.flush().join();
+        logActivity(consoleActor(), "import", result.imported + " rows");
+        return result;
+    }
+    public void importData(Scanner sc) {
+        UI.prompt("File or directory to import: ");
+        File path = new File(UI.getNonEmptyInput(sc).trim());
+        try {
+            DataImporter.Result result = importData(Collections.singletonList(path), UI::error);
+            if (result.rejected > 0) UI.info(result.toString());
+            else UI.success(result.toString());
+        } catch (IOException e) {
+            UI.error("Failed to import: " + e.getMessage());
+        }
+    }
+    public void benchmarkExport(File dir, PrintStream out) throws IOException {
+        DataExporter.benchmark(snapshotUsers(), dir, out);
+    }
+
+    // --stress: the workload below on a fresh system whose store, audit trail and log live in a temporary
+    // directory, removed afterwards, so the real data is never touched
+    static int runStressTest(int threads, long millis, PrintStream report) throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("tracknest-stress");
+        Logger log = Logger.getInstance();
+        String logTarget = log.getTarget();
+        log.setTarget(dir.resolve("tracknest.log").toString());
+        TrackNestSystem scratch = new TrackNestSystem(dir.toFile());
+        try {
+            scratch.loadData(false);
+            return scratch.stressTest(threads, millis, report);
+        } finally {
+            scratch.shutdown();
+            log.setTarget(logTarget);
+            try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+    // Mixed concurrent workload on throwaway users, each shared by every thread so that they contend on its
+    // lock, while a reader walks directory snapshots. Threads only remove items they added, so each user's
+    // item count and points are known; both are then checked in memory and in the store. The users are
+    // removed at the end. Returns the number of invariant violations.
+    int stressTest(int threads, long millis, PrintStream report) throws InterruptedException {
+        String prefix = "stress-" + Long.toHexString(System.nanoTime()) + "-";
+        int userCount = threads * 4;
+        List<String> violations = Collections.synchronizedList(new ArrayList<>());
+        // Every thread registers every user; exactly one attempt per email may win
+        AtomicInteger registered = new AtomicInteger();
+        runThreads(threads, violations, t -> {
+            for (int i = 0; i < userCount; i++) {
+                try {
+                    registerUser("user", "Stress " + i, prefix + i + "@stress.invalid", "Stress#" + i, "Q?", "A");
+                    registered.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // another thread registered it first
+                }
+            }
+        });
+        User[] stressUsers = new User[userCount];
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < userCount; i++) {
+            stressUsers[i] = getUser(prefix + i + "@stress.invalid");
+            if (stressUsers[i] == null) violations.add("user " + i + " missing after registration");
+            else if (!ids.add(stressUsers[i].getId())) violations.add("duplicate user id " + stressUsers[i].getId());
+        }
+        if (registered.get() != userCount) violations.add(registered.get() + " registrations succeeded for " + userCount + " emails");
+        if (!violations.isEmpty()) return report(violations, report);
+
+        AtomicInteger[] itemCounts = new AtomicInteger[userCount];
+        AtomicLong[] points = new AtomicLong[userCount];
+        for (int i = 0; i < userCount; i++) { itemCounts[i] = new AtomicInteger(); points[i] = new AtomicLong(); }
+        AtomicLong ops = new AtomicLong(), reads = new AtomicLong();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    long total = 0;
+                    for (User u : snapshotUsers()) total += u.getGoalCount() + u.getHabitCount() + u.getTaskCount();
+                    if (total < 0) violations.add("negative item total in a snapshot");
+                    for (User u : stressUsers) {
+                        Set<Long> seen = new HashSet<>();
+                        for (Task k : u.getTasks()) if (k.getId() != 0 && !seen.add(k.getId())) violations.add("duplicate task id " + k.getId() + " for " + u.getEmail());
+                    }
+                    reads.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                violations.add("snapshot reader: " + e);
+            }
+        }, "tracknest-stress-reader");
+        reader.start();
+        long start = System.nanoTime(), deadline = start + TimeUnit.MILLISECONDS.toNanos(millis);
+        LocalDate today = LocalDate.now();
+        runThreads(threads, violations, t -> {
+            Random r = new Random(t);
+            List<List<Item>> mine = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) mine.add(new ArrayList<>());
+            for (long n = 0; System.nanoTime() < deadline; n++) {
+                int i = r.nextInt(userCount);
+                User u = stressUsers[i];
+                List<Item> own = mine.get(i);
+                int op = own.size() > 40 ? 6 : r.nextInt(8);
+                Item pick = own.isEmpty() ? null : own.get(r.nextInt(own.size()));
+                if (op <= 2 || pick == null) {
+                    String name = "S" + t + "-" + n;
+                    own.add(op == 0 ? addGoal(u, name, "", today.plusDays(n % 30)) : op == 1 ? addHabit(u, name, "Daily") : addTask(u, name, today, "Medium"));
+                    itemCounts[i].incrementAndGet();
+                } else if (op == 3 && pick instanceof Task) {
+                    points[i].addAndGet(completeTask(u, (Task) pick));
+                } else if (op == 4 && pick instanceof Habit) {
+                    points[i].addAndGet(logHabit(u, (Habit) pick));
+                } else if (op == 5 && pick instanceof Goal) {
+                    updateGoal(u, (Goal) pick, null, null, null, ((Goal) pick).checkCompletion() ? "Active" : "Complete");
+                } else if (op == 6) {
+                    if (pick instanceof Goal) removeGoal(u, (Goal) pick);
+                    else if (pick instanceof Habit) removeHabit(u, (Habit) pick);
+                    else removeTask(u, (Task) pick);
+                    own.remove(pick);
+                    itemCounts[i].decrementAndGet();
+                } else {
+                    listTasks(u);
+                }
+                ops.incrementAndGet();
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        stop.set(true);
+        reader.join();
+        storage.flush().join();
+
+        for (int i = 0; i < userCount; i++) {
+            User u = stressUsers[i];
+            int count = u.getGoals().size() + u.getHabits().size() + u.getTasks().size();
+            if (count != itemCounts[i].get()) violations.add(u.getEmail() + ": " + count + " items, expected " + itemCounts[i].get());
+            if (u.getRewardPoints() != points[i].get()) violations.add(u.getEmail() + ": " + u.getRewardPoints() + " points, expected " + points[i].get());
+            Set<Long> itemIds = new HashSet<>();
+            for (Item item : storage.scanItems(u)) if (!itemIds.add(item.getId())) violations.add(u.getEmail() + ": duplicate item id " + item.getId());
+            try {
+                User stored = storage.getUser(u.getEmail());
+                int storedCount = stored == null ? -1 : stored.getGoals().size() + stored.getHabits().size() + stored.getTasks().size();
+                if (storedCount != count) violations.add(u.getEmail() + ": store has " + storedCount + " items, memory " + count);
+                else if (stored.getRewardPoints() != u.getRewardPoints()) violations.add(u.getEmail() + ": store has " + stored.getRewardPoints() + " points, memory " + u.getRewardPoints());
+            } catch (IOException e) {
+                violations.add(u.getEmail() + ": could not read back: " + e.getMessage());
+            }
+        }
+        report.printf("%d threads on %d shared users for %.1f s: %d operations (%.0f/s), %d snapshot passes%n",
+            threads, userCount, elapsed / 1e9, ops.get(), ops.get() * 1e9 / elapsed, reads.get());
+        for (User u : stressUsers) removeUser(u).join();
+        storage.flush().join();
+        return report(violations, report);
+    }
+    private static void runThreads(int threads, List<String> violations, java.util.function.IntConsumer body) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try { body.accept(id); }
+                catch (RuntimeException e) { violations.add("worker " + id + ": " + e); }
+            }, "tracknest-stress-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+    }
+    private static int report(List<String> violations, PrintStream report) {
+        synchronized (violations) {
+            for (String v : violations.subList(0, Math.min(20, violations.size()))) report.println("VIOLATION " + v);
+            report.println(violations.isEmpty() ? "All invariants held" : violations.size() + " invariant violations");
+            return violations.size();
+        }
+    }
+}
+
+// Full dump of every user: profile, goals, habits with each logged day, tasks, badges and task comments.
+// Workers claim users in blocks and each streams its own chunk files (one per table for CSV, one JSONL
+// file), so memory stays flat however large the installation; directory-only users are read into a
+// throwaway copy. Reads are weakly consistent, like the admin views.
+final class DataExporter {
+    static final int CSV = 0, JSONL = 1;
+    private static final int BLOCK = 64;
+    private static final int USERS = 0, GOALS = 1, HABITS = 2, HABIT_LOG = 3, TASKS = 4, BADGES = 5, COMMENTS = 6;
+    private static final String[] TABLES = {"users", "goals", "habits", "habit_log", "tasks", "badges", "comments"};
+    private static final String[] HEADERS = {
+        "Email,Id,Name,Role,Active,RegistrationDate,Points,WeekPoints,MonthPoints,Theme,Language,ReminderFrequency,AccessibilityMode,FriendEmail,ProfileDescription,Avatar",
+        "Email,Id,Title,Description,Deadline,Status,Pinned,Archived,ReminderDate,Note",
+        "Email,Id,Name,Frequency,Streak,LongestStreak,LastLogged,Pinned,Archived,ReminderDate,Note",
+        "Email,HabitId,Date",
+        "Email,Id,Name,Due,Priority,Done,Pinned,Archived,ReminderDate",
+        "Email,Badge",
+        "Email,TaskId,Comment"
+    };
+
+    static final class Result {
+        final long users, rows, bytes, millis;
+        final List<File> files;
+        Result(long users, long rows, long bytes, long millis, List<File> files) {
+            this.users = users; this.rows = rows; this.bytes = bytes; this.millis = millis; this.files = files;
+        }
+        double rowsPerSecond() { return rows * 1000.0 / Math.max(1, millis); }
+        double megabytesPerSecond() { return bytes / 1048576.0 * 1000 / Math.max(1, millis); }
+        @Override public String toString() {
+            return String.format("Exported %d users (%d rows, %.1f MB) to %d files in %.1f s: %.0f rows/s, %.1f MB/s",
+                users, rows, bytes / 1048576.0, files.size(), millis / 1000.0, rowsPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    private final File dir;
+    private final int format;
+    private final boolean gzip;
+    private final int threads;
+    private final AtomicLong usersDone = new AtomicLong(), rows = new AtomicLong(), bytes = new AtomicLong();
+    private volatile boolean failed;
+
+    DataExporter(File dir, int format, boolean gzip, int threads) {
+        this.dir = dir;
+        this.format = format;
+        this.gzip = gzip;
+        this.threads = Math.max(1, threads);
+    }
+
+    Result export(List<User> users, java.util.function.Consumer<String> progress) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        removeStaleChunks();
+        long start = System.nanoTime();
+        AtomicInteger cursor = new AtomicInteger();
+        int workers = Math.max(1, Math.min(threads, (users.size() + BLOCK - 1) / BLOCK));
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "tracknest-export-" + threadNo.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<List<File>>> chunks = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int chunk = w;
+            chunks.add(pool.submit(() -> writeChunk(chunk, users, cursor)));
+        }
+        pool.shutdown();
+        List<File> files = new ArrayList<>();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS))
+                progress.accept(String.format("Exporting: %d/%d users, %d rows, %.1f MB", usersDone.get(), users.size(), rows.get(), bytes.get() / 1048576.0));
+            for (Future<List<File>> f : chunks) files.addAll(f.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            failed = true;
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        }
+        return new Result(usersDone.get(), rows.get(), bytes.get(), (System.nanoTime() - start) / 1_000_000, files);
+    }
+
+    // A previous export with more workers, or in the other format, leaves chunk files this one would not
+    // overwrite; importing the directory would then read their rows twice
+    private void removeStaleChunks() throws IOException {
+        File[] stale = dir.listFiles((d, n) -> isChunkName(n));
+        if (stale == null) throw new IOException("Could not list " + dir);
+        for (File f : stale) Files.delete(f.toPath());
+    }
+    private static boolean isChunkName(String name) {
+        if (name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+        if (name.endsWith(".csv")) name = name.substring(0, name.length() - 4);
+        else if (name.endsWith(".jsonl")) name = name.substring(0, name.length() - 6);
+        else return false;
+        int dash = name.lastIndexOf('-');
+        if (dash < 0 || dash == name.length() - 1) return false;
+        for (int i = dash + 1; i < name.length(); i++) if (!Character.isDigit(name.charAt(i))) return false;
+        String table = name.substring(0, dash);
+        return table.equals("part") || Arrays.asList(TABLES).contains(table);
+    }
+
+    private List<File> writeChunk(int chunk, List<User> users, AtomicInteger cursor) throws IOException {
+        List<File> files = new ArrayList<>();
+        String suffix = "-" + chunk + (format == JSONL ? ".jsonl" : ".csv") + (gzip ? ".gz" : "");
+        Csv[] tables = null;
+        JsonWriter json = null;
+        try {
+            if (format == JSONL) {
+                File f = new File(dir, "part" + suffix);
+                files.add(f);
+                json = new JsonWriter(open(f));
+            } else {
+                tables = new Csv[TABLES.length];
+                for (int t = 0; t < TABLES.length; t++) {
+                    File f = new File(dir, TABLES[t] + suffix);
+                    files.add(f);
+                    tables[t] = new Csv(open(f));
+                    tables[t].raw(HEADERS[t]).end();
+                }
+            }
+            LocalDate today = LocalDate.now();
+            for (int from; !failed && (from = cursor.getAndAdd(BLOCK)) < users.size(); ) {
+                long written = 0;
+                for (int i = from, to = Math.min(users.size(), from + BLOCK); i < to; i++) {
+                    User u = users.get(i).detachedView();
+                    written += json != null ? writeJson(u, json, today) : writeCsv(u, tables, today);
+                    usersDone.incrementAndGet();
+                }
+                rows.addAndGet(written);
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            IOException closeFailure = null;
+            for (Closeable c : json != null ? new Closeable[] { json } : tables != null ? tables : new Closeable[0]) {
+                try { if (c != null) c.close(); } catch (IOException e) { if (closeFailure == null) closeFailure = e; }
+            }
+            if (closeFailure != null && !failed) {
+                failed = true;
+                throw closeFailure;
+            }
+        }
+        return files;
+    }
+    private Writer open(File f) throws IOException {
+        OutputStream out = new FilterOutputStream(new FileOutputStream(f)) {
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+                bytes.addAndGet(len);
+            }
+        };
+        if (gzip) out = new GZIPOutputStream(out, 1 << 16) {{ def.setLevel(Deflater.BEST_SPEED); }}; // most of the ratio at a fraction of the cost
+        else out = new BufferedOutputStream(out, 1 << 16);
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    private static long writeCsv(User u, Csv[] t, LocalDate today) throws IOException {
+        String email = u.getEmail();
+        long rows = 1;
+        t[USERS].cell(email).cell(u.getId()).cell(u.getName()).cell(u instanceof Admin ? "Admin" : "User").cell(u.isActive())
+            .cell(u.getRegistrationDate()).cell(u.getRewardPoints()).cell(u.getWeekPoints(today)).cell(u.getMonthPoints(today))
+            .cell(u.getTheme()).cell(u.getLanguage()).cell(u.getReminderFrequency()).cell(u.isAccessibilityMode())
+            .cell(u.getFriendEmail()).cell(u.getProfileDescription()).cell(u.getAvatar()).end();
+        for (Goal g : u.getGoals()) {
+            t[GOALS].cell(email).cell(g.getId()).cell(g.getTitle()).cell(g.getDescription()).cell(g.getDeadline()).cell(g.getStatus())
+                .cell(g.isPinned()).cell(g.isArchived()).cell(g.getReminderDate()).cell(g.getNote()).end();
+            rows++;
+        }
+        for (Habit h : u.getHabits()) {
+            t[HABITS].cell(email).cell(h.getId()).cell(h.getName()).cell(h.getFrequency()).cell(h.getStreak()).cell(h.getLongestStreak())
+                .cell(h.getLastLoggedDate()).cell(h.isPinned()).cell(h.isArchived()).cell(h.getReminderDate()).cell(h.getNote()).end();
+            rows++;
+            HabitLog log = h.getLog();
+            long[] words = log.words();
+            long start = log.startDay();
+            for (int w = 0; w < words.length; w++) {
+                for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                    t[HABIT_LOG].cell(email).cell(h.getId()).cell(LocalDate.ofEpochDay(start + w * 64L + Long.numberOfTrailingZeros(bits))).end();
+                    rows++;
+                }
+            }
+        }
+        for (Task k : u.getTasks()) {
+            t[TASKS].cell(email).cell(k.getId()).cell(k.getTaskName()).cell(k.getDueDate()).cell(k.getPriority()).cell(k.isDone())
+                .cell(k.isPinned()).cell(k.isArchived()).cell(k.getReminderDate()).end();
+            rows++;
+            for (String c : k.getComments()) {
+                t[COMMENTS].cell(email).cell(k.getId()).cell(c).end();
+                rows++;
+            }
+        }
+        for (String b : u.getBadges()) {
+            t[BADGES].cell(email).cell(b).end();
+            rows++;
+        }
+        return rows;
+    }
+
+    // One record per line: the user (without credentials), then each item in the storage encoding
+    private static long writeJson(User u, JsonWriter out, LocalDate today) throws IOException {
+        String email = u.getEmail();
+        out.beginObject();
+        out.name("type").value("user").name("email").value(email);
+        out.name("id").value(u.getId());
+        out.name("name").value(u.getName());
+        out.name("role").value(u instanceof Admin ? "admin" : "user");
+        out.name("active").value(u.isActive());
+        out.name("registrationDate").value(u.getRegistrationDate());
+        out.name("points").value(u.getRewardPoints());
+        out.name("weekPoints").value(u.getWeekPoints(today));
+        out.name("monthPoints").value(u.getMonthPoints(today));
+        out.name("theme").value(u.getTheme());
+        out.name("language").value(u.getLanguage());
+        out.name("reminderFrequency").value(u.getReminderFrequency());
+        out.name("accessibilityMode").value(u.isAccessibilityMode());
+        out.name("friendEmail").value(u.getFriendEmail());
+        out.name("profileDescription").value(u.getProfileDescription());
+        out.name("avatar").value(u.getAvatar());
+        out.name("badges").beginArray();
+        for (String b : u.getBadges()) out.value(b);
+        out.endArray();
+        out.endObject().raw("\n");
+        long rows = 1;
+        for (Goal g : u.getGoals()) {
+            out.beginObject().name("type").value("goal").name("email").value(email);
+            UserCodec.writeGoalFields(g, out);
+            out.endObject().raw("\n");
+            rows++;
+        }
+        for (Habit h : u.getHabits()) {
+            out.beginObject().name("type").value("habit").name("email").value(email);
+            UserCodec.writeHabitFields(h, out);
+            out.endObject().raw("\n");
+            rows++;
+        }
+        for (Task t : u.getTasks()) {
+            out.beginObject().name("type").value("task").name("email").value(email);
+            UserCodec.writeTaskFields(t, out);
+            if (!t.getComments().isEmpty()) {
+                out.name("comments").beginArray();
+                for (String c : t.getComments()) out.value(c);
+                out.endArray();
+            }
+            out.endObject().raw("\n");
+            rows++;
+        }
+        return rows;
+    }
+
+    // Each format, plain and gzipped, on one thread and on all of them; the files are removed afterwards
+    static void benchmark(List<User> users, File dir, PrintStream report) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // An untimed pass first, so the JIT and the page cache do not favour later rows
+        for (File f : new DataExporter(dir, CSV, false, cores).export(users, msg -> {}).files) f.delete();
+        report.printf("%-6s %-5s %7s %10s %12s %9s %9s %12s %9s%n", "Format", "Gzip", "Threads", "Users", "Rows", "MB", "Millis", "Rows/s", "MB/s");
+        for (int format : new int[] { CSV, JSONL }) {
+            for (boolean gzip : new boolean[] { false, true }) {
+                for (int threads : cores > 1 ? new int[] { 1, cores } : new int[] { 1 }) {
+                    Result r = new DataExporter(dir, format, gzip, threads).export(users, msg -> {});
+                    for (File f : r.files) f.delete();
+                    report.printf("%-6s %-5s %7d %10d %12d %9.1f %9d %12.0f %9.1f%n", format == CSV ? "csv" : "jsonl", gzip ? "yes" : "no",
+                        threads, r.users, r.rows, r.bytes / 1048576.0, r.millis, r.rowsPerSecond(), r.megabytesPerSecond());
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    // RFC 4180 quoting, only where the field needs it
+    static String csv(String field) {
+        if (field == null) return "";
+        if (!needsQuotes(field)) return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    // Buffered row writer; cells are quoted only when they need it
+    private static final class Csv implements Closeable {
+        private final Writer out;
+        private final char[] buf = new char[1 << 16];
+        private int pos;
+        private boolean first = true;
+
+        Csv(Writer out) { this.out = out; }
+
+        Csv cell(String s) throws IOException {
+            separate();
+            if (s == null) return this;
+            if (!needsQuotes(s)) return raw(s);
+            put('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"') put('"');
+                put(c);
+            }
+            put('"');
+            return this;
+        }
+        Csv cell(long v) throws IOException { separate(); return raw(Long.toString(v)); }
+        Csv cell(boolean b) throws IOException { separate(); return raw(b ? "true" : "false"); }
+        Csv cell(LocalDate d) throws IOException { separate(); return d == null ? this : raw(d.toString()); }
+        Csv raw(String s) throws IOException {
+            int len = s.length();
+            if (buf.length - pos < len) drain();
+            if (len > buf.length) { out.write(s); return this; }
+            s.getChars(0, len, buf, pos);
+            pos += len;
+            return this;
+        }
+        void end() throws IOException {
+            put('\n');
+            first = true;
+        }
+        private void separate() throws IOException {
+            if (first) first = false;
+            else put(',');
+        }
+        private void put(char c) throws IOException {
+            if (pos == buf.length) drain();
+            buf[pos++] = c;
+        }
+        private void drain() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        @Override public void close() throws IOException {
+            try { drain(); }
+            finally { out.close(); }
+        }
+    }
+}
+
+// Bulk import of goals, habits and tasks from CSV tables (as DataExporter writes them, or any file with
+// those column names) and from JSONL records. The calling thread splits the input into records; a worker
+// pool parses and validates them a chunk at a time; chunks are applied in file order, each chunk's rows
+// grouped per user and stored with one write per user. Bad rows are reported by line and skipped.
+final class DataImporter {
+    private static final int CHUNK = 4096;
+    // Saves left outstanding before the reader waits on the oldest; the storage writer batches what is queued
+    private static final int MAX_PENDING = 1024;
+    private static final int GOAL = 0, HABIT = 1, TASK = 2;
+    // The exporter's habit_log table, and its tables with nothing to import (users, badges, comments)
+    private static final int HABIT_LOG = 3, IGNORED = 4;
+    private static final String[] KINDS = {"goal", "habit", "task"};
+
+    static final class Result {
+        final long files, rows, imported, rejected, skipped, users, millis;
+        Result(long files, long rows, long imported, long rejected, long skipped, long users, long millis) {
+            this.files = files; this.rows = rows; this.imported = imported; this.rejected = rejected;
+            this.skipped = skipped; this.users = users; this.millis = millis;
+        }
+        @Override public String toString() {
+            return String.format("Imported %d of %d rows for %d users from %d files in %.1f s (%.0f rows/s); %d rejected, %d skipped",
+                imported, rows, users, files, millis / 1000.0, rows * 1000.0 / Math.max(1, millis), rejected, skipped);
+        }
+    }
+
+    // One chunk's records and, once parsed, each one's outcome: an item for a user, a logged day of one of
+    // the user's habits, an error, or none of these (skipped)
+    private static final class Chunk {
+        final String[] records = new String[CHUNK];
+        final int[] lines = new int[CHUNK];
+        int size;
+        String[] emails;
+        Item[] items;
+        String[] errors;
+        long[] sourceIds; // the Id (or HabitId) column, 0 where absent
+        LocalDate[] days; // habit log rows only
+    }
+
+    // One user's items from one chunk, counted as imported only once the storage has them
+    private static final class Pending {
+        final File file;
+        final String email;
+        final int count;
+        final CompletableFuture<Void> saved;
+        Pending(File file, String email, int count, CompletableFuture<Void> saved) {
+            this.file = file; this.email = email; this.count = count; this.saved = saved;
+        }
+    }
+
+    // Column positions of a CSV table, found by header name; -1 where the column is absent
+    private static final class Table {
+        final int kind, email, id, name, date, desc, status, freq, prio, done, pinned, archived, reminder, note, streak, last;
+        Table(int kind, Map<String, Integer> cols) {
+            this.kind = kind;
+            email = col(cols, "email");
+            id = kind == HABIT_LOG ? col(cols, "habitid") : kind == HABIT ? col(cols, "id") : -1;
+            name = col(cols, kind == GOAL ? "title" : "name");
+            date = col(cols, kind == GOAL ? "deadline" : kind == HABIT_LOG ? "date" : "due");
+            desc = col(cols, "description");
+            status = col(cols, "status");
+            freq = col(cols, "frequency");
+            prio = col(cols, "priority");
+            done = col(cols, "done");
+            pinned = col(cols, "pinned");
+            archived = col(cols, "archived");
+            reminder = col(cols, "reminderdate");
+            note = col(cols, "note");
+            streak = col(cols, "streak");
+            last = col(cols, "lastlogged");
+        }
+        private static int col(Map<String, Integer> cols, String name) { return cols.getOrDefault(name, -1); }
+        // Null when the header is not a goals, habits or tasks table with the columns each row needs, nor
+        // one of the exporter's other tables
+        static Table of(List<String> header) {
+            Map<String, Integer> cols = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) cols.putIfAbsent(header.get(i).trim().toLowerCase(), i);
+            int kind = cols.containsKey("title") ? GOAL : cols.containsKey("frequency") ? HABIT : cols.containsKey("due") ? TASK
+                : cols.containsKey("habitid") && cols.containsKey("date") ? HABIT_LOG
+                : cols.containsKey("role") || cols.containsKey("badge") || cols.containsKey("taskid") ? IGNORED : -1;
+            if (kind < 0 || !cols.containsKey("email")) return null;
+            Table t = new Table(kind, cols);
+            return kind < HABIT_LOG && (t.name < 0 || (kind != HABIT && t.date < 0)) ? null : t;
+        }
+    }
+
+    private final TrackNestSystem system;
+    private final int threads;
+    private final java.util.function.Consumer<String> report;
+    private long files, rows, imported, rejected, skipped;
+    private final Set<String> users = new HashSet<>();
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    // Habits imported in this run by email and then by their Id in the file, for the habit log rows that follow
+    private final Map<String, Map<Long, Habit>> habitsBySourceId = new HashMap<>();
+    private final List<File> habitLogs = new ArrayList<>();
+
+    DataImporter(TrackNestSystem system, int threads, java.util.function.Consumer<String> report) {
+        this.system = system;
+        this.threads = Math.max(1, threads);
+        this.report = report;
+    }
+
+    // Directories contribute their .csv, .jsonl and gzipped files in name order
+    Result importPaths(List<File> paths) throws IOException {
+        long start = System.nanoTime();
+        List<File> inputs = new ArrayList<>();
+        for (File path : paths) {
+            if (!path.exists()) throw new FileNotFoundException(path.getPath());
+            if (!path.isDirectory()) { inputs.add(path); continue; }
+            File[] listed = path.listFiles((d, n) -> n.endsWith(".csv") || n.endsWith(".jsonl") || n.endsWith(".csv.gz") || n.endsWith(".jsonl.gz"));
+            if (listed == null) throw new IOException("Could not list " + path);
+            Arrays.sort(listed);
+            inputs.addAll(Arrays.asList(listed));
+        }
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "tracknest-import-" + threadNo.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
         try {
-            int idx = Integer.parseInt(sc.nextLine())-1;
-            Task t = tasks.get(idx);
-            t.markComplete();
-            user.addPoints(10);
-            if (tasks.stream().filter(Task::isDone).count() == 1) user.addBadge("First Task Complete");
-            user.addRecentCompleted("Task: "+t.getTaskName());
-            logger.log("Task marked complete. +10 pts!");
-        } catch(Exception e) { System.out.println("Invalid selection!"); }
+            for (File f : inputs) importFile(f, pool, true);
+            // Logged days need their habits, which a directory lists after habit_log
+            for (File f : habitLogs) importFile(f, pool, false);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Result(files, rows, imported, rejected, skipped, users.size(), (System.nanoTime() - start) / 1_000_000);
     }
-    public void showStreaks(User user) {
-        System.out.println("-- Habit Streaks --");
-        for(Habit h : user.getHabits()) {
-            System.out.println(h.getName() + ": " + h.getStreak() + " (Last: " + h.getLastLoggedDate() + ")");
-            if (h.getStreak() > 0 && h.getStreak() % 7 == 0) {
-                System.out.println("🏆 WOW! 7-day streak! +50 pts!");
-                user.addPoints(50);
-                user.addBadge("Weekly Streak Master");
+
+    private void importFile(File f, ExecutorService pool, boolean deferLogs) throws IOException {
+        boolean jsonl = f.getName().endsWith(".jsonl") || f.getName().endsWith(".jsonl.gz");
+        InputStream raw = new FileInputStream(f);
+        if (f.getName().endsWith(".gz")) raw = new GZIPInputStream(raw, 1 << 16);
+        try (RecordReader in = new RecordReader(new InputStreamReader(raw, StandardCharsets.UTF_8), !jsonl)) {
+            Table table = null;
+            if (!jsonl) {
+                List<String> header = new ArrayList<>();
+                if (!in.next()) return;
+                if (!splitCsv(in.record(), header) || (table = Table.of(header)) == null) {
+                    report.accept(f.getName() + ": not a goals, habits or tasks table (needs Email plus Title and Deadline, Name and Frequency, or Name and Due); skipped");
+                    return;
+                }
+                if (table.kind == IGNORED) return;
+                if (table.kind == HABIT_LOG && deferLogs) { habitLogs.add(f); return; }
+            }
+            files++;
+            Table columns = table;
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            while (true) {
+                Chunk chunk = new Chunk();
+                while (chunk.size < CHUNK && in.next()) {
+                    chunk.lines[chunk.size] = in.line();
+                    chunk.records[chunk.size++] = in.record();
+                }
+                if (chunk.size == 0) break;
+                inFlight.add(pool.submit(() -> columns != null ? parseCsv(chunk, columns) : parseJsonl(chunk)));
+                // A bounded window keeps memory flat while the workers stay busy
+                if (inFlight.size() > threads * 2) apply(f, await(inFlight.poll()));
             }
+            while (!inFlight.isEmpty()) apply(f, await(inFlight.poll()));
         }
+        settle(0);
     }
-    public void searchFilterGoals(User user, Scanner sc) {
-        System.out.println("Search by: 1.Status 2.Deadline before date");
-        String opt = sc.nextLine();
-        List<Goal> filtered = new ArrayList<>();
-        if (opt.equals("1")) {
-            System.out.print("Enter status (Active/Complete/Failed): ");
-            String s = sc.nextLine();
-            for(Goal g : user.getGoals()) if(g.getStatus().equalsIgnoreCase(s)) filtered.add(g);
-        } else if (opt.equals("2")) {
-            System.out.print("Enter deadline date (YYYY-MM-DD): ");
-            try { LocalDate d = LocalDate.parse(sc.nextLine());
-                for(Goal g : user.getGoals()) if(g.getDeadline().isBefore(d)) filtered.add(g);
-            } catch(Exception e) { System.out.println("Invalid date!"); return; }
+    private static Chunk await(Future<Chunk> f) throws IOException {
+        try { return f.get(); }
+        catch (ExecutionException e) { throw new IOException(e.getCause()); }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
         }
-        System.out.println("Filtered goals:");
-        for(Goal g : filtered) System.out.println("- "+g);
     }
-    public void sortTasks(User user, Scanner sc) {
-        System.out.println("Sort by: 1.Due Date 2.Priority");
-        String op = sc.nextLine();
-        List<Task> sorted = new ArrayList<>(user.getTasks());
-        if(op.equals("1")) Collections.sort(sorted, Comparator.comparing(Task::getDueDate));
-        else if(op.equals("2")) {
-            List<String> prioList = Arrays.asList("High", "Medium", "Low");
-            Collections.sort(sorted, Comparator.comparing(a->prioList.indexOf(a.getPriority())));
+
+    // Runs on the calling thread in file order, so each user's items keep their order across chunks
+    private void apply(File f, Chunk c) {
+        Map<String, List<Item>> byUser = new LinkedHashMap<>();
+        Map<String, List<Integer>> linesByUser = new HashMap<>();
+        Map<Habit, List<LocalDate>> logged = new LinkedHashMap<>();
+        Map<Habit, String> owners = new HashMap<>();
+        for (int i = 0; i < c.size; i++) {
+            rows++;
+            if (c.errors[i] != null) reject(f, c.lines[i], c.errors[i]);
+            else if (c.days != null && c.days[i] != null) {
+                Habit h = habitsBySourceId.getOrDefault(c.emails[i], Collections.emptyMap()).get(c.sourceIds[i]);
+                if (h == null) { reject(f, c.lines[i], "no habit with Id " + c.sourceIds[i] + " imported for " + c.emails[i]); continue; }
+                logged.computeIfAbsent(h, k -> new ArrayList<>()).add(c.days[i]);
+                owners.put(h, c.emails[i]);
+            }
+            else if (c.items[i] == null) skipped++;
+            else {
+                byUser.computeIfAbsent(c.emails[i], k -> new ArrayList<>()).add(c.items[i]);
+                linesByUser.computeIfAbsent(c.emails[i], k -> new ArrayList<>()).add(c.lines[i]);
+                if (c.items[i] instanceof Habit && c.sourceIds != null && c.sourceIds[i] != 0)
+                    habitsBySourceId.computeIfAbsent(c.emails[i], k -> new HashMap<>()).put(c.sourceIds[i], (Habit) c.items[i]);
+            }
         }
-        System.out.println("--- Sorted Tasks ---");
-        for(Task t : sorted) System.out.println(t);
+        for (Map.Entry<Habit, List<LocalDate>> e : logged.entrySet()) {
+            String email = owners.get(e.getKey());
+            User u = system.getUser(email);
+            if (u == null) {
+                rejected += e.getValue().size();
+                report.accept(f.getName() + ": " + e.getValue().size() + " rows for " + email + " not saved: no such user");
+                continue;
+            }
+            pending.add(new Pending(f, email, e.getValue().size(), system.importHabitLog(u, e.getKey(), e.getValue())));
+        }
+        for (Map.Entry<String, List<Item>> e : byUser.entrySet()) {
+            User u = system.getUser(e.getKey());
+            if (u == null) {
+                for (int line : linesByUser.get(e.getKey())) reject(f, line, "no such user " + e.getKey());
+                continue;
+            }
+            pending.add(new Pending(f, e.getKey(), e.getValue().size(), system.importItems(u, e.getValue())));
+        }
+        settle(MAX_PENDING);
     }
-    // Overdue warnings
-    public void showOverdueTasks(User user) {
-        boolean overdue = false;
-        for(Task t : user.getTasks())
-            if(t.isOverdue() && !t.isDone()) {
-                if (!overdue) {
-                    System.out.println("\n** Reminder **: You have overdue tasks!");
-                    overdue = true;
-                }
-                System.out.println("- "+t);
+    // Collects finished saves, and waits on the oldest until at most keep are outstanding
+    private void settle(int keep) {
+        while (!pending.isEmpty() && (pending.size() > keep || pending.peek().saved.isDone())) {
+            Pending p = pending.poll();
+            try {
+                p.saved.join();
+                imported += p.count;
+                users.add(p.email);
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                rejected += p.count;
+                report.accept(p.file.getName() + ": " + p.count + " rows for " + p.email + " not saved: " + cause.getMessage());
             }
+        }
     }
-    // Auto-close past due goals
-    public void autoCloseOverdueGoals(User user) {
-        for (Goal g : user.getGoals()) {
-            if (!g.checkCompletion() && g.getDeadline().plusDays(3).isBefore(LocalDate.now())
-                && !"Failed".equalsIgnoreCase(g.getStatus())) {
-                g.setStatus("Failed");
-                System.out.println("Goal auto-set as Failed (overdue 3+ days): " + g.getTitle());
-            }
-        }
-    }
-    public void saveData() {
-        try (PrintWriter out = new PrintWriter(new FileWriter(DATA_FILE))) {
-            out.println("[");
-            int uCount = 0;
-            for (User u : users.values()) {
-                if (uCount++ > 0) out.println(",");
-                out.print("  {\"id\":"+u.getId()+",\"name\":\""+u.getName()+"\",\"email\":\""+u.getEmail()+"\",\"role\":\"");
-                out.print((u instanceof Admin) ? "admin" : "user");
-                out.print("\",\"passwordHash\":\""+u.getPasswordHash()+"\"");
-                out.print(",\"securityQuestion\":\""+u.getSecurityQuestion()+"\"");
-                out.print(",\"securityAnswerHash\":\""+u.getSecurityAnswerHash()+"\"");
-                out.print(",\"registrationDate\":\""+u.getRegistrationDate()+"\"");
-                out.print(",\"goals\":[");
-                for (int i=0;i<u.getGoals().size();i++) {
-                    Goal g = u.getGoals().get(i);
-                    if (i>0) out.print(",");
-                    out.print("{\"title\":\""+g.getTitle()+"\",\"desc\":\""+g.getDescription()+"\",\"deadline\":\""+g.getDeadline()+"\",\"status\":\""+g.getStatus()+"\",\"pinned\":"+g.isPinned()+",\"note\":\""+(g.getNote()==null?"":g.getNote())+"\",\"reminderDate\":\""+(g.getReminderDate()==null?"":g.getReminderDate())+"\",\"archived\":"+g.isArchived()+"}");
+    private void reject(File f, int line, String message) {
+        rejected++;
+        report.accept(f.getName() + ":" + line + ": " + message);
+    }
+
+    private Chunk parseCsv(Chunk c, Table t) {
+        c.emails = new String[c.size];
+        c.items = new Item[c.size];
+        c.errors = new String[c.size];
+        c.sourceIds = new long[c.size];
+        if (t.kind == HABIT_LOG) c.days = new LocalDate[c.size];
+        List<String> fields = new ArrayList<>();
+        Map<String, LocalDate> dates = new HashMap<>();
+        for (int i = 0; i < c.size; i++) {
+            try {
+                if (!splitCsv(c.records[i], fields)) throw new IllegalArgumentException("unbalanced quotes");
+                String email = field(fields, t.email);
+                if (email.isEmpty()) throw new IllegalArgumentException("missing Email");
+                if (!system.hasUser(email)) throw new IllegalArgumentException("no such user " + email);
+                String id = field(fields, t.id);
+                if (!id.isEmpty()) c.sourceIds[i] = number(id, t.kind == HABIT_LOG ? "HabitId" : "Id");
+                if (t.kind == HABIT_LOG) {
+                    if (id.isEmpty()) throw new IllegalArgumentException("missing HabitId");
+                    c.days[i] = requiredDate(fields, t.date, "Date", dates);
+                    c.emails[i] = email;
+                    c.records[i] = null;
+                    continue;
                 }
-                out.print("],\"habits\":[");
-                for (int i=0;i<u.getHabits().size();i++) {
-                    Habit h = u.getHabits().get(i);
-                    if (i>0) out.print(",");
-                    out.print("{\"name\":\""+h.getName()+"\",\"freq\":\""+h.getFrequency()+"\",\"streak\":"+h.getStreak()+",\"last\":\""+(h.getLastLoggedDate()==null?"":h.getLastLoggedDate())+"\",\"pinned\":"+h.isPinned()+",\"note\":\""+(h.getNote()==null?"":h.getNote())+"\",\"reminderDate\":\""+(h.getReminderDate()==null?"":h.getReminderDate())+"\",\"archived\":"+h.isArchived()+"}");
+                String name = field(fields, t.name);
+                if (name.isEmpty()) throw new IllegalArgumentException("missing " + (t.kind == GOAL ? "Title" : "Name"));
+                Item item;
+                if (t.kind == GOAL) {
+                    Goal g = new Goal(name, field(fields, t.desc), requiredDate(fields, t.date, "Deadline", dates));
+                    String status = field(fields, t.status);
+                    if (!status.isEmpty()) g.setStatus(oneOf(status, "Status", "Active", "Complete", "Failed"));
+                    g.setNote(emptyToNull(field(fields, t.note)));
+                    item = g;
+                } else if (t.kind == HABIT) {
+                    String freq = field(fields, t.freq);
+                    Habit h = new Habit(name, freq.isEmpty() ? "Daily" : oneOf(freq, "Frequency", "Daily", "Weekly"));
+                    String streak = field(fields, t.streak);
+                    LocalDate last = date(fields, t.last, "LastLogged", dates);
+                    if (last != null) h.restoreLegacyStreak(streak.isEmpty() ? 1 : integer(streak, "Streak"), last);
+                    h.setNote(emptyToNull(field(fields, t.note)));
+                    item = h;
+                } else {
+                    String prio = field(fields, t.prio);
+                    Task k = new Task(name, requiredDate(fields, t.date, "Due", dates), prio.isEmpty() ? "Medium" : oneOf(prio, "Priority", "High", "Medium", "Low"));
+                    if (bool(fields, t.done, "Done")) k.markComplete();
+                    item = k;
                 }
-                out.print("],\"tasks\":[");
-                for (int i=0;i<u.getTasks().size();i++) {
-                    Task t = u.getTasks().get(i);
-                    if (i>0) out.print(",");
-                    out.print("{\"name\":\""+t.getTaskName()+"\",\"due\":\""+t.getDueDate()+"\",\"prio\":\""+t.getPriority()+"\",\"done\":"+t.isDone()+",\"pinned\":"+t.isPinned()+",\"reminderDate\":\""+(t.getReminderDate()==null?"":t.getReminderDate())+"\",\"archived\":"+t.isArchived()+"}");
+                setCommon(item, bool(fields, t.pinned, "Pinned"), bool(fields, t.archived, "Archived"), date(fields, t.reminder, "ReminderDate", dates));
+                c.emails[i] = email;
+                c.items[i] = item;
+            } catch (RuntimeException e) {
+                c.errors[i] = e.getMessage();
+            }
+            c.records[i] = null;
+        }
+        return c;
+    }
+
+    // Records use the storage field names plus "type" and "email"; user records are skipped, as imports
+    // carry no credentials
+    private Chunk parseJsonl(Chunk c) {
+        c.emails = new String[c.size];
+        c.items = new Item[c.size];
+        c.errors = new String[c.size];
+        for (int i = 0; i < c.size; i++) {
+            String record = c.records[i];
+            c.records[i] = null;
+            try {
+                String type = null, email = null;
+                JsonReader head = new JsonReader(new StringReader(record), Math.min(record.length() + 1, 1 << 12));
+                head.beginObject();
+                while (head.hasNext() && (type == null || email == null)) {
+                    switch (head.nextName()) {
+                        case "type": type = head.nextString(); break;
+                        case "email": email = head.nextString(); break;
+                        default: head.skipValue();
+                    }
                 }
-                out.print("],\"badges\":[");
-                int b=0; for (String badge : u.badges) { if (b++>0) out.print(","); out.print("\""+badge+"\""); }
-                out.print("],\"points\":"+u.getRewardPoints());
-                out.print(",\"theme\":\""+u.getTheme()+"\"");
-                out.print(",\"friendEmail\":\""+u.getFriendEmail()+"\"");
-                out.print(",\"active\":"+u.isActive());
-                out.print("}");
-            }
-            out.println();
-            out.println("]");
-        } catch(Exception e) { System.out.println("[Error] Could not save data: "+e.getMessage()); }
-    }
-    public void loadData() {
-        File f = new File(DATA_FILE);
-        if (!f.exists()) return;
-        try (Scanner sc = new Scanner(f)) {
-            StringBuilder sb = new StringBuilder();
-            while (sc.hasNextLine()) sb.append(sc.nextLine());
-            String json = sb.toString();
-            json = json.replaceAll("\\s+", "");
-            if (!json.startsWith("[")) return;
-            String[] userBlocks = json.substring(1, json.length()-1).split("},");
-            for (String userBlock : userBlocks) {
-                if (!userBlock.endsWith("}")) userBlock += "}";
-                int id = Integer.parseInt(userBlock.replaceAll(".*\"id\":(\\d+).*", "$1"));
-                String name = userBlock.replaceAll(".*\"name\":\"(.*?)\".*", "$1");
-                String email = userBlock.replaceAll(".*\"email\":\"(.*?)\".*", "$1");
-                String role = userBlock.replaceAll(".*\"role\":\"(.*?)\".*", "$1");
-                String passwordHash = userBlock.replaceAll(".*\"passwordHash\":\"(.*?)\".*", "$1");
-                String secQ = userBlock.replaceAll(".*\"securityQuestion\":\"(.*?)\".*", "$1");
-                String secAHash = userBlock.replaceAll(".*\"securityAnswerHash\":\"(.*?)\".*", "$1");
-                String regDateStr = userBlock.replaceAll(".*\"registrationDate\":\"(.*?)\".*", "$1");
-                User u = "admin".equals(role) ? new Admin(id, name, email, passwordHash, secQ, secAHash) : new NormalUser(id, name, email, passwordHash, secQ, secAHash);
-                if (regDateStr != null && !regDateStr.isEmpty() && !regDateStr.equals("registrationDate")) {
-                    try { u.setRegistrationDate(LocalDate.parse(regDateStr)); } catch(Exception ignore){}
+                if ("user".equals(type)) continue;
+                int kind = type == null ? -1 : Arrays.asList(KINDS).indexOf(type);
+                if (kind < 0) throw new IllegalArgumentException(type == null ? "missing type" : "unknown type '" + type + "'");
+                if (email == null || email.isEmpty()) throw new IllegalArgumentException("missing email");
+                if (!system.hasUser(email)) throw new IllegalArgumentException("no such user " + email);
+                JsonReader in = new JsonReader(new StringReader(record), Math.min(record.length() + 1, 1 << 12));
+                Item item;
+                if (kind == GOAL) {
+                    Goal g = UserCodec.readGoal(in);
+                    if (g.getTitle() == null || g.getTitle().isEmpty()) throw new IllegalArgumentException("missing title");
+                    if (g.getDeadline() == null) throw new IllegalArgumentException("missing deadline");
+                    g.setStatus(oneOf(g.getStatus(), "status", "Active", "Complete", "Failed"));
+                    item = g;
+                } else if (kind == HABIT) {
+                    Habit h = UserCodec.readHabit(in);
+                    if (h.getName() == null || h.getName().isEmpty()) throw new IllegalArgumentException("missing name");
+                    if (h.getFrequency() == null) throw new IllegalArgumentException("missing freq");
+                    oneOf(h.getFrequency(), "freq", "Daily", "Weekly");
+                    item = h;
+                } else {
+                    Task t = UserCodec.readTask(in);
+                    if (t.getTaskName() == null || t.getTaskName().isEmpty()) throw new IllegalArgumentException("missing name");
+                    if (t.getDueDate() == null) throw new IllegalArgumentException("missing due");
+                    t.setPriority(t.getPriority() == null ? "Medium" : oneOf(t.getPriority(), "prio", "High", "Medium", "Low"));
+                    item = t;
                 }
-                // Points
-                try { u.rewardPoints = Integer.parseInt(userBlock.replaceAll(".*\"points\":(\\d+).*", "$1")); } catch(Exception ignore){}
-                // Theme
-                try { u.theme = userBlock.replaceAll(".*\"theme\":\"(.*?)\".*", "$1"); } catch(Exception ignore){}
-                // Badges
-                if (userBlock.contains("\"badges\":[")) {
-                    String badgeStr = userBlock.split("\"badges\":\\[")[1].split("]",2)[0];
-                    if (!badgeStr.isEmpty()) for (String badge : badgeStr.split(",")) u.badges.add(badge.replaceAll("\"", ""));
+                c.emails[i] = email;
+                c.items[i] = item;
+            } catch (IOException | RuntimeException e) {
+                c.errors[i] = e.getMessage() != null ? e.getMessage() : e.toString();
+            }
+        }
+        return c;
+    }
+
+    private static void setCommon(Item item, boolean pinned, boolean archived, LocalDate reminder) {
+        if (item instanceof Goal) { Goal g = (Goal) item; g.setPinned(pinned); g.setArchived(archived); g.setReminderDate(reminder); }
+        else if (item instanceof Habit) { Habit h = (Habit) item; h.setPinned(pinned); h.setArchived(archived); h.setReminderDate(reminder); }
+        else { Task t = (Task) item; t.setPinned(pinned); t.setArchived(archived); t.setReminderDate(reminder); }
+    }
+    private static String field(List<String> fields, int col) {
+        return col < 0 || col >= fields.size() ? "" : fields.get(col).trim();
+    }
+    private static String emptyToNull(String s) { return s.isEmpty() ? null : s; }
+    // The canonical spelling of an allowed value, matched case-insensitively
+    private static String oneOf(String value, String column, String... allowed) {
+        for (String a : allowed) if (a.equalsIgnoreCase(value)) return a;
+        throw new IllegalArgumentException("bad " + column + " '" + value + "' (expected " + String.join("/", allowed) + ")");
+    }
+    private static boolean bool(List<String> fields, int col, String column) {
+        String v = field(fields, col);
+        if (v.isEmpty() || v.equalsIgnoreCase("false") || v.equals("0") || v.equalsIgnoreCase("no")) return false;
+        if (v.equalsIgnoreCase("true") || v.equals("1") || v.equalsIgnoreCase("yes")) return true;
+        throw new IllegalArgumentException("bad " + column + " '" + v + "'");
+    }
+    private static int integer(String v, String column) {
+        try { return Integer.parseInt(v); }
+        catch (NumberFormatException e) { throw new IllegalArgumentException("bad " + column + " '" + v + "'"); }
+    }
+    private static long number(String v, String column) {
+        try { return Long.parseLong(v); }
+        catch (NumberFormatException e) { throw new IllegalArgumentException("bad " + column + " '" + v + "'"); }
+    }
+    private static LocalDate requiredDate(List<String> fields, int col, String column, Map<String, LocalDate> cache) {
+        LocalDate d = date(fields, col, column, cache);
+        if (d == null) throw new IllegalArgumentException("missing " + column);
+        return d;
+    }
+    // Files repeat a handful of dates; parsing one costs more than the rest of a row
+    private static LocalDate date(List<String> fields, int col, String column, Map<String, LocalDate> cache) {
+        String v = field(fields, col);
+        if (v.isEmpty()) return null;
+        LocalDate d = cache.get(v);
+        if (d != null) return d;
+        try { d = LocalDate.parse(v); }
+        catch (java.time.format.DateTimeParseException e) { throw new IllegalArgumentException("bad " + column + " '" + v + "' (expected yyyy-mm-dd)"); }
+        if (cache.size() < 4096) cache.put(v, d);
+        return d;
+    }
+
+    // RFC 4180 fields of one record into out; false if a quote is left open or followed by stray text
+    static boolean splitCsv(String record, List<String> out) {
+        out.clear();
+        int n = record.length(), i = 0;
+        StringBuilder sb = null;
+        while (true) {
+            if (i < n && record.charAt(i) == '"') {
+                if (sb == null) sb = new StringBuilder();
+                sb.setLength(0);
+                for (i++; ; i++) {
+                    if (i >= n) return false;
+                    char c = record.charAt(i);
+                    if (c != '"') { sb.append(c); continue; }
+                    if (i + 1 < n && record.charAt(i + 1) == '"') { sb.append('"'); i++; continue; }
+                    i++;
+                    break;
                 }
-                // Profile Description
-                try { u.setProfileDescription(userBlock.replaceAll(".*\"profileDescription\":\"(.*?)\".*", "$1")); } catch(Exception ignore){}
-                // Avatar
-                try { u.setAvatar(userBlock.replaceAll(".*\"avatar\":\"(.*?)\".*", "$1")); } catch(Exception ignore){}
-                // Reminder Frequency
-                try { u.setReminderFrequency(userBlock.replaceAll(".*\"reminderFrequency\":\"(.*?)\".*", "$1")); } catch(Exception ignore){}
-                // Language
-                try { u.setLanguage(userBlock.replaceAll(".*\"language\":\"(.*?)\".*", "$1")); } catch(Exception ignore){}
-                // Accessibility Mode
-                try { u.setAccessibilityMode(userBlock.contains("\"accessibilityMode\":true")); } catch(Exception ignore){}
-                // Friend Email
-                try { u.setFriendEmail(userBlock.replaceAll(".*\"friendEmail\":\"(.*?)\".*", "$1")); } catch(Exception ignore){}
-                // Active Status
-                try { u.setActive(userBlock.contains("\"active\":true")); } catch(Exception ignore){}
-                // Goals
-                if (userBlock.contains("\"goals\":[")) {
-                    String goalsStr = userBlock.split("\"goals\":\\[")[1].split("]",2)[0];
-                    if (!goalsStr.isEmpty()) for (String gBlock : goalsStr.split("},")) {
-                        if (!gBlock.endsWith("}")) gBlock += "}";
-                        String title = gBlock.replaceAll(".*\"title\":\"(.*?)\".*", "$1");
-                        String desc = gBlock.replaceAll(".*\"desc\":\"(.*?)\".*", "$1");
-                        String deadline = gBlock.replaceAll(".*\"deadline\":\"(.*?)\".*", "$1");
-                        String status = gBlock.replaceAll(".*\"status\":\"(.*?)\".*", "$1");
-                        boolean pinned = gBlock.contains("\"pinned\":true");
-                        String note = gBlock.replaceAll(".*\"note\":\"(.*?)\".*", "$1");
-                        LocalDate reminderDate = gBlock.contains("\"reminderDate\":\"") ? LocalDate.parse(gBlock.replaceAll(".*\"reminderDate\":\"(.*?)\".*", "$1")) : null;
-                        boolean archived = gBlock.contains("\"archived\":true");
-                        Goal goal = new Goal(title, desc, LocalDate.parse(deadline));
-                        goal.setStatus(status); goal.setPinned(pinned); goal.setNote(note);
-                        goal.setReminderDate(reminderDate); goal.setArchived(archived);
-                        u.goals.add(goal);
+                out.add(sb.toString());
+                if (i < n && record.charAt(i) != ',') return false;
+            } else {
+                int end = record.indexOf(',', i);
+                if (end < 0) end = n;
+                out.add(record.substring(i, end));
+                i = end;
+            }
+            if (i >= n) return true;
+            i++; // the comma
+        }
+    }
+
+    // Splits input into records with the line each starts on: lines for JSONL; for CSV, lines joined while a
+    // quoted field is open. A trailing \r is dropped, and blank lines are not records.
+    private static final class RecordReader implements Closeable {
+        private final Reader in;
+        private final boolean csv;
+        private final char[] buf = new char[1 << 16];
+        private int pos, limit, lineNo, recordLine;
+        private final StringBuilder sb = new StringBuilder();
+        private String record;
+
+        RecordReader(Reader in, boolean csv) { this.in = in; this.csv = csv; }
+
+        boolean next() throws IOException {
+            do {
+                if (!read()) return false;
+            } while (record.trim().isEmpty());
+            return true;
+        }
+        private boolean read() throws IOException {
+            sb.setLength(0);
+            recordLine = lineNo + 1;
+            boolean quoted = false, any = false;
+            while (true) {
+                if (pos == limit) {
+                    limit = in.read(buf, 0, buf.length);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (!any) return false;
+                        break;
                     }
                 }
-                // Habits
-                if (userBlock.contains("\"habits\":[")) {
-                    String habitsStr = userBlock.split("\"habits\":\\[")[1].split("]",2)[0];
-                    if (!habitsStr.isEmpty()) for (String hBlock : habitsStr.split("},")) {
-                        if (!hBlock.endsWith("}")) hBlock += "}";
-                        String nameH = hBlock.replaceAll(".*\"name\":\"(.*?)\".*", "$1");
-                        String freq = hBlock.replaceAll(".*\"freq\":\"(.*?)\".*", "$1");
-                        int streak = Integer.parseInt(hBlock.replaceAll(".*\"streak\":(\\d+).*", "$1"));
-                        String last = hBlock.replaceAll(".*\"last\":\"(.*?)\".*", "$1");
-                        boolean pinned = hBlock.contains("\"pinned\":true");
-                        String note = hBlock.replaceAll(".*\"note\":\"(.*?)\".*", "$1");
-                        LocalDate reminderDate = hBlock.contains("\"reminderDate\":\"") ? LocalDate.parse(hBlock.replaceAll(".*\"reminderDate\":\"(.*?)\".*", "$1")) : null;
-                        boolean archived = hBlock.contains("\"archived\":true");
-                        Habit habit = new Habit(nameH, freq); habit.setPinned(pinned); habit.setNote(note);
-                        habit.setStreak(streak);
-                        if (!last.isEmpty()) habit.setLastLoggedDate(LocalDate.parse(last));
-                        habit.setReminderDate(reminderDate); habit.setArchived(archived);
-                        u.habits.add(habit);
-                    }
+                int start = pos;
+                // Scan to the end of the record within the buffer, then copy that span at once
+                while (pos < limit) {
+                    char c = buf[pos];
+                    if (c == '\n') {
+                        lineNo++;
+                        if (!quoted) break;
+                    } else if (c == '"' && csv) quoted = !quoted;
+                    pos++;
+                }
+                any = true;
+                sb.append(buf, start, pos - start);
+                if (pos < limit) { pos++; break; } // past the newline
+            }
+            int len = sb.length();
+            if (len > 0 && sb.charAt(len - 1) == '\r') sb.setLength(len - 1);
+            record = sb.toString();
+            return true;
+        }
+        String record() { return record; }
+        int line() { return recordLine; }
+        @Override public void close() throws IOException { in.close(); }
+    }
+}
+
+// Tokenizer for batch scripts: one command per line, fields separated by spaces or tabs, "double quotes"
+// around a field that contains them (with \" and \\ inside), # starting a comment line. Reads through its
+// own buffer and reuses the token array, so a line costs only its field strings.
+final class ScriptReader implements Closeable {
+    private final Reader in;
+    private final char[] buf = new char[1 << 16];
+    private int pos, limit;
+    private final StringBuilder sb = new StringBuilder();
+    private String[] tokens = new String[8];
+    private int count, lineNo;
+    private String error;
+
+    ScriptReader(Reader in) { this.in = in; }
+
+    int count() { return count; }
+    String token(int i) { return tokens[i]; }
+    int lineNo() { return lineNo; }
+    // Set when the current line is malformed
+    String error() { return error; }
+
+    // Moves to the next line with at least one field; false at end of input
+    boolean next() throws IOException {
+        while (true) {
+            count = 0;
+            error = null;
+            int c = read();
+            if (c < 0) return false;
+            lineNo++;
+            while (c >= 0 && c != '\n') {
+                if (c == ' ' || c == '\t' || c == '\r') { c = read(); continue; }
+                if (c == '#' && count == 0) {
+                    while (c >= 0 && c != '\n') c = read();
+                    break;
                 }
-                // Tasks
-                if (userBlock.contains("\"tasks\":[")) {
-                    String tasksStr = userBlock.split("\"tasks\":\\[")[1].split("]",2)[0];
-                    if (!tasksStr.isEmpty()) for (String tBlock : tasksStr.split("},")) {
-                        if (!tBlock.endsWith("}")) tBlock += "}";
-                        String nameT = tBlock.replaceAll(".*\"name\":\"(.*?)\".*", "$1");
-                        String due = tBlock.replaceAll(".*\"due\":\"(.*?)\".*", "$1");
-                        String prio = tBlock.replaceAll(".*\"prio\":\"(.*?)\".*", "$1");
-                        boolean done = tBlock.contains("\"done\":true");
-                        boolean pinned = tBlock.contains("\"pinned\":true");
-                        LocalDate reminderDate = tBlock.contains("\"reminderDate\":\"") ? LocalDate.parse(tBlock.replaceAll(".*\"reminderDate\":\"(.*?)\".*", "$1")) : null;
-                        boolean archived = tBlock.contains("\"archived\":true");
-                        Task task = new Task(nameT, LocalDate.parse(due), prio); task.setPinned(pinned);
-                        if (done) task.markComplete();
-                        task.setReminderDate(reminderDate); task.setArchived(archived);
-                        u.tasks.add(task);
+                sb.setLength(0);
+                if (c == '"') {
+                    for (c = read(); c >= 0 && c != '"' && c != '\n'; c = read()) {
+                        if (c == '\\' && (c = read()) < 0) break;
+                        sb.append((char) c);
                     }
+                    if (c != '"') {
+                        error = "unterminated quote";
+                        return true;
+                    }
+                    c = read();
+                } else {
+                    for (; c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n'; c = read()) sb.append((char) c);
                 }
-                users.put(email, u);
+                if (count == tokens.length) tokens = Arrays.copyOf(tokens, count * 2);
+                tokens[count++] = sb.toString();
             }
-        } catch(Exception e) { System.out.println("[Error] Could not load data: "+e.getMessage()); }
+            if (count > 0) return true;
+            if (c < 0) return false;
+        }
     }
-    public boolean hasUser(String email) {
-        return users.containsKey(email);
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) { limit = 0; return -1; }
+        }
+        return buf[pos++];
     }
-    public void showSystemStats() {
-        int totalUsers = users.size();
-        int totalAdmins = (int) users.values().stream().filter(u -> u instanceof Admin).count();
-        int totalGoals = users.values().stream().mapToInt(u -> u.getGoals().size()).sum();
-        int totalHabits = users.values().stream().mapToInt(u -> u.getHabits().size()).sum();
-        int totalTasks = users.values().stream().mapToInt(u -> u.getTasks().size()).sum();
-        UI.section("System Stats");
-        System.out.println("Total Users: " + totalUsers);
-        System.out.println("Total Admins: " + totalAdmins);
-        System.out.println("Total Goals: " + totalGoals);
-        System.out.println("Total Habits: " + totalHabits);
-        System.out.println("Total Tasks: " + totalTasks);
+    @Override public void close() throws IOException { in.close(); }
+}
+
+// Headless mode: applies a command script (or stdin) through the core operations with saves deferred,
+// then writes each changed user once and flushes. Also serves --export, --reset-admin and --import.
+final class BatchRunner {
+    static final String USAGE = String.join("\n",
+        "Usage: java TrackNestApp [--serve [port] | --batch [script|-] | --export [file] | --reset-admin | --export-bench [dir]",
+        "                         | --import <file|dir>... | --load-bench [max-items] | --shard-bench [users]",
+        "                         | --json-bench [users] | --hash-bench | --stress [threads] [seconds]]",
+        "Script commands, one per line (quote fields containing spaces):",
+        "  register <role> <name> <email> <password> <security-question> <security-answer>",
+        "  add-goal <email> <title> <deadline> [description]",
+        "  add-task <email> <name> <due> [priority]",
+        "  add-habit <email> <name> [Daily|Weekly]",
+        "  complete-task <email> <task>      log-habit <email> <habit>",
+        "  set-goal-status <email> <goal> <status>",
+        "  delete-goal|delete-task|delete-habit <email> <name>",
+        "  set-password <email> <password>   delete-user <email>",
+        "  export-json                       export-csv|export-jsonl [dir] [gzip]",
+        "  import <file|dir>                 (goals, habits and tasks from CSV/JSONL)");
+
+    private final TrackNestSystem system;
+    // Per user, goals, habits and tasks by name; filled from the user's items on first reference
+    private final Map<String, List<Map<String, Item>>> named = new HashMap<>();
+    // Scripts repeat a handful of dates; parsing one costs more than the rest of an add
+    private final Map<String, LocalDate> dates = new HashMap<>();
+    private long applied, failed;
+
+    BatchRunner(TrackNestSystem system) { this.system = system; }
+
+    static int runCommandLine(TrackNestSystem system, String[] args) {
+        try {
+            switch (args[0]) {
+                case "--batch": {
+                    boolean stdin = args.length < 2 || args[1].equals("-");
+                    Reader in = new InputStreamReader(stdin ? System.in : new FileInputStream(args[1]), StandardCharsets.UTF_8);
+                    return new BatchRunner(system).run(in) == 0 ? 0 : 1;
+                }
+                case "--export": {
+                    File out = new File(args.length > 1 ? args[1] : "tracknest_audit.csv");
+                    UI.success("Exported " + system.exportAuditCSV(out) + " audit entries to " + out);
+                    return 0;
+                }
+                case "--reset-admin": {
+                    User admin = system.getUser("admin@nest.com");
+                    if (admin == null) { UI.error("No admin account yet; start once interactively to create it."); return 1; }
+                    UI.prompt("New admin password: ");
+                    String password = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+                    if (password == null || password.trim().isEmpty()) { UI.error("No password given."); return 1; }
+                    system.setPassword(admin, password.trim());
+                    system.saveData().join();
+                    UI.success("Admin password reset.");
+                    return 0;
+                }
+                case "--import": {
+                    if (args.length < 2) { System.out.println(USAGE); return 2; }
+                    List<File> paths = new ArrayList<>();
+                    for (int i = 1; i < args.length; i++) paths.add(new File(args[i]));
+                    DataImporter.Result result = system.importData(paths, System.err::println);
+                    UI.info(result.toString());
+                    return result.rejected == 0 ? 0 : 1;
+                }
+                case "--load-bench":
+                    UserCodec.benchmarkLoad(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000, System.out);
+                    return 0;
+                case "--shard-bench":
+                    ShardedBinaryBackend.benchmarkLoad(args.length > 1 ? Integer.parseInt(args[1]) : 100_000, System.out);
+                    return 0;
+                case "--json-bench":
+                    UserCodec.benchmarkWrite(args.length > 1 ? Integer.parseInt(args[1]) : 100_000, System.out);
+                    return 0;
+                case "--hash-bench":
+                    try { PasswordHasher.calibrated().benchmark(System.out); }
+                    catch (InterruptedException e) { Thread.currentThread().interrupt(); return 1; }
+                    return 0;
+                case "--stress": {
+                    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+                    long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+                    try { return TrackNestSystem.runStressTest(threads, TimeUnit.SECONDS.toMillis(seconds), System.out) == 0 ? 0 : 1; }
+                    catch (InterruptedException e) { Thread.currentThread().interrupt(); return 1; }
+                }
+                case "--export-bench":
+                    system.benchmarkExport(new File(args.length > 1 ? args[1] : TrackNestSystem.EXPORT_DIR + "_bench"), System.out);
+                    return 0;
+                default:
+                    System.out.println(USAGE);
+                    return 2;
+            }
+        } catch (IOException e) {
+            UI.error(e.getMessage());
+            return 1;
+        }
     }
-    public void changePassword(User user, Scanner sc) {
-        UI.prompt("Enter current password: ");
-        String current = UI.getNonEmptyInput(sc);
-        if (!user.getPasswordHash().equals(User.hashPassword(current))) {
-            UI.error("Incorrect current password!");
-            return;
+
+    // Returns the number of failed lines; each failure is reported with its line number
+    long run(Reader script) throws IOException {
+        long start = System.nanoTime();
+        system.beginBatch();
+        try (ScriptReader in = new ScriptReader(script)) {
+            while (in.next()) {
+                try {
+                    if (in.error() != null) throw new IllegalArgumentException(in.error());
+                    apply(in);
+                    applied++;
+                } catch (RuntimeException e) {
+                    failed++;
+                    System.err.println("line " + in.lineNo() + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            system.endBatch();
         }
-        UI.prompt("Enter new password: ");
-        String newPass = UI.getNonEmptyInput(sc);
-        user.setPasswordHash(User.hashPassword(newPass));
-        UI.success("Password changed successfully.");
-        saveData();
+        UI.info(String.format("Applied %d commands, %d failed, in %d ms", applied, failed, (System.nanoTime() - start) / 1_000_000));
+        return failed;
     }
-    public boolean resetPassword(String email, Scanner sc) {
-        if (!users.containsKey(email)) { UI.error("No such user!"); return false; }
-        User user = users.get(email);
-        UI.section("Password Reset");
-        System.out.println("Security Question: " + user.getSecurityQuestion());
-        UI.prompt("Answer: ");
-        String ans = UI.getNonEmptyInput(sc);
-        if (!user.getSecurityAnswerHash().equals(User.hashPassword(ans))) {
-            UI.error("Incorrect answer!");
-            return false;
+
+    private void apply(ScriptReader in) {
+        String cmd = in.token(0);
+        switch (cmd) {
+            case "register":
+                args(in, 7, 7);
+                system.registerUser(in.token(1), in.token(2), in.token(3), in.token(4), in.token(5), in.token(6));
+                break;
+            case "add-goal": {
+                args(in, 4, 5);
+                User u = user(in.token(1));
+                remember(u, system.addGoal(u, in.token(2), in.count() > 4 ? in.token(4) : "", date(in.token(3))));
+                break;
+            }
+            case "add-task": {
+                args(in, 4, 5);
+                User u = user(in.token(1));
+                remember(u, system.addTask(u, in.token(2), date(in.token(3)), in.count() > 4 ? in.token(4) : "Medium"));
+                break;
+            }
+            case "add-habit": {
+                args(in, 3, 4);
+                User u = user(in.token(1));
+                remember(u, system.addHabit(u, in.token(2), in.count() > 3 ? in.token(3) : "Daily"));
+                break;
+            }
+            case "complete-task": {
+                args(in, 3, 3);
+                User u = user(in.token(1));
+                system.completeTask(u, (Task) item(u, 't', in.token(2)));
+                break;
+            }
+            case "log-habit": {
+                args(in, 3, 3);
+                User u = user(in.token(1));
+                system.logHabit(u, (Habit) item(u, 'h', in.token(2)));
+                break;
+            }
+            case "set-goal-status": {
+                args(in, 4, 4);
+                User u = user(in.token(1));
+                system.updateGoal(u, (Goal) item(u, 'g', in.token(2)), null, null, null, in.token(3));
+                break;
+            }
+            case "delete-goal": case "delete-task": case "delete-habit": {
+                args(in, 3, 3);
+                User u = user(in.token(1));
+                char kind = cmd.charAt(7);
+                Item item = item(u, kind, in.token(2));
+                if (kind == 'g') system.removeGoal(u, (Goal) item);
+                else if (kind == 't') system.removeTask(u, (Task) item);
+                else system.removeHabit(u, (Habit) item);
+                names(u, kind).remove(in.token(2));
+                break;
+            }
+            case "set-password":
+                args(in, 3, 3);
+                system.setPassword(user(in.token(1)), in.token(2));
+                break;
+            case "delete-user": {
+                args(in, 2, 2);
+                User u = user(in.token(1));
+                system.removeUser(u);
+                named.remove(u.getEmail());
+                break;
+            }
+            case "export-json": args(in, 1, 1); system.exportDataJSON(); break;
+            case "export-csv": case "export-jsonl": {
+                args(in, 1, 3);
+                boolean gzip = in.count() > 2 && in.token(2).equals("gzip");
+                if (in.count() > 2 && !gzip) throw new IllegalArgumentException("expected 'gzip', got '" + in.token(2) + "'");
+                File dir = new File(in.count() > 1 ? in.token(1) : TrackNestSystem.EXPORT_DIR);
+                try { UI.success(system.exportAllData(dir, cmd.equals("export-csv") ? DataExporter.CSV : DataExporter.JSONL, gzip).toString()); }
+                catch (IOException e) { throw new UncheckedIOException(e.getMessage(), e); }
+                break;
+            }
+            case "import": {
+                args(in, 2, 2);
+                try { UI.info(system.importData(Collections.singletonList(new File(in.token(1))), System.err::println).toString()); }
+                catch (IOException e) { throw new UncheckedIOException(e.getMessage(), e); }
+                // Imported items can shadow names already looked up
+                named.clear();
+                break;
+            }
+            default: throw new IllegalArgumentException("unknown command '" + cmd + "'");
         }
-        UI.prompt("Enter new password: ");
-        String newPass = UI.getNonEmptyInput(sc);
-        user.setPasswordHash(User.hashPassword(newPass));
-        UI.success("Password reset successful.");
-        saveData();
-        return true;
     }
-    public void logActivity(String msg) {
-        activityLog.add(LocalDateTime.now() + ": " + msg);
+    private static void args(ScriptReader in, int min, int max) {
+        if (in.count() < min || in.count() > max)
+            throw new IllegalArgumentException(in.token(0) + " takes " + (min == max ? min - 1 : (min - 1) + " to " + (max - 1)) + " arguments, got " + (in.count() - 1));
     }
-    public void viewActivityLog() {
-        UI.section("User Activity Log");
-        for (String entry : activityLog) System.out.println(entry);
+    private LocalDate date(String text) {
+        LocalDate d = dates.get(text);
+        if (d == null) {
+            d = LocalDate.parse(text);
+            if (dates.size() == 4096) dates.clear();
+            dates.put(text, d);
+        }
+        return d;
     }
-    public void deactivateUser(Scanner sc) {
-        showAllUsers();
-        UI.prompt("Enter email to deactivate/reactivate: ");
-        String email = sc.nextLine();
-        User u = users.get(email);
-        if (u == null) { UI.error("No such user!"); return; }
-        u.setActive(!u.isActive());
-        UI.info("User " + email + (u.isActive() ? " reactivated." : " deactivated."));
-        logActivity((u.isActive() ? "Reactivated" : "Deactivated") + " user: " + email);
-        saveData();
+    private User user(String email) {
+        User u = system.getUser(email);
+        if (u == null) throw new NoSuchElementException("no such user " + email);
+        return u;
     }
-    public void broadcastAnnouncement(Scanner sc) {
-        UI.prompt("Enter announcement: ");
-        pendingAnnouncement = sc.nextLine();
-        UI.success("Announcement will be shown to all users on next login.");
-        logActivity("Broadcast announcement: " + pendingAnnouncement);
+    private Item item(User u, char kind, String name) {
+        Item item = names(u, kind).get(name);
+        if (item == null) throw new NoSuchElementException("no " + (kind == 'g' ? "goal" : kind == 't' ? "task" : "habit") + " named '" + name + "' for " + u.getEmail());
+        return item;
     }
-    public String consumeAnnouncement() {
-        String msg = pendingAnnouncement;
-        pendingAnnouncement = null;
-        return msg;
+    private void remember(User u, Item item) {
+        if (item instanceof Goal) names(u, 'g').put(((Goal) item).getTitle(), item);
+        else if (item instanceof Task) names(u, 't').put(((Task) item).getTaskName(), item);
+        else names(u, 'h').put(((Habit) item).getName(), item);
+    }
+    // Where names repeat, the most recently added item is the one addressed
+    private Map<String, Item> names(User u, char kind) {
+        List<Map<String, Item>> maps = named.get(u.getEmail());
+        if (maps == null) {
+            Map<String, Item> goals = new HashMap<>(), habits = new HashMap<>(), tasks = new HashMap<>();
+            for (Goal g : u.getGoals()) goals.put(g.getTitle(), g);
+            for (Habit h : u.getHabits()) habits.put(h.getName(), h);
+            for (Task t : u.getTasks()) tasks.put(t.getTaskName(), t);
+            maps = Arrays.asList(goals, habits, tasks);
+            named.put(u.getEmail(), maps);
+        }
+        return maps.get(kind == 'g' ? 0 : kind == 'h' ? 1 : 2);
+    }
+}
+
+// Bearer-token sessions for the HTTP API, expiring after a sliding idle timeout
+final class SessionStore {
+    private static final class Session {
+        final String email;
+        volatile long expiresAt;
+        Session(String email, long expiresAt) { this.email = email; this.expiresAt = expiresAt; }
+    }
+    private static final java.security.SecureRandom RANDOM = new java.security.SecureRandom();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int SWEEP_EVERY = 256;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private final AtomicInteger createdSinceSweep = new AtomicInteger();
+
+    public SessionStore(long idleMillis) { this.idleMillis = idleMillis; }
+
+    public String create(String email) {
+        byte[] raw = new byte[32];
+        RANDOM.nextBytes(raw);
+        char[] token = new char[64];
+        for (int i = 0; i < raw.length; i++) {
+            token[2 * i] = HEX[(raw[i] >> 4) & 0xF];
+            token[2 * i + 1] = HEX[raw[i] & 0xF];
+        }
+        long now = LoginThrottle.now();
+        String t = new String(token);
+        sessions.put(t, new Session(email, now + idleMillis));
+        if (createdSinceSweep.incrementAndGet() >= SWEEP_EVERY) {
+            createdSinceSweep.set(0);
+            sessions.values().removeIf(s -> s.expiresAt <= now);
+        }
+        return t;
+    }
+    // Email for a live token, extending its lifetime; null if unknown or expired
+    public String resolve(String token) {
+        if (token == null) return null;
+        Session s = sessions.get(token);
+        if (s == null) return null;
+        long now = LoginThrottle.now();
+        if (s.expiresAt <= now) { sessions.remove(token, s); return null; }
+        s.expiresAt = now + idleMillis;
+        return s.email;
+    }
+    public void remove(String token) {
+        if (token != null) sessions.remove(token);
+    }
+    public void removeAll(String email) {
+        sessions.values().removeIf(s -> s.email.equals(email));
+    }
+}
+
+// Optional JSON API over the JDK HTTP server (--serve). Each request runs on its own virtual thread where
+// the runtime has them, otherwise on a bounded pool; TrackNestSystem does its own per-user locking.
+class ApiServer {
+    private static final int MAX_BODY = 64 * 1024;
+
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+        HttpError(int status, String message) { super(message); this.status = status; }
+    }
+    // A handler writes its JSON response body into the supplied writer and returns the status code
+    private interface Handler {
+        int handle(JsonWriter out) throws IOException;
+    }
+
+    private final TrackNestSystem system;
+    private final SessionStore sessions;
+    private final com.sun.net.httpserver.HttpServer server;
+    private final ExecutorService executor;
+
+    public ApiServer(TrackNestSystem system, int port) throws IOException {
+        this.system = system;
+        this.sessions = system.sessions();
+        this.server = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(port), Integer.getInteger("tracknest.http.backlog", 4096));
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::dispatch);
+    }
+    // Executors.newVirtualThreadPerTaskExecutor() when the JDK provides it (21+), else a fixed pool
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            int threads = Integer.getInteger("tracknest.http.threads", Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "tracknest-http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
     }
-    public void exportAllDataCSV() {
-        try (PrintWriter out = new PrintWriter(new FileWriter("tracknest_export.csv"))) {
-            out.println("Email,Name,Role,Active,Goals,Habits,Tasks,Points,RegistrationDate");
-            for (User u : users.values()) {
-                out.print(u.getEmail()+","+u.getName()+","+(u instanceof Admin?"Admin":"User")+","+u.isActive()+","+u.getGoals().size()+","+u.getHabits().size()+","+u.getTasks().size()+","+u.getRewardPoints()+","+u.getRegistrationDate());
-                out.println();
+    public void start() { server.start(); }
+    public int getPort() { return server.getAddress().getPort(); }
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void dispatch(com.sun.net.httpserver.HttpExchange ex) throws IOException {
+        JsonWriter out = new JsonWriter();
+        int status;
+        String error = null;
+        try {
+            status = route(ex, out);
+        } catch (HttpError e) {
+            status = e.status; error = e.getMessage();
+        } catch (LoginThrottledException e) {
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(e.getRetryAfterMillis()))));
+            status = 429; error = e.getMessage();
+        } catch (SecurityException e) {
+            status = 401; error = e.getMessage();
+        } catch (NoSuchElementException e) {
+            status = 404; error = e.getMessage();
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException | IOException e) {
+            status = 400; error = e.getMessage();
+        } catch (RuntimeException e) {
+            Logger.getInstance().log(Logger.ERROR, "" + ex.getRequestMethod() + " " + ex.getRequestURI() + ": " + e);
+            status = 500; error = "Internal error";
+        }
+        if (error != null) {
+            out = new JsonWriter();
+            out.beginObject().name("error").value(error).endObject();
+        }
+        try {
+            if (status == 204) {
+                ex.sendResponseHeaders(204, -1);
+            } else {
+                byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                ex.sendResponseHeaders(status, body.length);
+                ex.getResponseBody().write(body);
             }
-            UI.success("All data exported to tracknest_export.csv");
-            logActivity("Exported all data to CSV");
-        } catch (Exception e) {
-            UI.error("Failed to export CSV: " + e.getMessage());
+        } finally {
+            ex.close();
+        }
+    }
+
+    // /api/<resource>[/<id>[/<action>]]
+    private int route(com.sun.net.httpserver.HttpExchange ex, JsonWriter out) throws IOException {
+        String method = ex.getRequestMethod();
+        String[] parts = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+        String resource = parts[0];
+        long id = parts.length > 1 && !resource.equals("admin") ? parseId(parts[1]) : -1;
+        String action = parts.length > 2 ? parts[2] : null;
+        if (parts.length > 3) throw new HttpError(404, "Not found");
+
+        switch (resource) {
+            case "login": {
+                expect(method, "POST");
+                Map<String, String> body = body(ex);
+                String source = ex.getRemoteAddress().getAddress().getHostAddress();
+                User user = system.login(required(body, "email"), required(body, "password"), source);
+                out.beginObject().name("token").value(sessions.create(user.getEmail()))
+                    .name("name").value(user.getName()).name("role").value(user instanceof Admin ? "admin" : "user").endObject();
+                return 200;
+            }
+            case "register": {
+                expect(method, "POST");
+                Map<String, String> body = body(ex);
+                system.registerUser("user", required(body, "name"), required(body, "email"), required(body, "password"),
+                    required(body, "securityQuestion"), required(body, "securityAnswer"));
+                out.beginObject().name("email").value(body.get("email")).endObject();
+                return 201;
+            }
+            case "logout":
+                expect(method, "POST");
+                sessions.remove(bearer(ex));
+                return 204;
+            default:
+        }
+
+        User user = authenticate(ex);
+        switch (resource) {
+            case "goals": return goals(ex, method, user, id, action, out);
+            case "habits": return habits(ex, method, user, id, action, out);
+            case "tasks": return tasks(ex, method, user, id, action, out);
+            case "reminders": {
+                if (parts.length > 1) throw new HttpError(404, "Not found");
+                expect(method, "GET");
+                out.beginArray();
+                for (String r : system.takeReminders(user.getEmail())) out.value(r);
+                out.endArray();
+                return 200;
+            }
+            case "search": {
+                if (parts.length > 1) throw new HttpError(404, "Not found");
+                expect(method, "GET");
+                String q = queryParam(ex, "q");
+                if (q == null || q.trim().isEmpty()) throw new IllegalArgumentException("Missing query parameter: q");
+                out.beginArray();
+                for (SearchIndex.Hit h : system.search(user, q, 50)) {
+                    out.beginObject().name("kind").value(SearchIndex.kind(h.item).toLowerCase(Locale.ROOT)).name("item");
+                    UserCodec.writeItem(h.item, out);
+                    out.endObject();
+                }
+                out.endArray();
+                return 200;
+            }
+            case "admin":
+                if (!(user instanceof Admin)) throw new HttpError(403, "Admin only");
+                if (!"stats".equals(parts.length > 1 ? parts[1] : null)) throw new HttpError(404, "Not found");
+                expect(method, "GET");
+                Map<String, Integer> stats = system.systemStats();
+                out.beginObject();
+                for (Map.Entry<String, Integer> e : stats.entrySet()) out.name(e.getKey()).value(e.getValue());
+                out.endObject();
+                return 200;
+            default:
+                throw new HttpError(404, "Not found");
+        }
+    }
+
+    private int goals(com.sun.net.httpserver.HttpExchange ex, String method, User user, long id, String action, JsonWriter out) throws IOException {
+        if (action != null) throw new HttpError(404, "Not found");
+        if (id < 0) {
+            if (method.equals("GET")) {
+                List<Goal> goals = system.listGoals(user);
+                out.beginArray();
+                for (Goal g : goals) UserCodec.writeGoal(g, out);
+                out.endArray();
+                return 200;
+            }
+            expect(method, "POST");
+            Map<String, String> b = body(ex);
+            Goal g = system.addGoal(user, required(b, "title"), b.getOrDefault("description", ""), LocalDate.parse(required(b, "deadline")));
+            UserCodec.writeGoal(g, out);
+            return 201;
+        }
+        switch (method) {
+            case "PUT": {
+                Map<String, String> b = body(ex);
+                Goal g = system.findGoal(user, id);
+                system.updateGoal(user, g, b.get("title"), b.get("description"), date(b.get("deadline")), b.get("status"));
+                if (b.containsKey("reminderDate")) system.setReminder(user, g, date(b.get("reminderDate")));
+                UserCodec.writeGoal(g, out);
+                return 200;
+            }
+            case "DELETE":
+                system.removeGoal(user, system.findGoal(user, id));
+                return 204;
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+    private int habits(com.sun.net.httpserver.HttpExchange ex, String method, User user, long id, String action, JsonWriter out) throws IOException {
+        if (action != null) {
+            if (!action.equals("track")) throw new HttpError(404, "Not found");
+            expect(method, "POST");
+            Habit h = system.findHabit(user, id);
+            system.logHabit(user, h);
+            UserCodec.writeHabit(h, out);
+            return 200;
+        }
+        if (id < 0) {
+            if (method.equals("GET")) {
+                List<Habit> habits = system.listHabits(user);
+                out.beginArray();
+                for (Habit h : habits) UserCodec.writeHabit(h, out);
+                out.endArray();
+                return 200;
+            }
+            expect(method, "POST");
+            Map<String, String> b = body(ex);
+            Habit h = system.addHabit(user, required(b, "name"), b.getOrDefault("frequency", "Daily"));
+            UserCodec.writeHabit(h, out);
+            return 201;
+        }
+        switch (method) {
+            case "PUT": {
+                Map<String, String> b = body(ex);
+                Habit h = system.findHabit(user, id);
+                system.updateHabit(user, h, b.get("name"), b.get("frequency"));
+                if (b.containsKey("reminderDate")) system.setReminder(user, h, date(b.get("reminderDate")));
+                UserCodec.writeHabit(h, out);
+                return 200;
+            }
+            case "DELETE":
+                system.removeHabit(user, system.findHabit(user, id));
+                return 204;
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+    private int tasks(com.sun.net.httpserver.HttpExchange ex, String method, User user, long id, String action, JsonWriter out) throws IOException {
+        if (action != null) {
+            if (!action.equals("complete")) throw new HttpError(404, "Not found");
+            expect(method, "POST");
+            Task t = system.findTask(user, id);
+            system.completeTask(user, t);
+            UserCodec.writeTask(t, out);
+            return 200;
+        }
+        if (id < 0) {
+            String sort = queryParam(ex, "sort");
+            if (method.equals("GET") && sort != null) {
+                // Paged: {"tasks":[...],"next":cursor or null}
+                if (!sort.equals("due") && !sort.equals("priority")) throw new IllegalArgumentException("sort must be due or priority");
+                String limit = queryParam(ex, "limit");
+                int n;
+                try { n = limit == null ? 50 : Integer.parseInt(limit); }
+                catch (NumberFormatException e) { throw new IllegalArgumentException("Bad limit"); }
+                if (n < 1 || n > 1000) throw new IllegalArgumentException("limit must be 1..1000");
+                ItemIndex.Page page = system.sortedTasks(user, sort.equals("due"), queryParam(ex, "cursor"), n);
+                out.beginObject().name("tasks").beginArray();
+                for (Task t : page.tasks) UserCodec.writeTask(t, out);
+                out.endArray().name("next").value(page.nextCursor).endObject();
+                return 200;
+            }
+            if (method.equals("GET")) {
+                List<Task> tasks = system.listTasks(user);
+                out.beginArray();
+                for (Task t : tasks) UserCodec.writeTask(t, out);
+                out.endArray();
+                return 200;
+            }
+            expect(method, "POST");
+            Map<String, String> b = body(ex);
+            Task t = system.addTask(user, required(b, "name"), LocalDate.parse(required(b, "due")), b.getOrDefault("priority", "Medium"));
+            UserCodec.writeTask(t, out);
+            return 201;
+        }
+        switch (method) {
+            case "PUT": {
+                Map<String, String> b = body(ex);
+                Task t = system.findTask(user, id);
+                system.updateTask(user, t, b.get("name"), date(b.get("due")), b.get("priority"));
+                if (b.containsKey("reminderDate")) system.setReminder(user, t, date(b.get("reminderDate")));
+                UserCodec.writeTask(t, out);
+                return 200;
+            }
+            case "DELETE":
+                system.removeTask(user, system.findTask(user, id));
+                return 204;
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private User authenticate(com.sun.net.httpserver.HttpExchange ex) {
+        String email = sessions.resolve(bearer(ex));
+        User user = email == null ? null : system.getUser(email);
+        if (user == null || !user.isActive()) throw new HttpError(401, "Not logged in");
+        return user;
+    }
+    private static String bearer(com.sun.net.httpserver.HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        return auth != null && auth.startsWith("Bearer ") ? auth.substring(7).trim() : null;
+    }
+    private static void expect(String method, String allowed) {
+        if (!method.equals(allowed)) throw new HttpError(405, "Method not allowed");
+    }
+    private static long parseId(String s) {
+        try { return Long.parseLong(s); }
+        catch (NumberFormatException e) { throw new HttpError(404, "Not found"); }
+    }
+    private static LocalDate date(String s) {
+        return s == null || s.isEmpty() ? null : LocalDate.parse(s);
+    }
+    private static String queryParam(com.sun.net.httpserver.HttpExchange ex, String name) {
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return null;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (key.equals(name)) return eq < 0 ? "" : java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
         }
+        return null;
+    }
+    private static String required(Map<String, String> body, String field) {
+        String v = body.get(field);
+        if (v == null || v.trim().isEmpty()) throw new IllegalArgumentException("Missing field: " + field);
+        return v;
+    }
+    // Flat JSON object of scalars
+    private static Map<String, String> body(com.sun.net.httpserver.HttpExchange ex) throws IOException {
+        byte[] raw = ex.getRequestBody().readNBytes(MAX_BODY + 1);
+        if (raw.length > MAX_BODY) throw new HttpError(413, "Request body too large");
+        Map<String, String> fields = new HashMap<>();
+        if (raw.length == 0) return fields;
+        JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(raw), StandardCharsets.UTF_8), 1024);
+        in.beginObject();
+        while (in.hasNext()) fields.put(in.nextName(), in.nextScalar());
+        in.endObject();
+        return fields;
     }
 }
 
@@ -1243,6 +7477,8 @@ class UI {
     private static String theme = "Light";
     private static boolean accessibilityMode = false;
     private static String language = "EN";
+    // Lines starting with '/' at a menu prompt go here first; null outside a signed-in menu
+    private static java.util.function.Predicate<String> quickCommands;
     static {
         // Obfuscated credit string
         String[] parts = {"Created", "by", "Deepta", "Roy"};
@@ -1256,6 +7492,7 @@ class UI {
     public static boolean isAccessibilityMode() { return accessibilityMode; }
     public static void setLanguage(String lang) { language = lang; }
     public static String getLanguage() { return language; }
+    public static void setQuickCommands(java.util.function.Predicate<String> handler) { quickCommands = handler; }
     public static void previewTheme(String theme) {
         System.out.println("Previewing theme: " + theme);
         if ("Dark".equalsIgnoreCase(theme)) {
@@ -1294,6 +7531,11 @@ class UI {
     public static int getIntInput(Scanner sc, int min, int max) {
         while (true) {
             String input = sc.nextLine();
+            if (input.startsWith("/") && quickCommands != null) {
+                if (!quickCommands.test(input.trim())) error("Unknown command: " + input.trim());
+                prompt("Select option: ");
+                continue;
+            }
             try {
                 int val = Integer.parseInt(input);
                 if (val >= min && val <= max) return val;
@@ -1339,10 +7581,34 @@ class UI {
 
 // Main
 public class TrackNestApp {
+    // Server mode: the JSON API instead of the console menus, until the process is stopped
+    static void serve(TrackNestSystem system, int port) {
+        ApiServer api;
+        try { api = new ApiServer(system, port); }
+        catch (IOException e) { UI.error("Could not start server: " + e.getMessage()); system.shutdown(); return; }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> { api.stop(); system.shutdown(); }));
+        api.start();
+        if (!system.hasUser("admin@nest.com")) UI.info("No admin account yet; start once without --serve to create it.");
+        UI.success("TrackNest API listening on port " + api.getPort());
+        try { new CountDownLatch(1).await(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
     public static void main(String[] args) {
         Scanner sc = new Scanner(System.in);
         TrackNestSystem system = new TrackNestSystem();
-        system.loadData();
+        int serveAt = Arrays.asList(args).indexOf("--serve");
+        system.loadData(serveAt >= 0 || args.length == 0);
+        if (serveAt >= 0) {
+            serve(system, serveAt + 1 < args.length ? Integer.parseInt(args[serveAt + 1]) : Integer.getInteger("tracknest.port", 8080));
+            return;
+        }
+        if (args.length > 0) {
+            int status = BatchRunner.runCommandLine(system, args);
+            system.shutdown();
+            if (status != 0) System.exit(status);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(system::shutdown));
         if (!system.hasUser("admin@nest.com")) {
             System.out.print("Set admin password: ");
             String adminPass = sc.nextLine();
@@ -1353,6 +7619,8 @@ public class TrackNestApp {
             system.registerUser("admin", "Admin", "admin@nest.com", adminPass, adminQ, adminA);
         }
         while (true) {
+            UI.setQuickCommands(null);
+            system.setConsoleUser(null);
             UI.showLogo();
             List<String> mainMenu = Arrays.asList("Register", "Login", "Forgot Password", "Help", "Exit");
             int ch = UI.menuSelect(sc, "TrackNest", mainMenu);
@@ -1383,13 +7651,19 @@ public class TrackNestApp {
                             UI.info("Welcome back! Last login: "+user.lastLoginDate);
                         user.lastLoginDate = LocalDate.now();
                         UI.success("Welcome, " + user.getName() + " ("+user.getRewardPoints()+" pts)!");
+                        system.setConsoleUser(user.getEmail());
+                        List<String> waiting = system.takeReminders(user.getEmail());
+                        if (!waiting.isEmpty()) {
+                            UI.section("Reminders");
+                            for (String r : waiting) System.out.println("🔔 " + r);
+                        }
                         // --- DASHBOARD ---
                         UI.section("Your Dashboard");
                         System.out.println("Points: " + user.getRewardPoints());
-                        System.out.println("Badges: " + (user.badges.isEmpty() ? "None yet." : user.badges));
+                        System.out.println("Badges: " + (user.getBadges().isEmpty() ? "None yet." : user.getBadges()));
                         long streaks = user.getHabits().stream().mapToInt(Habit::getStreak).max().orElse(0);
                         System.out.println("Longest Habit Streak: " + streaks);
-                        long overdue = user.getTasks().stream().filter(t -> t.isOverdue() && !t.isDone()).count();
+                        long overdue = user.index().overdueTasks(LocalDate.now()).size();
                         System.out.println("Overdue Tasks: " + overdue);
                         System.out.println("Pinned Goals: " + user.getGoals().stream().filter(Goal::isPinned).count());
                         System.out.println("Pinned Tasks: " + user.getTasks().stream().filter(Task::isPinned).count());
@@ -1406,6 +7680,7 @@ public class TrackNestApp {
                         System.out.println("- Register: Create a new account (admin or user)\n- Login: Access your account\n- Forgot Password: Reset your password using your security question.\n- Exit: Quit the app\nNavigate menus by entering the number next to your choice.\nYou can type 'back' at most prompts to return to the previous menu.");
                         break;
                     case 5:
+                        system.shutdown();
                         UI.info("Goodbye!");
                         return;
                 }